@@ -1,26 +1,56 @@
 package com.example.controller;
 
+import com.example.exception.ServiceOverloadedException;
 import com.example.model.User;
 import com.example.model.UserRequest;
 import com.example.repository.ReviewHistoryRepository;
 import com.example.repository.UserRepository;
 import com.example.model.ReviewHistory;
 import com.example.model.ReviewRequest;
+import com.example.model.BatchReviewRequest;
 import com.example.service.AIService;
+import com.example.service.AdaptiveConcurrencyLimiter;
+import com.example.service.AnalyzerRegistry;
+import com.example.service.DmypyPool;
+import com.example.service.BatchReviewService;
 import com.example.service.ExplainService;
+import com.example.service.FairScheduler;
+import com.example.service.FullAnalysisService;
+import com.example.service.GeminiClient;
+import com.example.service.IncrementalReview;
+import com.example.service.LlmResponseCache;
+import com.example.service.PylintBatcher;
+import com.example.service.PythonWorkerPool;
+import com.example.service.ReviewCache;
 import com.example.service.ReviewHistoryService;
+import com.example.service.ReviewPlanner;
 import com.example.service.StaticAnalysisService;
 import com.example.service.StaticAnalysisService.Issue;
+import com.example.service.StaticAnalysisService.ReviewOptions;
+import com.example.service.StaticAnalysisService.ReviewResult;
 import com.example.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.example.service.SuggestNameService; // ✅ THÊM import này
+import com.example.service.ToolLatency;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
@@ -28,6 +58,8 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "*")
 public class ApiController {
 
+    private static final long REVIEW_STREAM_TIMEOUT_MS = 5 * 60_000L;
+
     @Autowired
     private UserService userService;
 
@@ -46,6 +78,15 @@ public class ApiController {
     @Autowired
     private SuggestNameService suggestNameService; // ✅ THÊM autowired này
 
+    @Autowired
+    private LlmResponseCache llmResponseCache;
+
+    @Autowired
+    private GeminiClient geminiClient;
+
+    @Autowired
+    private FullAnalysisService fullAnalysisService;
+
     @PostMapping("/login")
     public Map<String, Object> login(@RequestBody UserRequest req) {
         Map<String, Object> res = new HashMap<>();
@@ -83,12 +124,30 @@ public class ApiController {
     //     return result;
     // }
     @PostMapping("/review")
-    public Map<String, Object> review(@RequestBody ReviewRequest req) {
+    public Map<String, Object> review(@RequestBody ReviewRequest req, HttpServletRequest http) {
         Map<String, Object> res = new HashMap<>();
-        try {
-            List<Issue> feedback = StaticAnalysisService.reviewCode(req.getLanguage(), req.getCode());
-            res.put("success", true);
-            res.put("feedback", feedback);
+        String fairUser = fairUser(req.getUser(), req.getUserId(), http);
+        String language = req.getLanguage() == null ? null : req.getLanguage().trim().toLowerCase();
+        // ✅ Chờ tới lượt của user (fair queuing); review deep đi lane bulk
+        try (FairScheduler.Ticket ticket = FairScheduler.shared().acquire(fairUser,
+                ReviewPlanner.DEEP.equalsIgnoreCase(req.getDepth())
+                        ? FairScheduler.Lane.BULK : FairScheduler.Lane.INTERACTIVE)) {
+            ReviewOptions options = reviewOptions(req);
+            ReviewResult result;
+            if (options != null) {
+                // ✅ Có depth / budget -> ReviewPlanner chọn tool kịp budget
+                result = StaticAnalysisService.review(language, req.getCode(), null, options);
+            } else {
+                result = IncrementalReview.shouldUse(req.getIncremental(), language, req.getCode())
+                        ? IncrementalReview.review(language, req.getCode())
+                        : StaticAnalysisService.review(language, req.getCode());
+            }
+            res.putAll(result.toResponse());
+            if (Boolean.TRUE.equals(req.getBackground()) && !result.skippedTools.isEmpty()) {
+                res.put("backgroundScheduled", scheduleSkippedTools(req, fairUser, language, result.skippedTools));
+            }
+        } catch (ServiceOverloadedException e) {
+            throw e; // GlobalExceptionHandler -> 429
         } catch (Exception e) {
             e.printStackTrace();
             res.put("success", false);
@@ -97,18 +156,354 @@ public class ApiController {
         }
         return res;
     }
+
+    private String fairUser(String user, Long userId, HttpServletRequest http) {
+        return FairScheduler.userKey(user, userId, http.getRemoteAddr());
+    }
+
+    // null = review đầy đủ như trước
+    private ReviewOptions reviewOptions(ReviewRequest req) {
+        String depth = req.getDepth() == null ? null : req.getDepth().trim().toLowerCase();
+        if (depth != null && !ReviewPlanner.isDepth(depth)) {
+            throw new IllegalArgumentException("depth phải là fast, standard hoặc deep");
+        }
+        if (depth == null && req.getBudgetMs() == null) {
+            return null;
+        }
+        return new ReviewOptions(depth, req.getBudgetMs(), null);
+    }
+
+    // ✅ Chạy nền các tool bị bỏ qua rồi lưu kết quả vào lịch sử của user.
+    // Đi qua FairScheduler (lane bulk) như review deep thường: tính vào cap và token của user
+    private boolean scheduleSkippedTools(ReviewRequest req, String fairUser, String language, List<String> skipped) {
+        User user = req.getUserId() != null
+                ? userRepository.findById(req.getUserId()).orElse(null)
+                : req.getUser() != null ? userRepository.findByUsername(req.getUser()).orElse(null) : null;
+        if (user == null) {
+            return false;
+        }
+        String code = req.getCode();
+        CompletableFuture<ReviewResult> background;
+        try {
+            background = FairScheduler.shared().submitAsync(fairUser, FairScheduler.Lane.BULK,
+                    () -> StaticAnalysisService.reviewAsync(language, code, null,
+                            new ReviewOptions(ReviewPlanner.DEEP, null, skipped)));
+        } catch (ServiceOverloadedException e) {
+            System.out.println("⚠ Không chạy review nền: " + e.getMessage());
+            return false;
+        }
+        background.whenComplete((result, error) -> {
+            if (error != null) {
+                System.err.println("❌ Review nền thất bại: " + error.getMessage());
+                return;
+            }
+            try {
+                String summary = "[Review nền: " + String.join(", ", skipped) + "] "
+                        + result.issues.size() + " vấn đề\n" + result.issues.stream()
+                                .map(i -> "Dòng " + i.line + " [" + i.tool + "] " + i.code + ": " + i.message)
+                                .collect(Collectors.joining("\n"));
+                String errorLines = new ObjectMapper().writeValueAsString(result.issues.stream()
+                        .map(i -> i.line).distinct().sorted().collect(Collectors.toList()));
+                reviewHistoryService.saveHistory(user, code, summary, "", language, errorLines);
+            } catch (Exception e) {
+                System.err.println("❌ Không lưu được kết quả review nền: " + e.getMessage());
+            }
+        });
+        return true;
+    }
+
+    // ✅ Review dạng streaming (Server-Sent Events): gửi từng issue ngay khi tool
+    // in ra, sự kiện "tool-done" khi mỗi tool xong, cuối cùng là "done"
+    @PostMapping(value = "/review/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter reviewStream(@RequestBody ReviewRequest req, HttpServletRequest http)
+            throws InterruptedException {
+        SseEmitter emitter = new SseEmitter(REVIEW_STREAM_TIMEOUT_MS);
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(e -> open.set(false));
+
+        FairScheduler.Ticket ticket;
+        try {
+            ticket = FairScheduler.shared().acquire(fairUser(req.getUser(), req.getUserId(), http),
+                    FairScheduler.Lane.INTERACTIVE);
+        } catch (ServiceOverloadedException e) {
+            send(emitter, open, "error", Map.of(
+                    "success", false,
+                    "error", "Overloaded",
+                    "message", e.getMessage(),
+                    "retryAfter", e.getRetryAfterSeconds()));
+            emitter.complete();
+            return emitter;
+        }
+
+        // Danh sách cuối cùng = đúng các issue client đã nhận qua sự kiện "issue"
+        // (tool bị cắt giữa chừng vẫn đã gửi một phần issue, result.issues thì không có)
+        List<Issue> delivered = Collections.synchronizedList(new ArrayList<>());
+        StaticAnalysisService.ReviewListener listener = new StaticAnalysisService.ReviewListener() {
+            @Override
+            public void onIssue(Issue issue) {
+                delivered.add(issue);
+                send(emitter, open, "issue", issue);
+            }
+
+            @Override
+            public void onToolDone(StaticAnalysisService.ToolReport report) {
+                send(emitter, open, "tool-done", report);
+            }
+        };
+
+        StaticAnalysisService.reviewAsync(req.getLanguage(), req.getCode(), listener)
+                .whenComplete((result, error) -> {
+                    ticket.close();
+                    Throwable cause = error != null && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof ServiceOverloadedException) {
+                        send(emitter, open, "error", Map.of(
+                                "success", false,
+                                "error", "Overloaded",
+                                "message", cause.getMessage(),
+                                "retryAfter", ((ServiceOverloadedException) cause).getRetryAfterSeconds()));
+                    } else if (error != null) {
+                        send(emitter, open, "error", Map.of(
+                                "success", false,
+                                "error", error.getClass().getSimpleName(),
+                                "message", String.valueOf(error.getMessage())));
+                    } else {
+                        List<Issue> feedback;
+                        synchronized (delivered) {
+                            feedback = new ArrayList<>(delivered);
+                        }
+                        StaticAnalysisService.sortIssues(feedback);
+                        Map<String, Object> summary = new HashMap<>();
+                        summary.put("success", true);
+                        summary.put("feedback", feedback);
+                        summary.put("total", feedback.size());
+                        summary.put("tools", result.tools);
+                        summary.put("elapsedMs", result.elapsedMs);
+                        summary.put("cached", result.cached);
+                        send(emitter, open, "done", summary);
+                    }
+                    if (open.get()) {
+                        emitter.complete();
+                    }
+                });
+        return emitter;
+    }
+
+    // Client đã ngắt kết nối thì bỏ qua các sự kiện còn lại, review vẫn chạy xong
+    private void send(SseEmitter emitter, AtomicBoolean open, String event, Object data) {
+        if (!open.get()) {
+            return;
+        }
+        synchronized (emitter) {
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            } catch (Exception e) {
+                open.set(false);
+            }
+        }
+    }
+
+    // ✅ Review cả project: upload archive (zip / tar / tar.gz), đọc từng entry
+    // theo stream rồi chia file cho pool phân tích song song
+    @PostMapping(value = "/review/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> reviewBatchArchive(@RequestParam("file") MultipartFile file,
+            @RequestParam(value = "user", required = false) String user, HttpServletRequest http) {
+        try (FairScheduler.Ticket ticket = FairScheduler.shared().acquire(fairUser(user, null, http),
+                FairScheduler.Lane.BULK);
+                InputStream in = file.getInputStream()) {
+            return ResponseEntity.ok(batchResponse(BatchReviewService.reviewArchive(in, file.getOriginalFilename())));
+        } catch (ServiceOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getClass().getSimpleName());
+            errorResponse.put("message", "Không đọc được archive: " + e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
+    // ✅ Review nhiều file gửi dạng JSON: {"files": [{"path", "code", "language"?}]}
+    @PostMapping(value = "/review/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> reviewBatchFiles(@RequestBody BatchReviewRequest req,
+            HttpServletRequest http) {
+        if (req.getFiles() == null || req.getFiles().isEmpty()) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Danh sách file không được để trống");
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        try (FairScheduler.Ticket ticket = FairScheduler.shared().acquire(fairUser(req.getUser(), null, http),
+                FairScheduler.Lane.BULK)) {
+            return ResponseEntity.ok(batchResponse(BatchReviewService.reviewFiles(req.getFiles())));
+        } catch (ServiceOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getClass().getSimpleName());
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(500).body(errorResponse);
+        }
+    }
+
+    private Map<String, Object> batchResponse(BatchReviewService.BatchResult batch) {
+        Map<String, Object> res = new HashMap<>();
+        res.put("success", true);
+        res.put("files", batch.files);
+        res.put("totals", batch.totals);
+        res.put("elapsedMs", batch.elapsedMs);
+        return res;
+    }
+
+    // ✅ Thống kê hệ thống phân tích tĩnh (worker pool, cache...)
+    @GetMapping("/review/stats")
+    public Map<String, Object> reviewStats() {
+        Map<String, Object> res = new HashMap<>();
+        res.put("analyzers", AnalyzerRegistry.stats());
+        res.put("workers", PythonWorkerPool.shared().stats());
+        res.put("dmypy", DmypyPool.shared().stats());
+        res.put("pylintBatch", PylintBatcher.stats());
+        res.put("cache", ReviewCache.stats());
+        res.put("incremental", IncrementalReview.stats());
+        res.put("latency", ToolLatency.stats());
+        res.put("limiter", AdaptiveConcurrencyLimiter.shared().stats());
+        res.put("fair", FairScheduler.shared().stats());
+        res.put("llmCache", llmResponseCache.stats());
+        res.put("gemini", geminiClient.stats());
+        return res;
+    }
+
     @PostMapping("/explain")
-    public Map<String, Object> explain(@RequestBody ReviewRequest req) {
+    public CompletableFuture<Map<String, Object>> explain(@RequestBody ReviewRequest req, HttpServletRequest http)
+            throws InterruptedException {
         System.out.println("Language: " + req.getLanguage());
         System.out.println("Code: " + req.getCode());
-        Map<String, Object> result = explainService.explainCode(req.getLanguage(), req.getCode());
-        System.out.println("Result: " + result);
-        return result;
+        // ✅ Trả future: thread servlet được nhả trong lúc chờ Gemini
+        return FairScheduler.shared().callAsync(fairUser(req.getUser(), req.getUserId(), http),
+                explainLane(req.getChunked(), req.getCode()),
+                () -> explainService.explainCodeAsync(req.getLanguage(), req.getCode(), req.getChunked()))
+                .thenApply(result -> {
+                    System.out.println("Result: " + result);
+                    return result;
+                });
+    }
+
+    // ✅ Phân tích đầy đủ một lần: explain + gợi ý tên (một call Gemini) song song với
+    // static analysis; response gồm "explain", "suggest", "review"
+    @PostMapping("/analyze")
+    public CompletableFuture<Map<String, Object>> analyze(@RequestBody ReviewRequest req, HttpServletRequest http)
+            throws InterruptedException {
+        if (req.getCode() == null || req.getCode().trim().isEmpty()
+                || req.getLanguage() == null || req.getLanguage().trim().isEmpty()) {
+            Map<String, Object> res = new HashMap<>();
+            res.put("success", false);
+            res.put("message", "Code và language không được để trống");
+            return CompletableFuture.completedFuture(res);
+        }
+        ReviewOptions options;
+        try {
+            options = reviewOptions(req);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> res = new HashMap<>();
+            res.put("success", false);
+            res.put("error", e.getClass().getSimpleName());
+            res.put("message", e.getMessage());
+            return CompletableFuture.completedFuture(res);
+        }
+        return FairScheduler.shared().callAsync(fairUser(req.getUser(), req.getUserId(), http),
+                ReviewPlanner.DEEP.equalsIgnoreCase(req.getDepth())
+                        ? FairScheduler.Lane.BULK : FairScheduler.Lane.INTERACTIVE,
+                () -> fullAnalysisService.analyzeAsync(req.getLanguage(), req.getCode(), options));
+    }
+
+    // ✅ Giải thích dạng streaming (SSE): sự kiện "token" mang từng đoạn text ngay khi
+    // Gemini trả về, "done" mang kết quả đầy đủ như /explain
+    @PostMapping(value = "/explain/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter explainStream(@RequestBody ReviewRequest req, HttpServletRequest http)
+            throws InterruptedException {
+        return streamLlm(req, http, explainLane(null, req.getCode()),
+                onText -> explainService.explainCodeStream(req.getLanguage(), req.getCode(), onText));
+    }
+
+    // Explain theo phần là nhiều call Gemini -> đi lane bulk (tốn bulkCost token, suất bulk có hạn)
+    private FairScheduler.Lane explainLane(Boolean chunked, String code) {
+        return explainService.shouldChunk(chunked, code) ? FairScheduler.Lane.BULK : FairScheduler.Lane.INTERACTIVE;
+    }
+
+    @PostMapping(value = "/suggest/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suggestStream(@RequestBody ReviewRequest req, HttpServletRequest http)
+            throws InterruptedException {
+        return streamLlm(req, http, FairScheduler.Lane.INTERACTIVE,
+                onText -> suggestNameService.suggestNamesStream(req.getLanguage(), req.getCode(), onText));
+    }
+
+    private SseEmitter streamLlm(ReviewRequest req, HttpServletRequest http, FairScheduler.Lane lane,
+            Function<Consumer<String>, CompletableFuture<Map<String, Object>>> call) throws InterruptedException {
+        SseEmitter emitter = new SseEmitter(REVIEW_STREAM_TIMEOUT_MS);
+        AtomicBoolean open = new AtomicBoolean(true);
+        // ✅ Client ngắt / timeout / lỗi -> huỷ stream Gemini phía sau, không sinh token cho ai cả
+        AtomicReference<CompletableFuture<?>> upstream = new AtomicReference<>();
+        Runnable close = () -> {
+            open.set(false);
+            CompletableFuture<?> future = upstream.get();
+            if (future != null) {
+                future.cancel(true);
+            }
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(e -> close.run());
+
+        if (req.getCode() == null || req.getCode().trim().isEmpty()
+                || req.getLanguage() == null || req.getLanguage().trim().isEmpty()) {
+            send(emitter, open, "error", Map.of("success", false, "message", "Code và language không được để trống"));
+            emitter.complete();
+            return emitter;
+        }
+        try {
+            CompletableFuture<Map<String, Object>> future = FairScheduler.shared().callAsync(
+                    fairUser(req.getUser(), req.getUserId(), http),
+                    lane,
+                    () -> call.apply(text -> send(emitter, open, "token", Map.of("text", text))));
+            upstream.set(future);
+            if (!open.get()) {
+                // Emitter đã đóng trong lúc chờ suất
+                future.cancel(true);
+            }
+            future.whenComplete((result, error) -> {
+                if (error != null) {
+                    Throwable cause = GeminiClient.unwrap(error);
+                    send(emitter, open, "error", Map.of(
+                            "success", false,
+                            "error", cause.getClass().getSimpleName(),
+                            "message", String.valueOf(cause.getMessage())));
+                } else {
+                    result.put("success", true);
+                    send(emitter, open, "done", result);
+                }
+                if (open.get()) {
+                    emitter.complete();
+                }
+            });
+        } catch (ServiceOverloadedException e) {
+            send(emitter, open, "error", Map.of(
+                    "success", false,
+                    "error", "Overloaded",
+                    "message", e.getMessage(),
+                    "retryAfter", e.getRetryAfterSeconds()));
+            emitter.complete();
+        }
+        return emitter;
     }
 
     // ✅ THÊM suggest endpoint
     @PostMapping("/suggest")
-    public ResponseEntity<Map<String, Object>> suggestNames(@RequestBody ReviewRequest req) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> suggestNames(@RequestBody ReviewRequest req,
+            HttpServletRequest http) {
         try {
             System.out.println("=== SUGGEST API CALLED ===");
             System.out.println("Language: " + req.getLanguage());
@@ -120,36 +515,46 @@ public class ApiController {
                 Map<String, Object> errorResponse = new HashMap<>();
                 errorResponse.put("success", false);
                 errorResponse.put("message", "Code không được để trống");
-                return ResponseEntity.badRequest().body(errorResponse);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(errorResponse));
             }
 
             if (req.getLanguage() == null || req.getLanguage().trim().isEmpty()) {
                 Map<String, Object> errorResponse = new HashMap<>();
                 errorResponse.put("success", false);
                 errorResponse.put("message", "Language không được để trống");
-                return ResponseEntity.badRequest().body(errorResponse);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(errorResponse));
             }
 
-            // ✅ Gọi service
-            Map<String, Object> result = suggestNameService.suggestNames(req.getLanguage(), req.getCode());
-            System.out.println("Suggest result keys: " + result.keySet());
+            // ✅ Gọi service (bất đồng bộ, không giữ thread servlet)
+            return FairScheduler.shared().callAsync(fairUser(req.getUser(), req.getUserId(), http),
+                    FairScheduler.Lane.INTERACTIVE,
+                    () -> suggestNameService.suggestNamesAsync(req.getLanguage(), req.getCode()))
+                    .thenApply(result -> {
+                        System.out.println("Suggest result keys: " + result.keySet());
 
-            // ✅ Đảm bảo có success field
-            result.put("success", true);
-
-            return ResponseEntity.ok(result);
+                        // ✅ Đảm bảo có success field
+                        result.put("success", true);
+                        return ResponseEntity.ok(result);
+                    })
+                    .exceptionally(error -> suggestError(GeminiClient.unwrap(error)));
 
+        } catch (ServiceOverloadedException e) {
+            throw e; // GlobalExceptionHandler -> 429
         } catch (Exception e) {
-            System.err.println("❌ Error in suggest endpoint: " + e.getMessage());
-            e.printStackTrace();
+            return CompletableFuture.completedFuture(suggestError(e));
+        }
+    }
 
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "Lỗi khi gợi ý tên: " + e.getMessage());
-            errorResponse.put("error", e.getClass().getSimpleName());
+    private ResponseEntity<Map<String, Object>> suggestError(Throwable e) {
+        System.err.println("❌ Error in suggest endpoint: " + e.getMessage());
+        e.printStackTrace();
 
-            return ResponseEntity.status(500).body(errorResponse);
-        }
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", "Lỗi khi gợi ý tên: " + e.getMessage());
+        errorResponse.put("error", e.getClass().getSimpleName());
+
+        return ResponseEntity.status(500).body(errorResponse);
     }
 
     // ✅ CHỈNH SỬA: Method saveHistory để xử lý error lines
@@ -247,9 +652,26 @@ public class ApiController {
     }
 
     // ✅ CẬP NHẬT: Các method get history để include error lines
+    // ✅ Có limit hoặc cursor -> trang keyset {items, hasMore, nextCursor} chỉ gồm cột nhẹ;
+    // không có -> danh sách đầy đủ như trước (client cũ)
     @GetMapping("/history/{username}")
     @Transactional(readOnly = true)
-    public ResponseEntity<?> getHistoryByUsername(@PathVariable String username) {
+    public ResponseEntity<?> getHistoryByUsername(@PathVariable String username,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        if (limit != null || cursor != null) {
+            try {
+                Map<String, Object> page = reviewHistoryService.getHistoryPage(username, cursor,
+                        limit != null ? limit : ReviewHistoryService.DEFAULT_PAGE_SIZE);
+                page.put("success", true);
+                return ResponseEntity.ok(page);
+            } catch (IllegalArgumentException e) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", e.getMessage());
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
+        }
         try {
             System.out.println("Đang lấy lịch sử cho user: " + username);
 
@@ -0,0 +1,28 @@
+package com.example.exception;
+
+// ✅ Gemini trả về HTTP lỗi (statusCode > 0) hoặc không gọi được (statusCode = 0)
+public class GeminiException extends RuntimeException {
+
+    private final int statusCode;
+    private final String body;
+
+    public GeminiException(int statusCode, String body) {
+        super("HTTP " + statusCode + ": " + body);
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    public GeminiException(String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = 0;
+        this.body = null;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getBody() {
+        return body;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.exception;
 
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -20,6 +21,19 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(res, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    // ✅ Quá tải -> 429 + Retry-After để client lùi lại thay vì retry dồn dập
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<Map<String, Object>> handleOverloaded(ServiceOverloadedException ex) {
+        Map<String, Object> res = new HashMap<>();
+        res.put("success", false);
+        res.put("error", "Overloaded");
+        res.put("message", ex.getMessage());
+        res.put("retryAfter", ex.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(res);
+    }
+
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ResponseEntity<Map<String, Object>> handleDataIntegrity(DataIntegrityViolationException ex) {
         Map<String, Object> res = new HashMap<>();
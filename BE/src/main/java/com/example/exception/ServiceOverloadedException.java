@@ -0,0 +1,16 @@
+package com.example.exception;
+
+// ✅ Hệ thống đang quá tải: GlobalExceptionHandler trả 429 kèm Retry-After
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.model;
+
+import java.util.List;
+
+// ✅ Review nhiều file một lần: danh sách {path, code, language?}
+public class BatchReviewRequest {
+    private List<FileEntry> files;
+    private String user;
+
+    public static class FileEntry {
+        private String path;
+        private String code;
+        private String language; // bỏ trống -> đoán theo phần mở rộng
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public String getLanguage() {
+            return language;
+        }
+
+        public void setLanguage(String language) {
+            this.language = language;
+        }
+    }
+
+    public List<FileEntry> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<FileEntry> files) {
+        this.files = files;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+}
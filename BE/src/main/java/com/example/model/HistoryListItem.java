@@ -0,0 +1,52 @@
+package com.example.model;
+
+import java.time.LocalDateTime;
+
+// ✅ Một dòng trong danh sách lịch sử: chỉ các cột nhẹ + đoạn đầu của code.
+// Nội dung đầy đủ (code, summary, fixedCode) lấy qua /history/detail/{id}.
+public class HistoryListItem {
+
+    private final Long id;
+    private final String language;
+    private final LocalDateTime createdAt;
+    private final int errorCount;
+    private final String preview;
+
+    // Dùng trong JPQL "SELECT new ..." của ReviewHistoryRepository
+    public HistoryListItem(Long id, String language, LocalDateTime createdAt, String errorLines, String preview) {
+        this.id = id;
+        this.language = language;
+        this.createdAt = createdAt;
+        this.errorCount = countErrors(errorLines);
+        this.preview = preview;
+    }
+
+    // errorLines dạng JSON array "[1,5,10]"
+    private static int countErrors(String errorLines) {
+        if (errorLines == null) {
+            return 0;
+        }
+        String inner = errorLines.trim().replaceAll("^\\[|]$", "").trim();
+        return inner.isEmpty() ? 0 : inner.split(",").length;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+}
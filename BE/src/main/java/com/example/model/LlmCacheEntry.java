@@ -0,0 +1,92 @@
+package com.example.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// ✅ Tầng lưu bền của LlmResponseCache: kết quả explain / suggest theo key đã chuẩn hoá
+@Entity
+@Table(name = "llm_cache_entry", indexes = @Index(name = "idx_llm_cache_expires_at", columnList = "expires_at"))
+public class LlmCacheEntry {
+
+    // SHA-256 hex của (loại, phiên bản prompt, ngôn ngữ, code đã chuẩn hoá)
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(name = "kind", length = 20, nullable = false)
+    private String kind;
+
+    @Column(name = "language", length = 50)
+    private String language;
+
+    // Kết quả dạng JSON object
+    @Column(name = "payload", columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public LlmCacheEntry() {
+    }
+
+    public LlmCacheEntry(String cacheKey, String kind, String language, String payload,
+            LocalDateTime createdAt, LocalDateTime expiresAt) {
+        this.cacheKey = cacheKey;
+        this.kind = kind;
+        this.language = language;
+        this.payload = payload;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -5,7 +5,9 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "review_history")
+// ✅ Index cho danh sách lịch sử phân trang keyset: WHERE user_id = ? ORDER BY created_at DESC, id DESC
+@Table(name = "review_history", indexes = @Index(name = "idx_review_history_user_created",
+        columnList = "user_id, created_at, id"))
 public class ReviewHistory {
 
     @Id
@@ -5,6 +5,16 @@ public class ReviewRequest {
     private String code;
     private String user;
     private Long userId;
+    // ✅ Review tăng dần theo hàm/class (null = tự bật với file lớn)
+    private Boolean incremental;
+    // ✅ Độ sâu review: "fast" (editor-on-save), "standard", "deep" (pre-submit)
+    private String depth;
+    // ✅ Budget thời gian mong muốn (ms); tool dự kiến không kịp sẽ bị bỏ qua
+    private Long budgetMs;
+    // ✅ Chạy nền các tool bị bỏ qua rồi lưu kết quả vào lịch sử của user
+    private Boolean background;
+    // ✅ Explain theo từng phần rồi tổng hợp (null = tự bật với file lớn)
+    private Boolean chunked;
 
     public Long getUserId() {
         return userId;
@@ -38,4 +48,44 @@ public class ReviewRequest {
     public void setUser(String user) {
         this.user = user;
     }
+
+    public Boolean getIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(Boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public String getDepth() {
+        return depth;
+    }
+
+    public void setDepth(String depth) {
+        this.depth = depth;
+    }
+
+    public Long getBudgetMs() {
+        return budgetMs;
+    }
+
+    public void setBudgetMs(Long budgetMs) {
+        this.budgetMs = budgetMs;
+    }
+
+    public Boolean getBackground() {
+        return background;
+    }
+
+    public void setBackground(Boolean background) {
+        this.background = background;
+    }
+
+    public Boolean getChunked() {
+        return chunked;
+    }
+
+    public void setChunked(Boolean chunked) {
+        this.chunked = chunked;
+    }
 }
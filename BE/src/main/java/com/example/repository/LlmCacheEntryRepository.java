@@ -0,0 +1,21 @@
+package com.example.repository;
+
+import com.example.model.LlmCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface LlmCacheEntryRepository extends JpaRepository<LlmCacheEntry, String> {
+
+    // ✅ Xoá các entry đã hết hạn, trả về số dòng bị xoá
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LlmCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
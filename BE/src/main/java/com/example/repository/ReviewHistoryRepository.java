@@ -1,5 +1,6 @@
 package com.example.repository;
 
+import com.example.model.HistoryListItem;
 import com.example.model.ReviewHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -7,11 +8,14 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ReviewHistoryRepository extends JpaRepository<ReviewHistory, Long> {
 
+    int HISTORY_PREVIEW_CHARS = 120;
+
     // ✅ Query cơ bản tìm theo username
     List<ReviewHistory> findByUser_Username(String username);
 
@@ -21,6 +25,24 @@ public interface ReviewHistoryRepository extends JpaRepository<ReviewHistory, Lo
     // ✅ THÊM: Query với phân trang
     List<ReviewHistory> findByUser_UsernameOrderByCreatedAtDesc(String username, Pageable pageable);
 
+    // ✅ Danh sách lịch sử phân trang keyset trên (createdAt, id): trang đầu dùng cùng
+    // Pageable như findByUser_UsernameOrderByCreatedAtDesc nhưng chỉ SELECT cột nhẹ
+    // (không kéo originalCode / fixedCode / reviewSummary TEXT), trang sau bắt đầu
+    // ngay sau dòng cuối của trang trước nên không phải OFFSET qua các dòng đã đọc.
+    @Query("SELECT new com.example.model.HistoryListItem(rh.id, rh.language, rh.createdAt, rh.errorLines, " +
+            "SUBSTRING(rh.originalCode, 1, " + HISTORY_PREVIEW_CHARS + ")) " +
+            "FROM ReviewHistory rh WHERE rh.user.username = :username " +
+            "ORDER BY rh.createdAt DESC, rh.id DESC")
+    List<HistoryListItem> findHistoryPage(@Param("username") String username, Pageable pageable);
+
+    @Query("SELECT new com.example.model.HistoryListItem(rh.id, rh.language, rh.createdAt, rh.errorLines, " +
+            "SUBSTRING(rh.originalCode, 1, " + HISTORY_PREVIEW_CHARS + ")) " +
+            "FROM ReviewHistory rh WHERE rh.user.username = :username " +
+            "AND (rh.createdAt < :createdAt OR (rh.createdAt = :createdAt AND rh.id < :id)) " +
+            "ORDER BY rh.createdAt DESC, rh.id DESC")
+    List<HistoryListItem> findHistoryPageAfter(@Param("username") String username,
+            @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
     // ✅ THÊM: Đếm số lượng records theo username
     long countByUser_Username(String username);
 
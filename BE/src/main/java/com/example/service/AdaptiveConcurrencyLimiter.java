@@ -0,0 +1,203 @@
+package com.example.service;
+
+import com.example.exception.ServiceOverloadedException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// ✅ Giới hạn số review chạy đồng thời, tự học giới hạn từ latency (kiểu gradient /
+// Vegas): so latency ngắn hạn với latency nền (thấp nhất gần đây, lúc chưa tải),
+// latency tăng vọt nghĩa là máy bắt đầu tranh CPU -> giảm giới hạn; latency ổn
+// định -> nới dần. Quá giới hạn thì chờ trong hàng đợi ngắn, hàng đợi đầy / chờ
+// quá lâu -> ServiceOverloadedException (429 + Retry-After) thay vì để mọi request
+// cùng chậm.
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+    private static final int INITIAL_LIMIT = Integer.getInteger("devreview.limiter.initialLimit", CORES * 2);
+    private static final int MIN_LIMIT = Integer.getInteger("devreview.limiter.minLimit", 2);
+    private static final int MAX_LIMIT = Integer.getInteger("devreview.limiter.maxLimit", CORES * 8);
+    private static final int MAX_QUEUE = Integer.getInteger("devreview.limiter.maxQueue", CORES * 4);
+    private static final long QUEUE_TIMEOUT_MS = Long.getLong("devreview.limiter.queueTimeoutMs", 2_000L);
+    // Latency ngắn hạn được phép cao hơn nền bao nhiêu lần trước khi giảm giới hạn
+    private static final double TOLERANCE = 1.5;
+    private static final double SHORT_ALPHA = 0.1;
+    // Sau bấy nhiêu mẫu thì đo lại latency nền (code / tool thay đổi theo thời gian)
+    private static final int BASELINE_RESET_SAMPLES = Integer.getInteger("devreview.limiter.baselineResetSamples", 2_000);
+    private static final double SMOOTHING = 0.2;
+    // Request bị timeout / lỗi -> giảm nhân
+    private static final double DROP_BACKOFF = 0.9;
+
+    private static final AdaptiveConcurrencyLimiter SHARED =
+        new AdaptiveConcurrencyLimiter(INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT, MAX_QUEUE, QUEUE_TIMEOUT_MS);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long queueTimeoutMs;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double shortRttMs;
+    private double baselineRttMs;
+    private int samples;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue, long queueTimeoutMs) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    public static AdaptiveConcurrencyLimiter shared() {
+        return SHARED;
+    }
+
+    // Một suất chạy; release đúng một lần (gọi thêm bị bỏ qua).
+    // Task và người gọi (khi bỏ cuộc) tranh nhau "claim": bên thắng là bên duy nhất
+    // trả suất, nên không có chuyện task đang chạy bị người gọi trả suất hộ.
+    public class Permit {
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile long startNanos;
+
+        // Gọi khi analyzer thực sự bắt đầu chạy (không tính thời gian chờ lane).
+        // false = người gọi đã bỏ cuộc và trả suất, task không được chạy nữa.
+        public boolean start() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            startNanos = System.nanoTime();
+            return true;
+        }
+
+        // Người gọi bỏ cuộc (timeout / interrupt): chỉ trả suất khi task chưa bắt đầu;
+        // task đã bắt đầu thì tự trả trong finally khi thực sự dừng
+        public boolean releaseIfNotStarted() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            release(-1);
+            return true;
+        }
+
+        public void release(boolean success) {
+            release(success && startNanos != 0 ? System.nanoTime() - startNanos : -1);
+        }
+
+        // rttNanos < 0: không dùng làm mẫu latency
+        void release(long rttNanos) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(rttNanos);
+            }
+        }
+    }
+
+    public Permit acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                if (queued >= maxQueue) {
+                    throw reject("Hàng đợi phân tích đã đầy");
+                }
+                queued++;
+                try {
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+                    while (inFlight >= (int) limit) {
+                        if (remaining <= 0) {
+                            throw reject("Chờ quá " + queueTimeoutMs + "ms");
+                        }
+                        remaining = available.awaitNanos(remaining);
+                    }
+                } finally {
+                    queued--;
+                }
+            }
+            inFlight++;
+            accepted.incrementAndGet();
+            return new Permit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ServiceOverloadedException reject(String reason) {
+        rejected.incrementAndGet();
+        // Ước lượng thời gian xả hết hàng đợi hiện tại với giới hạn hiện tại
+        double rtt = shortRttMs > 0 ? shortRttMs : 1_000.0;
+        long retryAfter = Math.max(1, (long) Math.ceil((queued + 1) * rtt / Math.max(1.0, limit) / 1_000.0));
+        return new ServiceOverloadedException("Hệ thống đang quá tải (" + reason + "), thử lại sau "
+            + retryAfter + "s", retryAfter);
+    }
+
+    // rttNanos < 0: request bị huỷ / timeout / lỗi -> không dùng làm mẫu latency
+    private void onRelease(long rttNanos) {
+        lock.lock();
+        try {
+            int wasInFlight = inFlight;
+            inFlight--;
+            if (rttNanos < 0) {
+                dropped.incrementAndGet();
+                limit = Math.max(minLimit, limit * DROP_BACKOFF);
+            } else {
+                update(rttNanos / 1_000_000.0, wasInFlight);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(double rttMs, int wasInFlight) {
+        if (baselineRttMs == 0) {
+            shortRttMs = rttMs;
+            baselineRttMs = rttMs;
+            return;
+        }
+        shortRttMs += SHORT_ALPHA * (rttMs - shortRttMs);
+        if (++samples >= BASELINE_RESET_SAMPLES) {
+            samples = 0;
+            baselineRttMs = shortRttMs;
+        } else {
+            baselineRttMs = Math.min(baselineRttMs, shortRttMs);
+        }
+        // Chưa dùng tới nửa giới hạn thì latency không nói gì về giới hạn -> không nới
+        if (wasInFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baselineRttMs / shortRttMs));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("limit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("queued", queued);
+            stats.put("maxQueue", maxQueue);
+            stats.put("shortRttMs", Math.round(shortRttMs));
+            stats.put("baselineRttMs", Math.round(baselineRttMs));
+        } finally {
+            lock.unlock();
+        }
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+}
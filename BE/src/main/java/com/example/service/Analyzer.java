@@ -0,0 +1,34 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.ReviewListener;
+import com.example.service.StaticAnalysisService.ReviewOptions;
+import com.example.service.StaticAnalysisService.ReviewResult;
+
+import java.util.List;
+
+// ✅ SPI cho analyzer theo ngôn ngữ: mỗi ngôn ngữ tự khai báo tool, cách parse
+// output và số review được chạy đồng thời. AnalyzerRegistry cấp cho mỗi ngôn ngữ
+// một pool riêng để ngôn ngữ nặng không chiếm hết thread của ngôn ngữ nhẹ.
+// Analyzer bên ngoài có thể đăng ký qua META-INF/services/com.example.service.Analyzer.
+public interface Analyzer {
+
+    String language();
+
+    // Tên các tool sẽ xuất hiện trong ReviewResult.tools
+    List<String> tools();
+
+    // Số review của ngôn ngữ này được chạy cùng lúc (kích thước pool riêng)
+    int maxConcurrency();
+
+    // Thời gian tối đa cho một lần analyze
+    long budgetMs();
+
+    // listener có thể null; được gọi từ thread của pool
+    ReviewResult analyze(String code, ReviewListener listener) throws InterruptedException;
+
+    // Analyzer hỗ trợ depth / budget thì override; mặc định bỏ qua options
+    default ReviewResult analyze(String code, ReviewListener listener, ReviewOptions options)
+            throws InterruptedException {
+        return analyze(code, listener);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// ✅ Đưa code vào analyzer mà không ghi xuống ổ đĩa thật:
+//  - pylint: đọc stdin (--from-stdin)
+//  - mypy: truyền code qua tham số -c (snippet nhỏ)
+//  - còn lại (crosshair, snippet lớn): file trong vùng scratch trên tmpfs
+//    (/dev/shm), luôn bị xoá khi close()
+public class AnalyzerInput {
+
+    public enum Mode { STDIN, ARGUMENT, SCRATCH_FILE }
+
+    // MAX_ARG_STRLEN của Linux là 128KB cho một tham số, chừa lại biên an toàn
+    private static final int MAX_ARGUMENT_BYTES = 100 * 1024;
+    private static final long STALE_SCRATCH_MS = TimeUnit.HOURS.toMillis(1);
+    private static final String STDIN_MODULE_NAME = "snippet.py";
+    // Mọi file scratch đều mang prefix này; dọn dẹp chỉ xoá file của chính class này
+    // (thư mục scratch có thể được cấu hình trỏ vào chỗ dùng chung)
+    static final String SCRATCH_PREFIX = "analyze-";
+
+    private static final Path SCRATCH_DIR = initScratchDir();
+
+    static Mode modeFor(String tool, String code) {
+        if ("pylint".equals(tool)) {
+            return Mode.STDIN;
+        }
+        if ("mypy".equals(tool) && code.getBytes(StandardCharsets.UTF_8).length <= MAX_ARGUMENT_BYTES) {
+            return Mode.ARGUMENT;
+        }
+        return Mode.SCRATCH_FILE;
+    }
+
+    // Tham số cuối của lệnh tương ứng với cách truyền input
+    static List<String> inputArgs(Mode mode, String code, ScratchFile scratch) {
+        switch (mode) {
+            case STDIN:
+                return List.of("--from-stdin", STDIN_MODULE_NAME);
+            case ARGUMENT:
+                return List.of("-c", code);
+            default:
+                return List.of(scratch.path().toString());
+        }
+    }
+
+    // Ghi stdin ở thread riêng để tool không bị kẹt khi vừa đọc vừa ghi output
+    static void feedStdin(Process process, String code) {
+        Thread writer = new Thread(() -> {
+            try (OutputStream stdin = process.getOutputStream()) {
+                stdin.write(code.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // tool đã thoát sớm / bị kill -> bỏ qua
+            }
+        }, "analyzer-stdin-" + process.pid());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static Path scratchDir() {
+        return SCRATCH_DIR;
+    }
+
+    // Ưu tiên /dev/shm (tmpfs, nằm trong RAM); không có thì dùng java.io.tmpdir
+    private static Path initScratchDir() {
+        String configured = System.getProperty("devreview.scratch.dir");
+        List<Path> candidates = new ArrayList<>();
+        if (configured != null) {
+            candidates.add(Paths.get(configured));
+        }
+        candidates.add(Paths.get("/dev/shm", "devreview"));
+        candidates.add(Paths.get(System.getProperty("java.io.tmpdir"), "devreview"));
+        for (Path dir : candidates) {
+            try {
+                Files.createDirectories(dir);
+                if (Files.isWritable(dir)) {
+                    sweepStale(dir);
+                    return dir;
+                }
+            } catch (IOException ignored) {
+                // thử thư mục tiếp theo
+            }
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    // Dọn file scratch còn sót từ lần chạy trước (process bị kill giữa chừng)
+    static void sweepStale(Path dir) {
+        long cutoff = System.currentTimeMillis() - STALE_SCRATCH_MS;
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(f -> {
+                if (!f.getFileName().toString().startsWith(SCRATCH_PREFIX) || !Files.isRegularFile(f)) {
+                    return false;
+                }
+                try {
+                    FileTime modified = Files.getLastModifiedTime(f);
+                    return modified.toMillis() < cutoff;
+                } catch (IOException e) {
+                    return false;
+                }
+            }).forEach(f -> f.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("⚠ Không dọn được scratch dir " + dir + ": " + e.getMessage());
+        }
+    }
+
+    public static class ScratchFile implements AutoCloseable {
+        private final Path path;
+
+        private ScratchFile(Path path) {
+            this.path = path;
+        }
+
+        public static ScratchFile create(String suffix, String content) throws IOException {
+            Path path = Files.createTempFile(SCRATCH_DIR, SCRATCH_PREFIX, suffix);
+            try {
+                Files.writeString(path, content, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                Files.deleteIfExists(path);
+                throw e;
+            }
+            return new ScratchFile(path);
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("⚠ Không xoá được " + path + ": " + e.getMessage());
+            }
+        }
+    }
+}
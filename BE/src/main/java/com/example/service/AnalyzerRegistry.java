@@ -0,0 +1,170 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.ReviewListener;
+import com.example.service.StaticAnalysisService.ReviewOptions;
+import com.example.service.StaticAnalysisService.ReviewResult;
+import com.example.service.StaticAnalysisService.ToolReport;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ✅ Danh sách analyzer theo ngôn ngữ. Mỗi ngôn ngữ có một "lane" riêng: pool
+// thread cỡ maxConcurrency() + hàng đợi có giới hạn (bulkhead). Một ngôn ngữ bị
+// dồn request chỉ làm đầy hàng đợi của nó, các ngôn ngữ khác vẫn chạy bình thường.
+public class AnalyzerRegistry {
+
+    private static final int QUEUE_PER_THREAD = Integer.getInteger("devreview.analyzer.queuePerThread", 8);
+    // Thời gian tối đa chờ trong hàng đợi của lane, cộng thêm vào budget của analyzer
+    private static final long QUEUE_WAIT_MS = Long.getLong("devreview.analyzer.queueWaitMs", 30_000L);
+
+    private static final Map<String, Lane> LANES = new ConcurrentHashMap<>();
+
+    private static class Lane {
+        final Analyzer analyzer;
+        final ThreadPoolExecutor executor;
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong timedOut = new AtomicLong();
+
+        Lane(Analyzer analyzer) {
+            this.analyzer = analyzer;
+            int threads = Math.max(1, analyzer.maxConcurrency());
+            this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD),
+                StaticAnalysisService.daemonThreads("analyzer-" + analyzer.language() + "-"),
+                new ThreadPoolExecutor.AbortPolicy());
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    static {
+        register(new PythonToolAnalyzer());
+        register(new CommandLineAnalyzer("javascript", "eslint", ".js",
+            List.of("eslint", "--format", "json", "--stdin", "--stdin-filename", "snippet.js"),
+            true, ToolOutputParsers::eslintJson, 4, 20_000L));
+        register(new CheckstyleAnalyzer());
+        register(new CommandLineAnalyzer("cpp", "cppcheck", ".cpp",
+            List.of("cppcheck", "--enable=all", "--std=c++17", "--quiet",
+                ToolOutputParsers.CPPCHECK_TEMPLATE, CommandLineAnalyzer.FILE),
+            false, ToolOutputParsers.lines(ToolOutputParsers::parseCppcheckLine), 2, 30_000L));
+        register(new CommandLineAnalyzer("ruby", "rubocop", ".rb",
+            List.of("rubocop", "--format", "json", "--stdin", "snippet.rb"),
+            true, ToolOutputParsers::rubocopJson, 2, 30_000L));
+        register(new CommandLineAnalyzer("go", "golint", ".go",
+            List.of("golint", CommandLineAnalyzer.FILE),
+            false, ToolOutputParsers.lines(ToolOutputParsers::parseGolintLine), 4, 15_000L));
+        register(new CommandLineAnalyzer("php", "php", ".php",
+            List.of("php", "-d", "display_errors=stdout", "-d", "log_errors=0", "-l", CommandLineAnalyzer.FILE),
+            false, ToolOutputParsers.lines(ToolOutputParsers::parsePhpLintLine), 4, 10_000L));
+
+        // Analyzer bổ sung qua ServiceLoader (ghi đè ngôn ngữ mặc định nếu trùng)
+        for (Analyzer analyzer : ServiceLoader.load(Analyzer.class)) {
+            register(analyzer);
+        }
+    }
+
+    public static void register(Analyzer analyzer) {
+        Lane previous = LANES.put(analyzer.language().toLowerCase(Locale.ROOT), new Lane(analyzer));
+        if (previous != null) {
+            previous.executor.shutdown();
+        }
+    }
+
+    public static Analyzer forLanguage(String language) {
+        Lane lane = language == null ? null : LANES.get(language.toLowerCase(Locale.ROOT));
+        return lane == null ? null : lane.analyzer;
+    }
+
+    public static Set<String> languages() {
+        return new TreeSet<>(LANES.keySet());
+    }
+
+    // Ngôn ngữ chưa có analyzer -> kết quả rỗng (như trước đây)
+    public static ReviewResult review(String language, String code, ReviewListener listener)
+            throws InterruptedException {
+        return review(language, code, listener, null);
+    }
+
+    public static ReviewResult review(String language, String code, ReviewListener listener, ReviewOptions options)
+            throws InterruptedException {
+        Lane lane = language == null ? null : LANES.get(language.toLowerCase(Locale.ROOT));
+        if (lane == null) {
+            return new ReviewResult(new ArrayList<>(), new LinkedHashMap<>(), 0);
+        }
+        long start = System.nanoTime();
+        Analyzer analyzer = lane.analyzer;
+        // ✅ Giới hạn tổng số review đang chạy (mọi ngôn ngữ); quá tải -> 429 cho người gọi
+        AdaptiveConcurrencyLimiter.Permit permit = AdaptiveConcurrencyLimiter.shared().acquire();
+        Future<ReviewResult> future;
+        try {
+            future = lane.executor.submit(() -> {
+                if (!permit.start()) {
+                    // Người gọi đã bỏ cuộc và trả suất trước khi task tới lượt
+                    return null;
+                }
+                boolean success = false;
+                try {
+                    // Tool bị timeout vẫn là một mẫu latency (kéo dài RTT), chỉ exception mới là "drop"
+                    ReviewResult result = analyzer.analyze(code, listener, options);
+                    success = true;
+                    return result;
+                } finally {
+                    permit.release(success);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permit.release(false);
+            lane.rejected.incrementAndGet();
+            return failure(analyzer, start, "Hàng đợi phân tích " + analyzer.language() + " đã đầy", listener);
+        }
+        try {
+            ReviewResult result = future.get(analyzer.budgetMs() + QUEUE_WAIT_MS, TimeUnit.MILLISECONDS);
+            lane.completed.incrementAndGet();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            // Task chưa bắt đầu thì không bao giờ tới finally -> trả suất ở đây; task đang
+            // chạy giữ suất tới khi thực sự dừng (finally), không để limiter đếm thiếu
+            permit.releaseIfNotStarted();
+            lane.timedOut.incrementAndGet();
+            return failure(analyzer, start, "Vượt quá " + (analyzer.budgetMs() + QUEUE_WAIT_MS) + "ms", listener);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return failure(analyzer, start, cause.getClass().getSimpleName() + ": " + cause.getMessage(), listener);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            permit.releaseIfNotStarted();
+            throw e;
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        LANES.forEach((language, lane) -> {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("tools", lane.analyzer.tools());
+            s.put("maxConcurrency", lane.executor.getMaximumPoolSize());
+            s.put("active", lane.executor.getActiveCount());
+            s.put("queued", lane.executor.getQueue().size());
+            s.put("completed", lane.completed.get());
+            s.put("rejected", lane.rejected.get());
+            s.put("timedOut", lane.timedOut.get());
+            stats.put(language, s);
+        });
+        return stats;
+    }
+
+    private static ReviewResult failure(Analyzer analyzer, long start, String error, ReviewListener listener) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Map<String, ToolReport> tools = new LinkedHashMap<>();
+        for (String tool : analyzer.tools()) {
+            ToolReport report = new ToolReport(tool, false, elapsed, error);
+            tools.put(tool, report);
+            if (listener != null) {
+                listener.onToolDone(report);
+            }
+        }
+        return new ReviewResult(new ArrayList<>(), tools, elapsed);
+    }
+}
@@ -0,0 +1,561 @@
+package com.example.service;
+
+import com.example.exception.ServiceOverloadedException;
+import com.example.model.BatchReviewRequest.FileEntry;
+import com.example.service.StaticAnalysisService.Issue;
+import com.example.service.StaticAnalysisService.ReviewResult;
+import com.example.service.StaticAnalysisService.ToolReport;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// ✅ Review cả project: nhận archive (zip / tar / tar.gz) hoặc danh sách file,
+// đọc từng entry theo kiểu streaming (không nạp cả archive vào heap), đoán ngôn
+// ngữ theo đuôi file, bỏ trùng theo hash nội dung và chia file ra pool song song
+// có kích thước bằng số core.
+public class BatchReviewService {
+
+    private static final int MAX_FILE_BYTES = Integer.getInteger("devreview.batch.maxFileBytes", 1024 * 1024);
+    private static final int MAX_FILES = Integer.getInteger("devreview.batch.maxFiles", 5_000);
+    // ✅ Chống zip bomb: tổng số byte giải nén của cả archive và tỉ lệ giải nén / nén của
+    // mỗi entry (chỉ xét khi entry đã giải nén quá ZIP_RATIO_MIN_BYTES). Entry bị bỏ qua
+    // vẫn phải giải nén để tới entry sau nên cũng bị tính vào giới hạn.
+    private static final long MAX_INFLATED_BYTES =
+        Long.getLong("devreview.batch.maxInflatedBytes", 256L * 1024 * 1024);
+    private static final int MAX_ZIP_RATIO = Integer.getInteger("devreview.batch.maxZipRatio", 100);
+    private static final long ZIP_RATIO_MIN_BYTES = 1024 * 1024;
+    // Entry "tên dài" của GNU tar chỉ chứa một đường dẫn, không cho phép lớn tuỳ ý
+    private static final int MAX_LONG_NAME_BYTES = 64 * 1024;
+    // Số lần thử lại một file khi bộ giới hạn đồng thời báo quá tải
+    private static final int OVERLOAD_RETRIES = Integer.getInteger("devreview.batch.overloadRetries", 5);
+    private static final int THREADS =
+        Integer.getInteger("devreview.batch.threads", Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService BATCH_EXECUTOR =
+        Executors.newFixedThreadPool(THREADS, StaticAnalysisService.daemonThreads("batch-review-"));
+
+    private static final Map<String, String> EXTENSIONS = Map.ofEntries(
+        Map.entry(".py", "python"),
+        Map.entry(".js", "javascript"),
+        Map.entry(".jsx", "javascript"),
+        Map.entry(".java", "java"),
+        Map.entry(".cpp", "cpp"),
+        Map.entry(".cc", "cpp"),
+        Map.entry(".cxx", "cpp"),
+        Map.entry(".h", "cpp"),
+        Map.entry(".hpp", "cpp"),
+        Map.entry(".cs", "csharp"),
+        Map.entry(".php", "php"),
+        Map.entry(".rb", "ruby"),
+        Map.entry(".go", "go"));
+
+    public static class FileResult {
+        public String path;
+        public String language;
+        public List<Issue> issues;
+        public Map<String, ToolReport> tools;
+        public String duplicateOf; // file trùng nội dung đã được review
+        public String originalPath; // chỉ có khi đường dẫn bị trùng trong batch (key được thêm hậu tố)
+        public String skipped;     // lý do bỏ qua
+        public String error;
+
+        FileResult(String path, String language) {
+            this.path = path;
+            this.language = language;
+        }
+    }
+
+    public static class BatchResult {
+        public Map<String, FileResult> files;
+        public Map<String, Object> totals;
+        public long elapsedMs;
+    }
+
+    public static String detectLanguage(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        int dot = lower.lastIndexOf('.');
+        return dot < 0 ? null : EXTENSIONS.get(lower.substring(dot));
+    }
+
+    public static BatchResult reviewFiles(List<FileEntry> files) throws InterruptedException {
+        Batch batch = new Batch();
+        for (FileEntry file : files == null ? List.<FileEntry>of() : files) {
+            String path = file.getPath() != null ? file.getPath() : "file-" + batch.results.size();
+            String language = file.getLanguage() != null && !file.getLanguage().isBlank()
+                ? file.getLanguage().toLowerCase(Locale.ROOT)
+                : detectLanguage(path);
+            batch.submit(path, language, file.getCode());
+        }
+        return batch.finish();
+    }
+
+    public static BatchResult reviewArchive(InputStream input, String filename)
+            throws IOException, InterruptedException {
+        Batch batch = new Batch();
+        BufferedInputStream in = new BufferedInputStream(input);
+        String name = filename == null ? "" : filename.toLowerCase(Locale.ROOT);
+        in.mark(4);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+        try {
+            if (name.endsWith(".zip") || (b0 == 'P' && b1 == 'K')) {
+                readZip(in, batch);
+            } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz") || (b0 == 0x1f && b1 == 0x8b)) {
+                readTar(new GZIPInputStream(in, 64 * 1024), batch);
+            } else {
+                readTar(in, batch);
+            }
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            // Archive hỏng giữa chừng -> không để các file đã gửi đi tiếp tục chiếm pool
+            batch.cancel();
+            throw e;
+        }
+        return batch.finish();
+    }
+
+    // Nơi nhận từng entry khi đọc archive (Batch, hoặc test)
+    interface EntrySink {
+        boolean acceptsMore();
+
+        void submitEntry(String path, InputStream data) throws IOException, InterruptedException;
+    }
+
+    private static void readZip(InputStream in, EntrySink batch) throws IOException, InterruptedException {
+        readZip(in, batch, MAX_INFLATED_BYTES, MAX_ZIP_RATIO);
+    }
+
+    // Không dùng closeEntry(): nó giải nén phần còn lại của entry mà không qua giới hạn nào
+    static void readZip(InputStream in, EntrySink batch, long maxInflatedBytes, int maxRatio)
+            throws IOException, InterruptedException {
+        CountingInputStream compressed = new CountingInputStream(in);
+        ZipInputStream zip = new ZipInputStream(compressed, StandardCharsets.UTF_8);
+        InflateGuard data = new InflateGuard(zip, compressed, maxInflatedBytes, maxRatio);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null && batch.acceptsMore()) {
+            data.startEntry(entry.getName());
+            if (!entry.isDirectory()) {
+                batch.submitEntry(entry.getName(), data);
+            }
+            data.skipRemaining();
+        }
+    }
+
+    // Đọc tar (ustar + tên dài kiểu GNU) trực tiếp từ stream, header 512 byte
+    static void readTar(InputStream in, EntrySink batch) throws IOException, InterruptedException {
+        byte[] header = new byte[512];
+        String longName = null;
+        while (batch.acceptsMore()) {
+            if (in.readNBytes(header, 0, 512) < 512 || header[0] == 0) {
+                return; // hết archive (block rỗng)
+            }
+            String name = tarString(header, 0, 100);
+            String prefix = tarString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+            long size = tarSize(header);
+            char type = (char) header[156];
+            long padding = (512 - size % 512) % 512;
+
+            if (type == 'L') {
+                if (size > MAX_LONG_NAME_BYTES) {
+                    throw new IOException("Tên file trong tar quá dài: " + size + " bytes");
+                }
+                byte[] data = in.readNBytes((int) size);
+                if (data.length < size) {
+                    throw new EOFException("Archive tar bị cắt cụt");
+                }
+                longName = new String(data, StandardCharsets.UTF_8).replace("\0", "");
+                in.skipNBytes(padding);
+                continue;
+            }
+            if (longName != null) {
+                name = longName;
+                longName = null;
+            }
+            if (type == '0' || type == '\0') {
+                BoundedInputStream data = new BoundedInputStream(in, size);
+                batch.submitEntry(name, data);
+                data.skipRemaining();
+            } else {
+                in.skipNBytes(size); // thư mục, link, header PAX...
+            }
+            in.skipNBytes(padding);
+        }
+    }
+
+    // Trường size 12 byte: số bát phân, hoặc (GNU, file >= 8GB) bit cao của byte đầu = 1 và
+    // phần còn lại là số nhị phân big-endian
+    static long tarSize(byte[] header) throws IOException {
+        if ((header[124] & 0x80) != 0) {
+            if ((header[124] & 0x40) != 0) {
+                throw new IOException("Header tar hỏng: size âm");
+            }
+            long size = header[124] & 0x3f;
+            for (int i = 125; i < 136; i++) {
+                if (size >>> 55 != 0) {
+                    throw new IOException("Header tar hỏng: size quá lớn");
+                }
+                size = (size << 8) | (header[i] & 0xff);
+            }
+            return size;
+        }
+        String octal = tarString(header, 124, 12).trim();
+        try {
+            return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Header tar hỏng: size '" + octal + "'");
+        }
+    }
+
+    private static String tarString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    // Trạng thái của một lần batch: giới hạn số file đang giữ trong RAM, bỏ trùng theo hash
+    private static class Batch implements EntrySink {
+        final long start = System.nanoTime();
+        // Không đọc tiếp archive khi pool đang đầy -> chỉ giữ tối đa 2 x THREADS file trong RAM
+        final Semaphore inFlight = new Semaphore(THREADS * 2);
+        final Map<String, CompletableFuture<ReviewResult>> byHash = new HashMap<>();
+        final Map<String, String> firstPath = new HashMap<>();
+        final Map<String, FileResult> results = new LinkedHashMap<>();
+        final List<CompletableFuture<Void>> pending = new ArrayList<>();
+        final List<Future<?>> tasks = new ArrayList<>();
+        int duplicates;
+        int duplicatePaths;
+        int skipped;
+
+        @Override
+        public boolean acceptsMore() {
+            return results.size() < MAX_FILES;
+        }
+
+        @Override
+        public void submitEntry(String path, InputStream data) throws IOException, InterruptedException {
+            String language = detectLanguage(path);
+            if (language == null) {
+                skip(new FileResult(path, null), "Không hỗ trợ loại file này");
+                return;
+            }
+            if (AnalyzerRegistry.forLanguage(language) == null) {
+                skip(new FileResult(path, language), unsupported(language));
+                return;
+            }
+            byte[] bytes = data.readNBytes(MAX_FILE_BYTES + 1);
+            if (bytes.length > MAX_FILE_BYTES) {
+                skip(new FileResult(path, language), "File lớn hơn " + MAX_FILE_BYTES + " bytes");
+                return;
+            }
+            for (int i = 0; i < Math.min(bytes.length, 8192); i++) {
+                if (bytes[i] == 0) {
+                    skip(new FileResult(path, language), "File nhị phân");
+                    return;
+                }
+            }
+            submit(path, language, new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        // Batch không có người chờ tương tác -> quá tải thì lùi theo Retry-After rồi thử lại
+        private ReviewResult reviewWithRetry(String language, String code) throws InterruptedException {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return StaticAnalysisService.review(language, code);
+                } catch (ServiceOverloadedException e) {
+                    if (attempt >= OVERLOAD_RETRIES) {
+                        throw e;
+                    }
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(e.getRetryAfterSeconds()));
+                }
+            }
+        }
+
+        void submit(String path, String language, String code) throws InterruptedException {
+            FileResult result = new FileResult(path, language);
+            if (language == null || code == null) {
+                skip(result, language == null ? "Không xác định được ngôn ngữ" : "Thiếu code");
+                return;
+            }
+            // Không có analyzer thì review chỉ trả 0 issue -> báo bỏ qua, không tính là đã phân tích
+            if (AnalyzerRegistry.forLanguage(language) == null) {
+                skip(result, unsupported(language));
+                return;
+            }
+            add(result);
+
+            String hash = ReviewCache.sha256(language + "\u0000" + ReviewCache.normalize(code));
+            CompletableFuture<ReviewResult> review = byHash.get(hash);
+            if (review != null) {
+                result.duplicateOf = firstPath.get(hash);
+                duplicates++;
+            } else {
+                inFlight.acquire();
+                CompletableFuture<ReviewResult> future = new CompletableFuture<>();
+                // Giữ Future của executor (không dùng supplyAsync) để cancel() ngắt được task đang chạy
+                tasks.add(BATCH_EXECUTOR.submit(() -> {
+                    try {
+                        future.complete(reviewWithRetry(language, code));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                review = future;
+                byHash.put(hash, review);
+                firstPath.put(hash, path);
+            }
+            pending.add(review.handle((r, error) -> {
+                synchronized (result) {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                        result.error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+                    } else {
+                        result.issues = r.issues;
+                        result.tools = r.tools;
+                    }
+                }
+                return null;
+            }));
+        }
+
+        private String unsupported(String language) {
+            return "Chưa có analyzer cho ngôn ngữ " + language;
+        }
+
+        void skip(FileResult result, String reason) {
+            result.skipped = reason;
+            add(result);
+            skipped++;
+        }
+
+        // Cùng một đường dẫn xuất hiện nhiều lần (archive / danh sách file) -> thêm hậu tố
+        // " (2)", " (3)"... thay vì ghi đè kết quả trước đó
+        void add(FileResult result) {
+            if (results.containsKey(result.path)) {
+                String original = result.path;
+                int n = 2;
+                while (results.containsKey(original + " (" + n + ")")) {
+                    n++;
+                }
+                result.originalPath = original;
+                result.path = original + " (" + n + ")";
+                duplicatePaths++;
+            }
+            results.put(result.path, result);
+        }
+
+        void cancel() {
+            tasks.forEach(task -> task.cancel(true));
+            byHash.values().forEach(review -> review.cancel(true));
+        }
+
+        BatchResult finish() throws InterruptedException {
+            try {
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get();
+            } catch (ExecutionException e) {
+                // lỗi từng file đã được ghi vào FileResult.error
+            } catch (InterruptedException e) {
+                cancel();
+                throw e;
+            }
+
+            int issueCount = 0;
+            int errors = 0;
+            Map<String, Integer> byType = new TreeMap<>();
+            Map<String, Integer> byLanguage = new TreeMap<>();
+            for (FileResult file : results.values()) {
+                synchronized (file) {
+                    if (file.error != null) {
+                        errors++;
+                    }
+                    if (file.language != null && file.skipped == null) {
+                        byLanguage.merge(file.language, 1, Integer::sum);
+                    }
+                    if (file.issues != null) {
+                        issueCount += file.issues.size();
+                        file.issues.forEach(issue -> byType.merge(issue.type, 1, Integer::sum));
+                    }
+                }
+            }
+
+            BatchResult batch = new BatchResult();
+            batch.files = results;
+            batch.elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            batch.totals = new LinkedHashMap<>();
+            batch.totals.put("files", results.size());
+            batch.totals.put("analyzed", byHash.size());
+            batch.totals.put("duplicates", duplicates);
+            batch.totals.put("duplicatePaths", duplicatePaths);
+            batch.totals.put("skipped", skipped);
+            batch.totals.put("errors", errors);
+            batch.totals.put("issues", issueCount);
+            batch.totals.put("issuesByType", byType);
+            batch.totals.put("filesByLanguage", byLanguage);
+            batch.totals.put("truncated", !acceptsMore());
+            System.out.println("Batch review: " + batch.totals + " trong " + batch.elapsedMs + "ms");
+            return batch;
+        }
+    }
+
+    // Đếm số byte đã đọc từ archive (phần nén)
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    // Dữ liệu đã giải nén của entry zip hiện tại; vượt tổng số byte hoặc tỉ lệ nén -> IOException
+    private static class InflateGuard extends FilterInputStream {
+        private final CountingInputStream compressed;
+        private final long maxInflatedBytes;
+        private final int maxRatio;
+        private final byte[] skipBuffer = new byte[8192];
+        private long total;
+        private long entryInflated;
+        private long entryStart;
+        private String entryName;
+
+        InflateGuard(ZipInputStream zip, CountingInputStream compressed, long maxInflatedBytes, int maxRatio) {
+            super(zip);
+            this.compressed = compressed;
+            this.maxInflatedBytes = maxInflatedBytes;
+            this.maxRatio = maxRatio;
+        }
+
+        void startEntry(String name) {
+            entryName = name;
+            entryInflated = 0;
+            entryStart = compressed.count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                inflated(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                inflated(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // ZipInputStream.skip cũng giải nén -> đi qua read() để được đếm
+            return Math.max(0, read(skipBuffer, 0, (int) Math.min(n, skipBuffer.length)));
+        }
+
+        private void inflated(int n) throws IOException {
+            total += n;
+            entryInflated += n;
+            if (total > maxInflatedBytes) {
+                throw new IOException("Archive giải nén vượt quá " + maxInflatedBytes + " bytes");
+            }
+            long entryCompressed = Math.max(1, compressed.count - entryStart);
+            if (entryInflated > ZIP_RATIO_MIN_BYTES && entryInflated > entryCompressed * maxRatio) {
+                throw new IOException("Entry " + entryName + " có tỉ lệ nén vượt quá " + maxRatio
+                    + ":1 (nghi là zip bomb)");
+            }
+        }
+
+        @Override
+        public void close() {
+            // không đóng stream archive bên dưới
+        }
+
+        void skipRemaining() throws IOException {
+            while (read(skipBuffer, 0, skipBuffer.length) >= 0) {
+                // chỉ để tới cuối entry, mỗi đoạn đều bị tính vào giới hạn
+            }
+        }
+    }
+
+    // Stream con đọc đúng `remaining` byte của một entry tar
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // không đóng stream archive bên dưới
+        }
+
+        void skipRemaining() throws IOException {
+            in.skipNBytes(remaining);
+            remaining = 0;
+        }
+    }
+}
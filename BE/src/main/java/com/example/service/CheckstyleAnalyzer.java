@@ -0,0 +1,241 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+import com.example.service.StaticAnalysisService.ReviewListener;
+import com.example.service.StaticAnalysisService.ReviewResult;
+import com.example.service.StaticAnalysisService.ToolReport;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// ✅ Java: chạy checkstyle ngay trong JVM của server (load jar qua URLClassLoader)
+// thay vì "java -jar checkstyle.jar" mỗi lần - bỏ được ~1s khởi động JVM.
+// Checker không thread-safe nên mỗi slot của pool giữ một Checker riêng.
+public class CheckstyleAnalyzer implements Analyzer {
+
+    private static final String TOOL = "checkstyle";
+    private static final String JAR = System.getProperty("devreview.checkstyle.jar", "/opt/checkstyle.jar");
+    private static final String CONFIG = System.getProperty("devreview.checkstyle.config", "/google_checks.xml");
+    private static final String PKG = "com.puppycrawl.tools.checkstyle.";
+
+    private final int maxConcurrency = Integer.getInteger("devreview.checkstyle.maxConcurrent", 2);
+    private final long budgetMs = Long.getLong("devreview.checkstyle.budgetMs", 20_000L);
+
+    private BlockingQueue<CheckerSlot> slots;
+    private String initError;
+    private ClassLoader loader;
+    private Object configuration;
+
+    // Checker chạy in-process không kill được: quá budget thì bỏ slot đó (thread vẫn chạy
+    // tiếp cho tới khi xong) và tạo slot mới thế chỗ, để lượt chạy treo không giữ mãi
+    // một suất của pool. Số slot bị bỏ cùng lúc có giới hạn để không nhân thread vô hạn.
+    private final ScheduledExecutorService watchdog =
+        Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("checkstyle-watchdog-"));
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    // Một Checker đã configure + listener chuyển AuditEvent về sink hiện tại
+    private static class CheckerSlot {
+        Object checker;
+        Method process;
+        volatile Consumer<Issue> sink;
+        volatile boolean replaced; // đã có slot khác thế chỗ (chạy quá budget)
+    }
+
+    @Override
+    public String language() {
+        return "java";
+    }
+
+    @Override
+    public List<String> tools() {
+        return List.of(TOOL);
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public long budgetMs() {
+        return budgetMs;
+    }
+
+    @Override
+    public ReviewResult analyze(String code, ReviewListener listener) throws InterruptedException {
+        long start = System.nanoTime();
+        List<Issue> issues = new ArrayList<>();
+        ToolReport report;
+        BlockingQueue<CheckerSlot> pool = slots();
+        if (pool == null) {
+            report = new ToolReport(TOOL, false, 0, initError);
+        } else {
+            CheckerSlot slot = pool.poll(budgetMs, TimeUnit.MILLISECONDS);
+            if (slot == null) {
+                report = new ToolReport(TOOL, false, elapsedMs(start), "Không có checker rảnh sau " + budgetMs + "ms");
+            } else {
+                report = runOnSlot(pool, slot, code, issues, listener, start);
+            }
+        }
+        if (listener != null) {
+            listener.onToolDone(report);
+        }
+
+        StaticAnalysisService.sortIssues(issues);
+        Map<String, ToolReport> tools = new LinkedHashMap<>();
+        tools.put(TOOL, report);
+        return new ReviewResult(issues, tools, elapsedMs(start));
+    }
+
+    private ToolReport runOnSlot(BlockingQueue<CheckerSlot> pool, CheckerSlot slot, String code, List<Issue> issues,
+            ReviewListener listener, long start) {
+        // Ai lấy được cờ trước (lượt chạy xong, hoặc watchdog hết budget) quyết định số phận slot
+        AtomicBoolean settled = new AtomicBoolean();
+        ScheduledFuture<?> timer = watchdog.schedule(() -> {
+            if (settled.compareAndSet(false, true)) {
+                abandon(pool, slot);
+            }
+        }, budgetMs, TimeUnit.MILLISECONDS);
+        try (AnalyzerInput.ScratchFile scratch = AnalyzerInput.ScratchFile.create(".java", code)) {
+            slot.sink = issue -> {
+                issues.add(issue);
+                if (listener != null) {
+                    listener.onIssue(issue);
+                }
+            };
+            slot.process.invoke(slot.checker, List.of(scratch.path().toFile()));
+            return new ToolReport(TOOL, true, elapsedMs(start), null);
+        } catch (Exception e) {
+            Throwable cause = e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+            return new ToolReport(TOOL, false, elapsedMs(start),
+                cause.getClass().getSimpleName() + ": " + cause.getMessage());
+        } finally {
+            timer.cancel(false);
+            if (settled.compareAndSet(false, true)) {
+                slot.sink = null;
+                pool.offer(slot);
+            } else {
+                abandoned.decrementAndGet();
+                // Slot đã có checker khác thế chỗ -> bỏ hẳn; chưa được thay thì trả lại pool
+                if (!slot.replaced) {
+                    pool.offer(slot);
+                }
+            }
+        }
+    }
+
+    private void abandon(BlockingQueue<CheckerSlot> pool, CheckerSlot slot) {
+        // Người gọi đã nhận timeout: issue đến muộn không được gửi tiếp cho listener
+        slot.sink = null;
+        if (abandoned.incrementAndGet() > maxConcurrency) {
+            System.err.println("⚠ Checkstyle: quá nhiều lượt chạy treo, không tạo thêm checker thay thế");
+            return;
+        }
+        try {
+            pool.offer(newSlot(loader, configuration));
+            slot.replaced = true;
+            System.err.println("⚠ Checkstyle chạy quá " + budgetMs + "ms, thay checker mới");
+        } catch (Exception e) {
+            System.err.println("⚠ Không tạo được checker thay thế: " + e.getMessage());
+        }
+    }
+
+    // Tạo các Checker ở lần dùng đầu tiên; lỗi (thiếu jar, config sai) được nhớ lại
+    private synchronized BlockingQueue<CheckerSlot> slots() {
+        if (slots != null || initError != null) {
+            return slots;
+        }
+        if (!Files.isRegularFile(Paths.get(JAR))) {
+            initError = "Không tìm thấy checkstyle jar: " + JAR + " (-Ddevreview.checkstyle.jar)";
+            return null;
+        }
+        try {
+            loader = new URLClassLoader(new URL[]{new File(JAR).toURI().toURL()},
+                CheckstyleAnalyzer.class.getClassLoader());
+            Class<?> resolverClass = loader.loadClass(PKG + "PropertyResolver");
+            Object expander = loader.loadClass(PKG + "PropertiesExpander")
+                .getConstructor(Properties.class).newInstance(System.getProperties());
+            configuration = loader.loadClass(PKG + "ConfigurationLoader")
+                .getMethod("loadConfiguration", String.class, resolverClass)
+                .invoke(null, CONFIG, expander);
+
+            BlockingQueue<CheckerSlot> created = new ArrayBlockingQueue<>(maxConcurrency);
+            for (int i = 0; i < maxConcurrency; i++) {
+                created.add(newSlot(loader, configuration));
+            }
+            slots = created;
+            System.out.println("✅ Checkstyle chạy in-process: " + JAR + " (" + maxConcurrency + " checker)");
+        } catch (Exception e) {
+            Throwable cause = e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+            initError = "Không khởi tạo được checkstyle: " + cause.getClass().getSimpleName() + ": " + cause.getMessage();
+            System.err.println("⚠ " + initError);
+        }
+        return slots;
+    }
+
+    private static CheckerSlot newSlot(ClassLoader loader, Object configuration) throws Exception {
+        CheckerSlot slot = new CheckerSlot();
+        Class<?> checkerClass = loader.loadClass(PKG + "Checker");
+        Class<?> listenerClass = loader.loadClass(PKG + "api.AuditListener");
+        slot.checker = checkerClass.getConstructor().newInstance();
+        checkerClass.getMethod("setModuleClassLoader", ClassLoader.class).invoke(slot.checker, loader);
+        checkerClass.getMethod("configure", loader.loadClass(PKG + "api.Configuration"))
+            .invoke(slot.checker, configuration);
+
+        Object auditListener = Proxy.newProxyInstance(loader, new Class<?>[]{listenerClass}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "addError":
+                    Consumer<Issue> sink = slot.sink;
+                    if (sink != null) {
+                        sink.accept(toIssue(args[0]));
+                    }
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "DevReviewAuditListener";
+                default:
+                    return null; // auditStarted, fileStarted, addException...
+            }
+        });
+        checkerClass.getMethod("addListener", listenerClass).invoke(slot.checker, auditListener);
+        slot.process = checkerClass.getMethod("process", List.class);
+        return slot;
+    }
+
+    // AuditEvent -> Issue (qua reflection vì class nằm trong classloader của jar)
+    private static Issue toIssue(Object event) throws Exception {
+        Class<?> type = event.getClass();
+        String severity = String.valueOf(type.getMethod("getSeverityLevel").invoke(event));
+        String source = String.valueOf(type.getMethod("getSourceName").invoke(event));
+        return new Issue(
+            "error".equalsIgnoreCase(severity) ? "ERROR" : "WARNING",
+            (Integer) type.getMethod("getLine").invoke(event),
+            (Integer) type.getMethod("getColumn").invoke(event),
+            source.substring(source.lastIndexOf('.') + 1).replace("Check", ""),
+            String.valueOf(type.getMethod("getMessage").invoke(event)),
+            TOOL);
+    }
+
+    private static long elapsedMs(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// ✅ Cắt file lớn thành các phần để explain song song. Chỉ cắt ở ranh giới hàm / class:
+//  - Python: đầu mỗi def / class top-level (class quá lớn thì cắt ở từng method)
+//  - ngôn ngữ dùng ngoặc nhọn: dòng bắt đầu ở độ sâu {} <= 1 ngay sau '}' hoặc dòng trống
+// Ranh giới đóng phần được chọn theo nội dung (hash dòng đầu của đoạn) chứ không theo vị
+// trí, nên sửa một hàm chỉ làm đổi phần chứa hàm đó, các phần khác giữ nguyên -> cache.
+public class CodeChunker {
+
+    public static class Chunk {
+        public final int startLine; // 1-based
+        public final int endLine;   // 1-based, inclusive
+        public final String text;
+
+        Chunk(int startLine, int endLine, String text) {
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.text = text;
+        }
+    }
+
+    // Không có tokenizer của Gemini ở server: ~4 ký tự / token là đủ để quyết định cắt
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+
+    public static List<Chunk> split(String language, String code, int maxTokens) {
+        List<String> lines = Arrays.asList(code.replace("\r\n", "\n").split("\n", -1));
+        boolean[] boundary = "python".equalsIgnoreCase(language)
+                ? pythonBoundaries(code, lines.size(), maxTokens)
+                : braceBoundaries(lines);
+        boundary[0] = true;
+
+        // Đoạn = các dòng giữa hai ranh giới liên tiếp
+        List<int[]> segments = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= lines.size(); i++) {
+            if (i == lines.size() || boundary[i]) {
+                segments.add(new int[] {start, i - 1});
+                start = i;
+            }
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        int chunkStart = -1;
+        int chunkTokens = 0;
+        for (int[] segment : segments) {
+            int tokens = tokens(lines, segment[0], segment[1]);
+            boolean anchor = (lines.get(segment[0]).strip().hashCode() & 3) == 0;
+            if (chunkStart >= 0 && (chunkTokens + tokens > maxTokens || (anchor && chunkTokens >= maxTokens / 2))) {
+                addChunk(chunks, lines, chunkStart, segment[0] - 1, maxTokens);
+                chunkStart = -1;
+                chunkTokens = 0;
+            }
+            if (chunkStart < 0) {
+                chunkStart = segment[0];
+            }
+            chunkTokens += tokens;
+        }
+        if (chunkStart >= 0) {
+            addChunk(chunks, lines, chunkStart, lines.size() - 1, maxTokens);
+        }
+        return chunks;
+    }
+
+    // Một hàm dài hơn cả giới hạn: đành cắt theo dòng
+    private static void addChunk(List<Chunk> chunks, List<String> lines, int from, int to, int maxTokens) {
+        int start = from;
+        int tokens = 0;
+        for (int i = from; i <= to; i++) {
+            int lineTokens = estimateTokens(lines.get(i)) + 1;
+            if (i > start && tokens + lineTokens > maxTokens) {
+                chunks.add(chunk(lines, start, i - 1));
+                start = i;
+                tokens = 0;
+            }
+            tokens += lineTokens;
+        }
+        Chunk last = chunk(lines, start, to);
+        if (!last.text.isBlank()) {
+            chunks.add(last);
+        }
+    }
+
+    private static Chunk chunk(List<String> lines, int from, int to) {
+        return new Chunk(from + 1, to + 1, String.join("\n", lines.subList(from, to + 1)));
+    }
+
+    private static int tokens(List<String> lines, int from, int to) {
+        int tokens = 0;
+        for (int i = from; i <= to; i++) {
+            tokens += estimateTokens(lines.get(i)) + 1;
+        }
+        return tokens;
+    }
+
+    private static boolean[] pythonBoundaries(String code, int lineCount, int maxTokens) {
+        boolean[] boundary = new boolean[lineCount];
+        PythonUnits.Split split = PythonUnits.split(code);
+        for (PythonUnits.Unit unit : split.units) {
+            boundary[unit.startLine - 1] = true;
+            if (estimateTokens(unit.text) > maxTokens) {
+                for (PythonUnits.Unit method : unit.methods) {
+                    boundary[method.startLine - 1] = true;
+                }
+            }
+        }
+        return boundary;
+    }
+
+    private static boolean[] braceBoundaries(List<String> lines) {
+        boolean[] boundary = new boolean[lines.size()];
+        int depth = 0;
+        boolean blockComment = false;
+        boolean previousClosed = true;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            boundary[i] = depth <= 1 && previousClosed && !line.isBlank() && !blockComment;
+            char quote = 0;
+            for (int j = 0; j < line.length(); j++) {
+                char ch = line.charAt(j);
+                char next = j + 1 < line.length() ? line.charAt(j + 1) : 0;
+                if (blockComment) {
+                    if (ch == '*' && next == '/') {
+                        blockComment = false;
+                        j++;
+                    }
+                } else if (quote != 0) {
+                    if (ch == '\\') {
+                        j++;
+                    } else if (ch == quote) {
+                        quote = 0;
+                    }
+                } else if (ch == '/' && next == '/') {
+                    break;
+                } else if (ch == '/' && next == '*') {
+                    blockComment = true;
+                    j++;
+                } else if (ch == '"' || ch == '\'' || ch == '`') {
+                    quote = ch;
+                } else if (ch == '{') {
+                    depth++;
+                } else if (ch == '}') {
+                    depth = Math.max(0, depth - 1);
+                }
+            }
+            String trimmed = line.strip();
+            previousClosed = trimmed.isEmpty() || trimmed.endsWith("}") || trimmed.endsWith("};");
+        }
+        return boundary;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.service;
+
+import java.util.Set;
+
+// ✅ Chuẩn hoá code làm key cache cho explain / suggest: bỏ comment, bỏ dòng trống,
+// gộp khoảng trắng trong dòng. Thụt lề đầu dòng được giữ (Python phụ thuộc vào nó),
+// nội dung chuỗi giữ nguyên. Hai đoạn code chỉ khác comment / format -> cùng key.
+public class CodeNormalizer {
+
+    private static final Set<String> HASH_COMMENTS = Set.of("python", "ruby", "shell", "bash", "perl", "r");
+    private static final Set<String> SLASH_COMMENTS = Set.of("java", "javascript", "typescript", "c", "cpp",
+        "c++", "csharp", "c#", "go", "kotlin", "swift", "rust", "scala", "dart");
+
+    public static String normalize(String language, String code) {
+        if (code == null) {
+            return "";
+        }
+        boolean hash = HASH_COMMENTS.contains(language) || "php".equals(language);
+        boolean slash = SLASH_COMMENTS.contains(language) || "php".equals(language);
+
+        StringBuilder out = new StringBuilder(code.length());
+        StringBuilder line = new StringBuilder();
+        boolean lineStart = true;
+        boolean pendingSpace = false;
+        char quote = 0;
+        boolean blockComment = false;
+        String text = code.replace("\r\n", "\n").replace('\r', '\n');
+
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            char next = i + 1 < text.length() ? text.charAt(i + 1) : 0;
+            if (blockComment) {
+                if (ch == '*' && next == '/') {
+                    blockComment = false;
+                    i++;
+                    if (line.toString().isBlank()) {
+                        // comment khối ở đầu dòng: khoảng trắng trước / sau nó không phải thụt lề
+                        line.setLength(0);
+                        lineStart = false;
+                    }
+                } else if (ch == '\n') {
+                    lineStart = endLine(out, line);
+                    pendingSpace = false;
+                }
+                continue;
+            }
+            if (quote != 0) {
+                line.append(ch);
+                if (ch == '\\' && next != 0 && next != '\n') {
+                    line.append(next);
+                    i++;
+                } else if (ch == quote || ch == '\n') {
+                    // chuỗi thường không qua dòng; '\n' trong chuỗi là code lỗi, dừng ở đây
+                    quote = 0;
+                    if (ch == '\n') {
+                        line.setLength(line.length() - 1);
+                        lineStart = endLine(out, line);
+                        pendingSpace = false;
+                    }
+                }
+                continue;
+            }
+            if (ch == '\n') {
+                lineStart = endLine(out, line);
+                pendingSpace = false;
+                continue;
+            }
+            if ((hash && ch == '#') || (slash && ch == '/' && next == '/')) {
+                // bỏ tới cuối dòng
+                while (i + 1 < text.length() && text.charAt(i + 1) != '\n') {
+                    i++;
+                }
+                continue;
+            }
+            if (slash && ch == '/' && next == '*') {
+                blockComment = true;
+                i++;
+                pendingSpace = true;
+                continue;
+            }
+            if (ch == ' ' || ch == '\t' || ch == '\f') {
+                if (lineStart) {
+                    line.append(ch == '\t' ? "    " : " ");
+                } else {
+                    pendingSpace = true;
+                }
+                continue;
+            }
+            if (pendingSpace && line.length() > 0) {
+                line.append(' ');
+            }
+            pendingSpace = false;
+            lineStart = false;
+            line.append(ch);
+            if (ch == '"' || ch == '\'' || ch == '`') {
+                quote = ch;
+            }
+        }
+        endLine(out, line);
+        return out.toString();
+    }
+
+    // Dòng chỉ còn thụt lề (trống / toàn comment) thì bỏ; trả về true = dòng mới bắt đầu
+    private static boolean endLine(StringBuilder out, StringBuilder line) {
+        if (!line.toString().isBlank()) {
+            out.append(line).append('\n');
+        }
+        line.setLength(0);
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+import com.example.service.StaticAnalysisService.ReviewListener;
+import com.example.service.StaticAnalysisService.ReviewResult;
+import com.example.service.StaticAnalysisService.ToolReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// ✅ Analyzer chạy một tool dòng lệnh (eslint, cppcheck, rubocop, golint, php -l...).
+// Lệnh chứa "{file}" thì code được ghi ra file scratch trên tmpfs, ngược lại code
+// được đưa qua stdin. Output được parse theo stream ngay khi tool in ra.
+public class CommandLineAnalyzer implements Analyzer {
+
+    static final String FILE = "{file}";
+
+    // Parse stdout của tool; gọi sink cho mỗi Issue ngay khi đọc được
+    public interface OutputParser {
+        void parse(InputStream output, Consumer<Issue> sink) throws IOException;
+    }
+
+    private final String language;
+    private final String tool;
+    private final String extension;
+    private final List<String> command;
+    private final boolean jsonOutput;
+    private final OutputParser parser;
+    private final int maxConcurrency;
+    private final long budgetMs;
+
+    // maxConcurrency / budgetMs chỉnh được bằng -Ddevreview.<tool>.maxConcurrent / .budgetMs
+    public CommandLineAnalyzer(String language, String tool, String extension, List<String> command,
+            boolean jsonOutput, OutputParser parser, int maxConcurrency, long budgetMs) {
+        this.language = language;
+        this.tool = tool;
+        this.extension = extension;
+        this.command = command;
+        this.jsonOutput = jsonOutput;
+        this.parser = parser;
+        this.maxConcurrency = Integer.getInteger("devreview." + tool + ".maxConcurrent", maxConcurrency);
+        this.budgetMs = Long.getLong("devreview." + tool + ".budgetMs", budgetMs);
+    }
+
+    @Override
+    public String language() {
+        return language;
+    }
+
+    @Override
+    public List<String> tools() {
+        return List.of(tool);
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public long budgetMs() {
+        return budgetMs;
+    }
+
+    @Override
+    public ReviewResult analyze(String code, ReviewListener listener) throws InterruptedException {
+        long start = System.nanoTime();
+        List<Issue> issues = new ArrayList<>();
+        ToolReport report;
+        boolean useFile = command.contains(FILE);
+        try (AnalyzerInput.ScratchFile scratch = useFile ? AnalyzerInput.ScratchFile.create(extension, code) : null) {
+            List<String> cmd = new ArrayList<>(command.size());
+            for (String arg : command) {
+                cmd.add(FILE.equals(arg) ? scratch.path().toAbsolutePath().toString() : arg);
+            }
+            // JSON: bỏ stderr để cảnh báo của tool không làm hỏng JSON
+            GovernedProcess.Result result = GovernedProcess.runStreaming(cmd, useFile ? null : code, budgetMs,
+                !jsonOutput, output -> parser.parse(output, issue -> {
+                    issue.tool = tool;
+                    issues.add(issue);
+                    if (listener != null) {
+                        listener.onIssue(issue);
+                    }
+                }));
+            report = new ToolReport(tool, !result.timedOut, elapsedMs(start),
+                result.timedOut ? "Vượt quá " + budgetMs + "ms, kết quả chưa đầy đủ" : null);
+            report.truncated = result.truncated;
+        } catch (IOException e) {
+            report = new ToolReport(tool, false, elapsedMs(start), e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        if (listener != null) {
+            listener.onToolDone(report);
+        }
+
+        StaticAnalysisService.sortIssues(issues);
+        Map<String, ToolReport> tools = new LinkedHashMap<>();
+        tools.put(tool, report);
+        return new ReviewResult(issues, tools, elapsedMs(start));
+    }
+
+    private static long elapsedMs(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
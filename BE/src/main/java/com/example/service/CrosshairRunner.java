@@ -0,0 +1,233 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+// ✅ CrossHair theo từng hàm: tách module thành các hàm có contract, mỗi hàm một lần
+// "crosshair check --analysis_kind=... file.py:LINE" chạy song song (worker pool nếu
+// có, không thì process riêng trên cùng một file scratch). Thời gian tổng ~ số hàm
+// / số core thay vì một lần symbolic execution tuần tự cho cả module.
+// Output "file.py:LINE: error: ..." mang số dòng thật của file gốc.
+// CrossHair chỉ được một phần worker pool (PARALLELISM) và mỗi request chạy tối đa
+// PER_REQUEST hàm cùng lúc, để file nhiều hàm không chiếm hết worker của pylint/mypy.
+public class CrosshairRunner {
+
+    private static final int PARALLELISM = Integer.getInteger("devreview.crosshair.parallelism",
+        Math.max(1, PythonWorkerPool.SIZE * Integer.getInteger("devreview.crosshair.poolSharePercent", 50) / 100));
+    private static final int PER_REQUEST =
+        Math.min(PARALLELISM, Integer.getInteger("devreview.crosshair.perRequest", Math.max(1, PARALLELISM / 2)));
+    // Hàng đợi có giới hạn; đầy thì từ chối, các hàm chưa chạy coi như chưa được kiểm chứng
+    private static final int QUEUE_CAPACITY = Integer.getInteger("devreview.crosshair.queue", PARALLELISM * 4);
+    // Executor riêng: task con không bao giờ chờ nhau nên không thể deadlock với TOOL_EXECUTOR
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
+        PARALLELISM, PARALLELISM, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+        StaticAnalysisService.daemonThreads("crosshair-"),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    // Contract theo từng --analysis_kind của CrossHair. Hàm chỉ có type hint thì CrossHair
+    // không có điều kiện nào để kiểm chứng -> không chạy.
+    private static final Pattern PEP316 = Pattern.compile("^\\s*(?:pre|post|inv)(?:\\[[^]]*])?:", Pattern.MULTILINE);
+    private static final Pattern ICONTRACT =
+        Pattern.compile("^\\s*@(?:icontract\\.)?(?:require|ensure|invariant)\\b", Pattern.MULTILINE);
+    private static final Pattern DEAL = Pattern.compile("^\\s*@deal\\.", Pattern.MULTILINE);
+    private static final Pattern DOCSTRING = Pattern.compile("^[rRuU]?(?:\"\"\"|'''|\"|').*");
+
+    static class Target {
+        final int line;
+        final String analysisKind; // vd "PEP316,asserts"
+
+        Target(int line, String analysisKind) {
+            this.line = line;
+            this.analysisKind = analysisKind;
+        }
+    }
+
+    // Hàm top-level và method của class có contract: dòng header + loại contract
+    static List<Target> targets(String code) {
+        return targets(code, line -> true);
+    }
+
+    // Chỉ các hàm có dòng header thoả lines (vd. các unit vừa sửa của IncrementalReview)
+    static List<Target> targets(String code, IntPredicate headerLines) {
+        PythonUnits.Split split = PythonUnits.split(code);
+        List<Target> targets = new ArrayList<>();
+        for (PythonUnits.Unit unit : split.units) {
+            boolean isClass = "class".equals(unit.kind);
+            // Invariant của class áp lên mọi method
+            Set<String> classKinds = isClass ? kinds(split, unit, classPrelude(split, unit)) : Set.of();
+            for (PythonUnits.Unit function : isClass ? unit.methods : List.of(unit)) {
+                Set<String> kinds = new TreeSet<>(classKinds);
+                kinds.addAll(kinds(split, function, function.text));
+                if (!kinds.isEmpty() && headerLines.test(function.headerLine)) {
+                    targets.add(new Target(function.headerLine, String.join(",", kinds)));
+                }
+            }
+        }
+        return targets;
+    }
+
+    private static Set<String> kinds(PythonUnits.Split split, PythonUnits.Unit unit, String text) {
+        Set<String> kinds = new TreeSet<>();
+        if (PEP316.matcher(text).find()) {
+            kinds.add("PEP316");
+        }
+        if (ICONTRACT.matcher(text).find()) {
+            kinds.add("icontract");
+        }
+        if (DEAL.matcher(text).find()) {
+            kinds.add("deal");
+        }
+        if ("def".equals(unit.kind) && startsWithAssert(split, unit)) {
+            kinds.add("asserts");
+        }
+        return kinds;
+    }
+
+    // Decorator + header + docstring của class, không gồm thân các method
+    private static String classPrelude(PythonUnits.Split split, PythonUnits.Unit unit) {
+        int end = unit.methods.isEmpty() ? unit.endLine : unit.methods.get(0).startLine - 1;
+        return String.join("\n", split.lines.subList(unit.startLine - 1, end));
+    }
+
+    // Chế độ "asserts" của CrossHair chỉ xét hàm có câu lệnh đầu tiên (sau docstring) là assert
+    private static boolean startsWithAssert(PythonUnits.Split split, PythonUnits.Unit function) {
+        int i = function.headerLine;
+        while (i < function.endLine && !split.endsWithColon[i - 1]) {
+            i++;
+        }
+        boolean docstringSkipped = false;
+        for (i++; i <= function.endLine; i++) {
+            String line = split.lines.get(i - 1).strip();
+            if (!split.logicalStart[i - 1] || line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (!docstringSkipped && DOCSTRING.matcher(line).matches()) {
+                docstringSkipped = true;
+                continue;
+            }
+            return line.startsWith("assert ") || line.startsWith("assert(");
+        }
+        return false;
+    }
+
+    public static GovernedProcess.Result run(String code, long budgetMs, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        return run(code, budgetMs, onLine, line -> true);
+    }
+
+    public static GovernedProcess.Result run(String code, long budgetMs, Consumer<String> onLine,
+            IntPredicate headerLines) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        List<Target> targets = targets(code, headerLines);
+        if (targets.isEmpty()) {
+            // Không có hàm nào có contract -> CrossHair không có gì để kiểm chứng
+            return new GovernedProcess.Result(new ArrayList<>(), false, false, 0, 0);
+        }
+
+        // Nhiều thread cùng báo dòng -> tuần tự hoá trước khi giao cho người gọi
+        Object lock = new Object();
+        Consumer<String> safeOnLine = onLine == null ? null : line -> {
+            synchronized (lock) {
+                onLine.accept(line);
+            }
+        };
+        List<String> baseArgs = PythonAnalyzer.toolArgs(StaticAnalysisService.CROSSHAIR);
+        PythonWorkerPool pool = PythonWorkerPool.shared();
+        boolean useWorkers = pool.supports(StaticAnalysisService.CROSSHAIR);
+
+        try (AnalyzerInput.ScratchFile scratch = useWorkers ? null : AnalyzerInput.ScratchFile.create(".py", code)) {
+            // Tối đa PER_REQUEST task, mỗi task lần lượt lấy hàm tiếp theo của request này
+            Queue<Target> pending = new ConcurrentLinkedQueue<>(targets);
+            List<GovernedProcess.Result> results = Collections.synchronizedList(new ArrayList<>());
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < Math.min(PER_REQUEST, targets.size()); i++) {
+                Future<Void> future = StaticAnalysisService.trySubmit(EXECUTOR, () -> {
+                    Target target;
+                    while (System.nanoTime() < deadline && (target = pending.poll()) != null) {
+                        long remaining = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                        results.add(check(target, code, baseArgs, useWorkers ? pool : null, scratch, remaining,
+                            safeOnLine));
+                    }
+                    return null;
+                });
+                if (future == null) {
+                    break;
+                }
+                futures.add(future);
+            }
+
+            boolean truncated = futures.isEmpty();
+            boolean timedOut = false;
+            try {
+                for (Future<?> future : futures) {
+                    try {
+                        future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException e) {
+                        future.cancel(true);
+                        timedOut = true;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        }
+                        throw new IOException(cause.getMessage(), cause);
+                    }
+                }
+            } finally {
+                futures.forEach(f -> f.cancel(true));
+            }
+
+            List<String> lines = new ArrayList<>();
+            int exitCode = 0;
+            synchronized (results) {
+                for (GovernedProcess.Result result : results) {
+                    lines.addAll(result.lines);
+                    truncated |= result.truncated;
+                    timedOut |= result.timedOut;
+                    exitCode = Math.max(exitCode, result.exitCode);
+                }
+            }
+            if (!futures.isEmpty() && !pending.isEmpty()) {
+                // Hết budget trước khi tới lượt các hàm còn lại
+                timedOut = true;
+            }
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            System.out.println("CrossHair: " + targets.size() + " hàm trong " + elapsedMs + "ms");
+            return new GovernedProcess.Result(lines, truncated || timedOut, timedOut, exitCode, elapsedMs);
+        }
+    }
+
+    private static GovernedProcess.Result check(Target target, String code, List<String> baseArgs,
+            PythonWorkerPool pool, AnalyzerInput.ScratchFile scratch, long remaining, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        List<String> args = new ArrayList<>(baseArgs);
+        args.add("--analysis_kind=" + target.analysisKind);
+        if (pool != null) {
+            try {
+                GovernedProcess.Result result = GovernedProcess.bounded(
+                    pool.run(StaticAnalysisService.CROSSHAIR, args, code, ":" + target.line, remaining), 0);
+                if (onLine != null) {
+                    result.lines.forEach(onLine);
+                }
+                return result;
+            } catch (PythonWorkerPool.WorkerUnavailableException e) {
+                // Worker bận hết -> coi như hàm này chưa được kiểm chứng
+                return new GovernedProcess.Result(new ArrayList<>(), true, false, 0, 0);
+            } catch (InterruptedIOException e) {
+                return new GovernedProcess.Result(new ArrayList<>(), true, true, -1, 0);
+            }
+        }
+        List<String> command = new ArrayList<>();
+        command.add(StaticAnalysisService.CROSSHAIR);
+        command.addAll(args);
+        command.add(scratch.path() + ":" + target.line);
+        return GovernedProcess.run(command, null, remaining, onLine);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// ✅ Giữ sẵn vài mypy daemon (dmypy), mỗi daemon một workspace riêng trên tmpfs.
+// Daemon giữ cache typeshed/stdlib trong RAM nên lần check sau chỉ phân tích lại
+// snippet thay vì dựng lại toàn bộ như mypy "lạnh". Daemon chết thì được khởi
+// động lại; trong lúc đó request fallback về worker pool / process riêng.
+public class DmypyPool {
+
+    private static final String DMYPY = System.getProperty("devreview.dmypy.command", "dmypy");
+    private static final boolean ENABLED =
+        Boolean.parseBoolean(System.getProperty("devreview.dmypy.enabled", "true"));
+    private static final int SIZE = Integer.getInteger("devreview.dmypy.count", 2);
+    private static final long STARTUP_TIMEOUT_MS = Long.getLong("devreview.dmypy.startupTimeoutMs", 60_000L);
+    // Không có daemon rảnh sau khoảng này thì chạy mypy thường, không xếp hàng lâu
+    private static final long ACQUIRE_TIMEOUT_MS = Long.getLong("devreview.dmypy.acquireTimeoutMs", 2_000L);
+    // Daemon tự tắt khi idle quá lâu (phòng trường hợp JVM chết không kịp stop)
+    private static final long IDLE_SHUTDOWN_S = Long.getLong("devreview.dmypy.idleShutdownS", 3_600L);
+    private static final long RESTART_BACKOFF_MS = Long.getLong("devreview.dmypy.restartBackoffMs", 5_000L);
+    private static final int MAX_FAILED_STARTS = 3;
+    private static final int MAX_CLIENT_OUTPUT = 64 * 1024;
+    private static final long STATUS_TIMEOUT_MS = 5_000L;
+    // Output client khi daemon chết / không kết nối được (exit 2 thôi thì chưa đủ: mypy
+    // cũng trả 2 cho "blocking error" như lỗi cú pháp trong snippet)
+    private static final List<String> DEAD_MARKERS = List.of("Daemon has died", "Daemon crashed",
+        "Daemon is not running", "Daemon has stopped", "No status file", "Response:", "Connection refused",
+        "Broken pipe", "Timed out waiting for daemon");
+    // Dòng chẩn đoán bình thường của mypy ("file.py:1: error: ..." / "file.py:1:5: note: ...")
+    private static final Pattern DIAGNOSTIC = Pattern.compile("^.*:\\d+(?::\\d+)?: (?:error|note|warning): .*");
+
+    private static volatile DmypyPool shared;
+
+    private final BlockingQueue<Daemon> idle = new LinkedBlockingQueue<>();
+    private final Set<Daemon> alive = ConcurrentHashMap.newKeySet();
+    private final List<Daemon> daemons = new ArrayList<>();
+    private final ScheduledExecutorService spawner =
+        Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("dmypy-spawn-"));
+    private final AtomicBoolean broken = new AtomicBoolean(false);
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private static class Daemon {
+        final int id;
+        final Path workspace;
+        final Path statusFile;
+        final Path snippet; // tên cố định để daemon check tăng dần trên cùng một module
+        int failedStarts;
+
+        Daemon(int id, Path workspace) {
+            this.id = id;
+            this.workspace = workspace;
+            this.statusFile = workspace.resolve(".dmypy.json");
+            this.snippet = workspace.resolve("snippet.py");
+        }
+    }
+
+    // Pool dùng chung, khởi động lười; trong lúc daemon đang start thì mypy chạy như cũ
+    public static DmypyPool shared() {
+        if (shared == null) {
+            synchronized (DmypyPool.class) {
+                if (shared == null) {
+                    shared = new DmypyPool();
+                    if (ENABLED) {
+                        shared.start();
+                    } else {
+                        shared.broken.set(true);
+                    }
+                }
+            }
+        }
+        return shared;
+    }
+
+    private void start() {
+        for (int i = 0; i < SIZE; i++) {
+            try {
+                Path workspace = AnalyzerInput.scratchDir().resolve("dmypy-" + ProcessHandle.current().pid() + "-" + i);
+                Files.createDirectories(workspace);
+                Daemon daemon = new Daemon(i, workspace);
+                daemons.add(daemon);
+                spawner.submit(() -> spawn(daemon));
+            } catch (IOException e) {
+                System.err.println("❌ Không tạo được workspace cho dmypy: " + e.getMessage());
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "dmypy-shutdown"));
+    }
+
+    public boolean isReady() {
+        return !broken.get() && !alive.isEmpty();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ENABLED && !broken.get());
+        stats.put("size", SIZE);
+        stats.put("alive", alive.size());
+        stats.put("idle", idle.size());
+        stats.put("checks", checks.get());
+        stats.put("restarts", restarts.get());
+        stats.put("fallbacks", fallbacks.get());
+        return stats;
+    }
+
+    // ✅ Check snippet bằng daemon rảnh; output giống "mypy --show-error-codes" nên
+    // MYPY_PATTERN parse được như cũ. Daemon lỗi -> WorkerUnavailableException để
+    // phía gọi fallback.
+    public GovernedProcess.Result check(String code, long budgetMs, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        Daemon daemon = isReady() ? idle.poll(Math.min(budgetMs, ACQUIRE_TIMEOUT_MS), TimeUnit.MILLISECONDS) : null;
+        if (daemon == null) {
+            fallbacks.incrementAndGet();
+            throw new PythonWorkerPool.WorkerUnavailableException("Không có dmypy daemon rảnh");
+        }
+
+        boolean healthy = false;
+        try {
+            Files.writeString(daemon.snippet, code, StandardCharsets.UTF_8);
+            List<String> command = List.of(DMYPY, "--status-file", daemon.statusFile.toString(),
+                "check", daemon.snippet.toString());
+            GovernedProcess.Result result = GovernedProcess.run(command, null, budgetMs, onLine);
+            checks.incrementAndGet();
+            if (result.timedOut) {
+                // Daemon có thể đang kẹt giữa lần check -> khởi động lại cho chắc
+                return result;
+            }
+            if (daemonDied(result, () -> statusOk(daemon))) {
+                fallbacks.incrementAndGet();
+                throw new PythonWorkerPool.WorkerUnavailableException(
+                    "dmypy daemon " + daemon.id + " lỗi: " + String.join(" | ", result.lines));
+            }
+            healthy = true;
+            return result;
+        } finally {
+            if (healthy) {
+                idle.offer(daemon);
+            } else {
+                restart(daemon);
+            }
+        }
+    }
+
+    // Daemon chết khi output client có dấu hiệu mất kết nối; exit 2 mà không có dòng chẩn
+    // đoán nào thì hỏi lại "dmypy status" cho chắc. Exit 2 kèm lỗi cú pháp là kết quả hợp lệ.
+    static boolean daemonDied(GovernedProcess.Result result, BooleanSupplier statusOk) {
+        for (String line : result.lines) {
+            if (DIAGNOSTIC.matcher(line).matches()) {
+                continue; // message của mypy có thể chứa chữ trùng marker (vd. tên class Response)
+            }
+            for (String marker : DEAD_MARKERS) {
+                if (line.contains(marker)) {
+                    return true;
+                }
+            }
+        }
+        if (result.exitCode != 2) {
+            return false;
+        }
+        boolean diagnostics = result.lines.stream().anyMatch(l -> DIAGNOSTIC.matcher(l).matches());
+        return !diagnostics && !statusOk.getAsBoolean();
+    }
+
+    // "dmypy status" thoát 0 khi daemon còn sống và trả lời được
+    private boolean statusOk(Daemon daemon) {
+        try {
+            ProcessBuilder pb = new ProcessBuilder(GovernedProcess.limitedCommand(
+                List.of(DMYPY, "--status-file", daemon.statusFile.toString(), "status"), false));
+            pb.directory(daemon.workspace.toFile());
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            Process process = pb.start();
+            process.getOutputStream().close();
+            if (!process.waitFor(STATUS_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                GovernedProcess.killTree(process);
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void restart(Daemon daemon) {
+        alive.remove(daemon);
+        restarts.incrementAndGet();
+        if (!broken.get()) {
+            spawner.schedule(() -> spawn(daemon), RESTART_BACKOFF_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void spawn(Daemon daemon) {
+        try {
+            // Dọn daemon cũ (nếu có) đang giữ status file này
+            exec(List.of(DMYPY, "--status-file", daemon.statusFile.toString(), "kill"), daemon, 10_000L);
+
+            List<String> command = new ArrayList<>(List.of(DMYPY, "--status-file", daemon.statusFile.toString(),
+                "start", "--timeout", String.valueOf(IDLE_SHUTDOWN_S), "--"));
+            command.addAll(PythonAnalyzer.toolArgs(StaticAnalysisService.MYPY));
+            String output = exec(command, daemon, STARTUP_TIMEOUT_MS);
+            if (!Files.isRegularFile(daemon.statusFile)) {
+                throw new IOException(output.isBlank() ? "không có status file" : output.trim());
+            }
+            // Check một snippet rỗng để daemon nạp sẵn typeshed trước request đầu tiên
+            Files.writeString(daemon.snippet, "", StandardCharsets.UTF_8);
+            exec(List.of(DMYPY, "--status-file", daemon.statusFile.toString(), "check", daemon.snippet.toString()),
+                daemon, STARTUP_TIMEOUT_MS);
+
+            daemon.failedStarts = 0;
+            alive.add(daemon);
+            idle.offer(daemon);
+            System.out.println("✅ dmypy daemon " + daemon.id + " sẵn sàng (" + daemon.workspace + ")");
+        } catch (Exception e) {
+            daemon.failedStarts++;
+            System.err.println("❌ Không khởi động được dmypy daemon " + daemon.id + ": " + e.getMessage());
+            if (daemon.failedStarts < MAX_FAILED_STARTS && !broken.get()) {
+                spawner.schedule(() -> spawn(daemon), RESTART_BACKOFF_MS * daemon.failedStarts, TimeUnit.MILLISECONDS);
+            } else if (alive.isEmpty() && daemons.stream().allMatch(d -> d.failedStarts >= MAX_FAILED_STARTS)) {
+                // Chưa cài mypy / dmypy -> tắt hẳn, mypy chạy theo đường cũ
+                broken.set(true);
+            }
+        }
+    }
+
+    // Chạy lệnh client dmypy trong workspace của daemon; không dùng prlimit CPU vì
+    // "dmypy start" sinh ra daemon sống lâu, RLIMIT_CPU sẽ giết nó giữa chừng
+    private static String exec(List<String> command, Daemon daemon, long timeoutMs)
+            throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder(GovernedProcess.limitedCommand(command, false));
+        Path log = daemon.workspace.resolve("client.log");
+        pb.directory(daemon.workspace.toFile());
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(log.toFile());
+        Process process = pb.start();
+        process.getOutputStream().close();
+        if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+            GovernedProcess.killTree(process);
+            throw new IOException(command.get(3) + " quá " + timeoutMs + "ms");
+        }
+        try (InputStream in = Files.newInputStream(log)) {
+            return new String(in.readNBytes(MAX_CLIENT_OUTPUT), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void shutdown() {
+        broken.set(true);
+        spawner.shutdownNow();
+        for (Daemon daemon : daemons) {
+            try {
+                exec(List.of(DMYPY, "--status-file", daemon.statusFile.toString(), "stop"), daemon, 5_000L);
+            } catch (Exception ignored) {
+                // daemon vẫn tự tắt sau IDLE_SHUTDOWN_S
+            }
+        }
+    }
+}
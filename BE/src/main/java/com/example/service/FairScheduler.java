@@ -0,0 +1,410 @@
+package com.example.service;
+
+import com.example.exception.ServiceOverloadedException;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// ✅ Chia lượt công bằng giữa các user cho review / explain / suggest:
+//  - Token bucket theo user: vượt tốc độ cho phép -> 429 ngay, không chiếm chỗ chờ
+//  - Mỗi user giữ tối đa MAX_PER_USER request (đang chạy + đang chờ); vượt -> 429 ngay,
+//    để một user không lấp đầy hàng đợi (và giữ thread request) của mọi người
+//  - Weighted fair queuing (self-clocked): mỗi request nhận "finish tag" =
+//    max(đồng hồ ảo, tag cuối của user) + cost / weight, luôn chạy tag nhỏ nhất
+//    trước -> user gửi 100 request không chặn được user gửi 1 request
+//  - Hai lane: INTERACTIVE được ưu tiên; BULK (batch, review deep) bị giới hạn số
+//    suất nhưng luôn giữ ít nhất BULK_RESERVED suất để không bị bỏ đói
+public class FairScheduler {
+
+    public enum Lane { INTERACTIVE, BULK }
+
+    private static final int SLOTS = Integer.getInteger("devreview.fair.slots",
+        Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+    private static final int BULK_MAX = Integer.getInteger("devreview.fair.bulkMaxSlots", Math.max(1, SLOTS / 2));
+    private static final int BULK_RESERVED = Integer.getInteger("devreview.fair.bulkReservedSlots", 1);
+    private static final long MAX_WAIT_MS = Long.getLong("devreview.fair.maxWaitMs", 30_000L);
+    private static final int BULK_COST = Integer.getInteger("devreview.fair.bulkCost", 5);
+    // Token bucket: số request / giây và burst tối đa cho mỗi user
+    private static final double RATE_PER_SEC =
+        Double.parseDouble(System.getProperty("devreview.fair.ratePerSec", "5"));
+    private static final int BURST = Integer.getInteger("devreview.fair.burst", 20);
+    private static final int MAX_PER_USER = Integer.getInteger("devreview.fair.maxPerUser", Math.max(2, SLOTS / 2));
+    private static final int MAX_TRACKED_USERS = 10_000;
+    // Ngăn cách IP với user tự khai trong khoá của userKey
+    private static final char CLAIM = '#';
+
+    // Thread chờ lượt cho submitAsync; số việc chờ đã bị chặn bởi maxPerUser của từng user
+    private static final ExecutorService WAITERS =
+        Executors.newCachedThreadPool(StaticAnalysisService.daemonThreads("fair-wait-"));
+
+    private static final FairScheduler SHARED = new FairScheduler(SLOTS, BULK_MAX, BULK_RESERVED, MAX_WAIT_MS,
+        BULK_COST, RATE_PER_SEC, BURST, MAX_PER_USER, System::currentTimeMillis);
+
+    private final int slots;
+    private final int bulkMax;
+    private final int bulkReserved;
+    private final long maxWaitMs;
+    private final int bulkCost;
+    private final double ratePerSec;
+    private final int burst;
+    private final int maxPerUser;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, PriorityQueue<Ticket>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> active = new EnumMap<>(Lane.class);
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    // Số request đang chạy + đang chờ của từng user (xoá khi về 0)
+    private final Map<String, Integer> outstanding = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+
+    // Mỗi user một AtomicLong (token << 42 | thời điểm nạp cuối), cập nhật bằng CAS;
+    // ConcurrentHashMap chia bin theo hash nên các user không tranh nhau một khoá chung
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private final long epochMs;
+    private static final long TIME_MASK = (1L << 42) - 1;
+    private static final int MILLI_TOKENS = 1_000;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong userCapped = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+
+    FairScheduler(int slots, int bulkMax, int bulkReserved, long maxWaitMs, int bulkCost, double ratePerSec,
+            int burst, int maxPerUser, LongSupplier clock) {
+        this.slots = slots;
+        this.bulkMax = bulkMax;
+        this.bulkReserved = bulkReserved;
+        this.maxWaitMs = maxWaitMs;
+        this.bulkCost = bulkCost;
+        this.ratePerSec = ratePerSec;
+        this.burst = burst;
+        this.maxPerUser = maxPerUser;
+        this.clock = clock;
+        this.epochMs = clock.getAsLong();
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new PriorityQueue<>(Comparator.<Ticket>comparingDouble(t -> t.finish)
+                .thenComparingLong(t -> t.seq)));
+            active.put(lane, 0);
+        }
+    }
+
+    public static FairScheduler shared() {
+        return SHARED;
+    }
+
+    // Một suất chạy đã được cấp; close() trả suất (gọi nhiều lần cũng chỉ trả một lần)
+    public class Ticket implements AutoCloseable {
+        final String user;
+        final Lane lane;
+        final double finish;
+        final long seq;
+        final CountDownLatch granted = new CountDownLatch(1);
+        boolean running;
+        boolean closed;
+
+        Ticket(String user, Lane lane, double finish, long seq) {
+            this.user = user;
+            this.lane = lane;
+            this.finish = finish;
+            this.seq = seq;
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed || !running) {
+                    return;
+                }
+                closed = true;
+                active.merge(lane, -1, Integer::sum);
+                release(user);
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Khoá định danh: userId / username trong body chưa được xác thực, client đổi tuỳ ý được,
+    // nên token bucket, cap và finish tag luôn theo IP. Phần "#id:.." / "#user:.." sau IP
+    // chỉ dùng để tra weight (devreview.fair.weight.<id:5|user:x>).
+    public static String userKey(String user, Long userId, String remoteAddr) {
+        String key = "ip:" + remoteAddr;
+        if (userId != null) {
+            return key + CLAIM + "id:" + userId;
+        }
+        if (user != null && !user.isBlank()) {
+            return key + CLAIM + "user:" + user.trim();
+        }
+        return key;
+    }
+
+    // Phần dùng cho bucket / cap / finish tag (bỏ user tự khai)
+    static String limitKey(String user) {
+        int claim = user.indexOf(CLAIM);
+        return claim < 0 ? user : user.substring(0, claim);
+    }
+
+    private static double weight(String user) {
+        int claim = user.indexOf(CLAIM);
+        String weightKey = claim < 0 ? user : user.substring(claim + 1);
+        return Math.max(1, Integer.getInteger("devreview.fair.weight." + weightKey, 1));
+    }
+
+    public <T> T call(String user, Lane lane, Callable<T> work) throws Exception {
+        try (Ticket ticket = acquire(user, lane)) {
+            return work.call();
+        }
+    }
+
+    // Việc bất đồng bộ (gọi Gemini): giữ suất tới khi future xong, không giữ thread.
+    // Huỷ future trả về thì huỷ luôn việc bên trong (và suất được trả khi nó dừng).
+    public <T> CompletableFuture<T> callAsync(String user, Lane lane, Supplier<CompletableFuture<T>> work)
+            throws InterruptedException {
+        Ticket ticket = acquire(user, lane);
+        try {
+            CompletableFuture<T> future = work.get();
+            return GeminiClient.cancelUpstream(future.whenComplete((result, error) -> ticket.close()), future);
+        } catch (RuntimeException e) {
+            ticket.close();
+            throw e;
+        }
+    }
+
+    // ✅ Việc nền không chặn người gọi (vd. review nền sau /review): cap và token của user
+    // được kiểm tra ngay (vượt -> ServiceOverloadedException), chỉ phần chờ tới lượt chạy
+    // trên thread riêng. Chờ quá maxWaitMs thì future lỗi ServiceOverloadedException.
+    public <T> CompletableFuture<T> submitAsync(String user, Lane lane, Supplier<CompletableFuture<T>> work) {
+        Ticket ticket = enqueue(user, lane);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        WAITERS.execute(() -> {
+            try {
+                awaitGrant(ticket);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                work.get().whenComplete((value, error) -> {
+                    ticket.close();
+                    if (error != null) {
+                        result.completeExceptionally(GeminiClient.unwrap(error));
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (RuntimeException e) {
+                ticket.close();
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    // Chờ tới lượt; vượt số request mỗi user, hết token hoặc chờ quá maxWaitMs
+    // -> ServiceOverloadedException (429)
+    public Ticket acquire(String user, Lane lane) throws InterruptedException {
+        return awaitGrant(enqueue(user, lane));
+    }
+
+    // Giữ chỗ của user, lấy token rồi xếp ticket vào hàng đợi (không chờ)
+    private Ticket enqueue(String claimedUser, Lane lane) {
+        String user = limitKey(claimedUser);
+        lock.lock();
+        try {
+            // Giữ chỗ trước khi lấy token: request bị từ chối vì cap không tốn token
+            if (outstanding.getOrDefault(user, 0) >= maxPerUser) {
+                userCapped.incrementAndGet();
+                throw new ServiceOverloadedException("Bạn đang có " + maxPerUser
+                    + " yêu cầu chưa xong, chờ chúng hoàn tất rồi thử lại", 1);
+            }
+            outstanding.merge(user, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+
+        int cost = lane == Lane.BULK ? bulkCost : 1;
+        long retryAfter = takeTokens(user, cost);
+        if (retryAfter > 0) {
+            lock.lock();
+            try {
+                release(user);
+            } finally {
+                lock.unlock();
+            }
+            rateLimited.incrementAndGet();
+            throw new ServiceOverloadedException("Bạn gửi quá nhiều yêu cầu, thử lại sau " + retryAfter + "s",
+                retryAfter);
+        }
+
+        Ticket ticket;
+        lock.lock();
+        try {
+            double weight = weight(claimedUser);
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(user, 0.0));
+            ticket = new Ticket(user, lane, start + cost / weight, sequence++);
+            lastFinish.put(user, ticket.finish);
+            queues.get(lane).add(ticket);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+        return ticket;
+    }
+
+    private Ticket awaitGrant(Ticket ticket) throws InterruptedException {
+        String user = ticket.user;
+        Lane lane = ticket.lane;
+        boolean granted;
+        try {
+            granted = ticket.granted.await(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            abandon(ticket);
+            throw e;
+        }
+        if (!granted) {
+            lock.lock();
+            try {
+                // Có thể vừa được cấp đúng lúc hết giờ chờ
+                granted = ticket.running;
+                if (!granted && queues.get(lane).remove(ticket)) {
+                    release(user);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (!granted) {
+            waitTimeouts.incrementAndGet();
+            throw new ServiceOverloadedException("Hệ thống đang bận, chờ quá " + maxWaitMs + "ms",
+                Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMs) / 2));
+        }
+        admitted.incrementAndGet();
+        return ticket;
+    }
+
+    // Bỏ chờ giữa chừng: còn trong hàng đợi thì rút ra, đã được cấp thì trả suất
+    private void abandon(Ticket ticket) {
+        lock.lock();
+        try {
+            if (!ticket.running && queues.get(ticket.lane).remove(ticket)) {
+                release(ticket.user);
+            }
+        } finally {
+            lock.unlock();
+        }
+        ticket.close();
+    }
+
+    // Gọi khi đang giữ lock: một request của user đã xong / bỏ chờ
+    private void release(String user) {
+        outstanding.computeIfPresent(user, (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    // Gọi khi đang giữ lock: cấp suất trống cho ticket có finish tag nhỏ nhất
+    private void dispatch() {
+        while (active.get(Lane.INTERACTIVE) + active.get(Lane.BULK) < slots) {
+            Ticket next = pick();
+            if (next == null) {
+                break;
+            }
+            queues.get(next.lane).poll();
+            next.running = true;
+            active.merge(next.lane, 1, Integer::sum);
+            virtualTime = Math.max(virtualTime, next.finish);
+            next.granted.countDown();
+        }
+        if (lastFinish.size() > MAX_TRACKED_USERS) {
+            // Tag cuối <= đồng hồ ảo thì không khác gì user chưa từng gửi
+            lastFinish.values().removeIf(finish -> finish <= virtualTime);
+        }
+    }
+
+    private Ticket pick() {
+        Ticket interactive = queues.get(Lane.INTERACTIVE).peek();
+        Ticket bulk = queues.get(Lane.BULK).peek();
+        int bulkActive = active.get(Lane.BULK);
+        if (bulk != null && bulkActive < bulkReserved) {
+            return bulk;
+        }
+        if (interactive != null) {
+            return interactive;
+        }
+        return bulk != null && bulkActive < bulkMax ? bulk : null;
+    }
+
+    // 0 = đã lấy đủ token; > 0 = số giây cần chờ để đủ token
+    private long takeTokens(String user, int cost) {
+        AtomicLong bucket = buckets.computeIfAbsent(user, k -> new AtomicLong(pack(burst * MILLI_TOKENS, now())));
+        long needed = (long) cost * MILLI_TOKENS;
+        while (true) {
+            long state = bucket.get();
+            long now = now();
+            long elapsed = Math.max(0, now - (state & TIME_MASK));
+            long tokens = Math.min((long) burst * MILLI_TOKENS,
+                (state >>> 42) + (long) (elapsed * ratePerSec));
+            if (tokens < needed) {
+                return Math.max(1, (long) Math.ceil((needed - tokens) / (ratePerSec * MILLI_TOKENS)));
+            }
+            if (bucket.compareAndSet(state, pack(tokens - needed, now))) {
+                if (buckets.size() > MAX_TRACKED_USERS) {
+                    evictFullBuckets();
+                }
+                return 0;
+            }
+        }
+    }
+
+    private void evictFullBuckets() {
+        long now = now();
+        long refillMs = (long) Math.ceil(burst * 1_000 / ratePerSec);
+        buckets.values().removeIf(b -> now - (b.get() & TIME_MASK) > refillMs);
+    }
+
+    private static long pack(long milliTokens, long timeMs) {
+        return (milliTokens << 42) | (timeMs & TIME_MASK);
+    }
+
+    private long now() {
+        return clock.getAsLong() - epochMs;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("slots", slots);
+            stats.put("bulkMaxSlots", bulkMax);
+            for (Lane lane : Lane.values()) {
+                String name = lane.name().toLowerCase(Locale.ROOT);
+                stats.put(name + "Active", active.get(lane));
+                stats.put(name + "Queued", queues.get(lane).size());
+            }
+            stats.put("maxPerUser", maxPerUser);
+            stats.put("usersWithWork", outstanding.size());
+        } finally {
+            lock.unlock();
+        }
+        stats.put("ratePerSec", ratePerSec);
+        stats.put("burst", burst);
+        stats.put("trackedUsers", buckets.size());
+        stats.put("admitted", admitted.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("userCapped", userCapped.get());
+        stats.put("waitTimeouts", waitTimeouts.get());
+        return stats;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.service;
+
+import com.example.exception.GeminiException;
+import com.example.exception.ServiceOverloadedException;
+import com.example.service.StaticAnalysisService.ReviewOptions;
+import com.example.service.StaticAnalysisService.ReviewResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// ✅ Phân tích đầy đủ trong một request: explain + gợi ý tên gộp vào MỘT prompt Gemini
+// (trả JSON hai phần), chạy song song với static analysis. Thời gian = nhánh chậm nhất
+// thay vì tổng, số call / token Gemini giảm một nửa so với gọi /explain + /suggest.
+@Service
+public class FullAnalysisService {
+
+    // Đổi khi sửa prompt -> kết quả cache của prompt cũ không còn được dùng
+    static final String PROMPT_VERSION = "analyze-v1";
+
+    @Autowired
+    private GeminiClient geminiClient;
+
+    @Autowired
+    private LlmResponseCache cache;
+
+    @Autowired
+    private ExplainService explainService;
+
+    @Autowired
+    private SuggestNameService suggestNameService;
+
+    public CompletableFuture<Map<String, Object>> analyzeAsync(String language, String code, ReviewOptions options) {
+        long start = System.nanoTime();
+        CompletableFuture<Map<String, Object>> review = StaticAnalysisService.reviewAsync(language, code, null, options)
+                .thenApply(ReviewResult::toResponse)
+                .exceptionally(error -> reviewError(GeminiClient.unwrap(error)));
+        CompletableFuture<Map<String, Object>> llm = llmSections(language, code);
+
+        // Nhánh nào lỗi chỉ báo lỗi ở phần của nó, phần còn lại vẫn trả về
+        return review.thenCombine(llm, (reviewSection, llmSections) -> {
+            Map<String, Object> res = new HashMap<>(llmSections);
+            res.put("success", true);
+            res.put("originalCode", code);
+            res.put("review", reviewSection);
+            res.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+            return res;
+        });
+    }
+
+    private CompletableFuture<Map<String, Object>> llmSections(String language, String code) {
+        long start = System.nanoTime();
+        if (explainService.shouldChunk(null, code)) {
+            // File lớn không vừa một prompt gộp: explain theo phần + suggest riêng, vẫn song song
+            return explainService.explainCodeAsync(language, code)
+                    .thenCombine(suggestNameService.suggestNamesAsync(language, code),
+                            (explain, suggest) -> sections(explain, suggest, start, false));
+        }
+        String cacheKey = LlmResponseCache.key("analyze", PROMPT_VERSION, language, code);
+        Map<String, Object> cached = cache.get(cacheKey);
+        if (cached != null) {
+            cached.put("cached", true);
+            return CompletableFuture.completedFuture(cached);
+        }
+        return geminiClient.generateJson(buildPrompt(language, code))
+                .thenApply(root -> {
+                    Map<String, Object> sections = parseSections(code, root, start);
+                    if (!sections.containsKey("partial")) {
+                        cache.put(cacheKey, "analyze", language, sections);
+                    }
+                    return sections;
+                })
+                .exceptionally(error -> {
+                    String message = geminiError(GeminiClient.unwrap(error));
+                    Map<String, Object> explain = new HashMap<>();
+                    explain.put("explanation", message);
+                    Map<String, Object> suggest = new HashMap<>();
+                    suggest.put("suggestions", message);
+                    return sections(explain, suggest, start, true);
+                });
+    }
+
+    private Map<String, Object> parseSections(String code, JsonNode root, long start) {
+        String text = GeminiClient.extractText(root);
+        JsonNode json = null;
+        if (text != null) {
+            try {
+                // Đề phòng model vẫn bọc JSON trong ```json ... ```
+                json = geminiClient.mapper().readTree(text.trim()
+                        .replaceAll("^```(?:json)?\\s*", "")
+                        .replaceAll("\\s*```$", ""));
+            } catch (Exception e) {
+                System.err.println("❗ Phản hồi phân tích không phải JSON: " + e.getMessage());
+            }
+        }
+        String explanation = json == null ? null : clean(json.path("explanation").asText(""));
+        String suggestions = json == null ? null : clean(json.path("suggestions").asText(""));
+
+        Map<String, Object> explain;
+        if (explanation != null && !explanation.isEmpty()) {
+            explain = explainService.buildResult(code, explanation);
+        } else {
+            explain = new HashMap<>();
+            explain.put("explanation", text == null
+                    ? "⚠ Không nhận được phản hồi từ Gemini."
+                    : clean(text)); // không tách được JSON: trả nguyên văn để người dùng vẫn đọc được
+        }
+        Map<String, Object> suggest;
+        if (suggestions != null && !suggestions.isEmpty()) {
+            suggest = suggestNameService.buildResult(code, suggestions);
+        } else {
+            suggest = new HashMap<>();
+            suggest.put("suggestions", "⚠ Gemini không trả về gợi ý nào.");
+        }
+        return sections(explain, suggest, start, !explain.containsKey("summary") || !suggest.containsKey("summary"));
+    }
+
+    private Map<String, Object> sections(Map<String, Object> explain, Map<String, Object> suggest, long start,
+            boolean partial) {
+        // originalCode đã có ở cấp ngoài cùng
+        explain.remove("originalCode");
+        suggest.remove("originalCode");
+        Map<String, Object> sections = new HashMap<>();
+        sections.put("explain", explain);
+        sections.put("suggest", suggest);
+        sections.put("llmMs", (System.nanoTime() - start) / 1_000_000);
+        if (partial) {
+            sections.put("partial", true);
+        }
+        return sections;
+    }
+
+    private Map<String, Object> reviewError(Throwable error) {
+        Map<String, Object> review = new HashMap<>();
+        review.put("success", false);
+        review.put("message", error.getMessage());
+        if (error instanceof ServiceOverloadedException) {
+            review.put("error", "Overloaded");
+            review.put("retryAfter", ((ServiceOverloadedException) error).getRetryAfterSeconds());
+        } else {
+            review.put("error", error.getClass().getSimpleName());
+        }
+        return review;
+    }
+
+    private static String geminiError(Throwable cause) {
+        if (cause instanceof GeminiException && ((GeminiException) cause).getStatusCode() > 0) {
+            GeminiException e = (GeminiException) cause;
+            return "❌ Lỗi HTTP " + e.getStatusCode() + ": " + e.getBody();
+        }
+        return "❗ Lỗi khi gọi Gemini API: " + cause.getMessage();
+    }
+
+    private static String clean(String text) {
+        return text
+                .replaceAll("(?m)^\\s*$\n", "") // Remove pure empty lines
+                .trim();
+    }
+
+    private String buildPrompt(String language, String codeSnippet) {
+        return String.format(
+                "Bạn là chuyên gia lập trình %s. Phân tích đoạn mã bên dưới và trả về DUY NHẤT một JSON object " +
+                        "có đúng hai khóa chuỗi:\n" +
+                        "\"explanation\": GIẢI THÍCH code:\n" +
+                        "1. Tóm tắt mục đích của code\n" +
+                        "2. Giải thích từng thành phần quan trọng\n" +
+                        "3. Mô tả luồng thực thi\n" +
+                        "4. Ví dụ minh họa (nếu có thể)\n" +
+                        "- KHÔNG kiểm tra lỗi, chỉ tập trung GIẢI THÍCH\n" +
+                        "\"suggestions\": GỢI Ý TÊN tốt hơn theo naming convention của %s:\n" +
+                        "1. Liệt kê tên biến/hàm hiện tại theo hàng dọc\n" +
+                        "2. Mỗi tên theo thứ tự: Tên cũ - Tên mới - Giải thích\n" +
+                        "3. Quy tắc naming cho %s\n" +
+                        "- KHÔNG sửa code, chỉ gợi ý tên\n" +
+                        "**LƯU Ý:** xuống dòng bằng \\n trong chuỗi JSON, KHÔNG để dòng trống\n" +
+                        "**Code:**\n```%s\n%s\n```",
+                language.toUpperCase(),
+                language.toLowerCase(),
+                language.toLowerCase(),
+                language.toLowerCase(),
+                codeSnippet);
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.service;
+
+import com.example.exception.GeminiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+// ✅ Lớp bảo vệ quanh mọi call Gemini:
+//  - token bucket theo quota (gemini.rate-per-minute / gemini.burst): hết token thì xếp
+//    hàng chờ, hàng đợi có giới hạn; chờ quá deadline của request thì từ chối luôn
+//  - retry 429 / 5xx / lỗi mạng với backoff mũ có trần + full jitter, không vượt deadline
+//  - circuit breaker: lỗi liên tiếp quá ngưỡng -> OPEN, fail ngay không gọi Gemini;
+//    hết thời gian nghỉ -> HALF_OPEN cho một request thử, thành công thì đóng lại
+// Không giữ thread khi chờ: mọi bước chờ đều là scheduler.schedule.
+@Component
+public class GeminiResilience {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final int maxQueue;
+    private final int maxAttempts;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("gemini-resilience-"));
+
+    // token bucket (khoá bằng this); tokens âm = số lượt đã hứa cho các request đang chờ
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private int waiting;
+
+    // circuit breaker (khoá bằng this)
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedDeadline = new AtomicLong();
+    private final AtomicLong rejectedOpen = new AtomicLong();
+    private final AtomicLong opens = new AtomicLong();
+
+    public GeminiResilience(
+            @Value("${gemini.rate-per-minute:60}") double ratePerMinute,
+            @Value("${gemini.burst:10}") int burst,
+            @Value("${gemini.max-queue:100}") int maxQueue,
+            @Value("${gemini.retry.max-attempts:3}") int maxAttempts,
+            @Value("${gemini.retry.backoff-base-ms:500}") long backoffBaseMs,
+            @Value("${gemini.retry.backoff-max-ms:8000}") long backoffMaxMs,
+            @Value("${gemini.breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${gemini.breaker.open-ms:30000}") long openMs) {
+        this.tokensPerNano = ratePerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.maxQueue = maxQueue;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+    }
+
+    // Không giới hạn, không retry, không ngắt mạch (test / công cụ nội bộ)
+    public static GeminiResilience passThrough() {
+        return new GeminiResilience(1e9, Integer.MAX_VALUE, 0, 1, 0, 0, Integer.MAX_VALUE, 0);
+    }
+
+    public <T> CompletableFuture<T> execute(long deadlineNanos, Function<Duration, CompletableFuture<T>> call) {
+        return execute(deadlineNanos, call, () -> true);
+    }
+
+    // call nhận thời gian còn lại tới deadline (dùng làm timeout của HTTP request);
+    // canRetry = false khi lần gọi trước đã có tác dụng phụ (stream đã gửi token cho client)
+    public <T> CompletableFuture<T> execute(long deadlineNanos, Function<Duration, CompletableFuture<T>> call,
+            BooleanSupplier canRetry) {
+        calls.incrementAndGet();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(1, deadlineNanos, call, canRetry, result);
+        return result;
+    }
+
+    private <T> void attempt(int attempt, long deadline, Function<Duration, CompletableFuture<T>> call,
+            BooleanSupplier canRetry, CompletableFuture<T> result) {
+        long now = System.nanoTime();
+        if (isOpen(now)) {
+            rejectedOpen.incrementAndGet();
+            result.completeExceptionally(new GeminiException("Gemini đang lỗi liên tục, tạm ngưng gọi (circuit open)", null));
+            return;
+        }
+        long waitNanos = reserve(now, deadline);
+        if (waitNanos < 0) {
+            result.completeExceptionally(new GeminiException(waitNanos == QUEUE_FULL
+                    ? "Quá nhiều request Gemini đang chờ quota"
+                    : "Không đủ quota Gemini trước deadline của request", null));
+            return;
+        }
+        Runnable run = () -> {
+            if (waitNanos > 0) {
+                synchronized (this) {
+                    waiting--;
+                }
+            }
+            if (result.isDone()) {
+                // Người gọi đã huỷ trong lúc chờ quota
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                rejectedDeadline.incrementAndGet();
+                result.completeExceptionally(new GeminiException("Hết thời gian chờ Gemini", null));
+                return;
+            }
+            if (!admit(System.nanoTime())) {
+                rejectedOpen.incrementAndGet();
+                result.completeExceptionally(new GeminiException("Gemini đang lỗi liên tục, tạm ngưng gọi (circuit open)", null));
+                return;
+            }
+            CompletableFuture<T> future;
+            try {
+                future = call.apply(Duration.ofNanos(remaining));
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            // Huỷ kết quả -> huỷ lần gọi đang chạy (vd. đóng stream HTTP), không retry nữa
+            CompletableFuture<T> current = future;
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    current.cancel(true);
+                }
+            });
+            future.whenComplete((value, error) -> {
+                if (result.isDone()) {
+                    return;
+                }
+                if (error == null) {
+                    onSuccess();
+                    result.complete(value);
+                    return;
+                }
+                Throwable cause = GeminiClient.unwrap(error);
+                if (!isRetryable(cause)) {
+                    // Gemini vẫn trả lời (400, body lạ...) -> upstream sống, không tính là lỗi mạch
+                    onSuccess();
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                onFailure(System.nanoTime());
+                long backoffNanos = backoffNanos(attempt);
+                if (attempt < maxAttempts && canRetry.getAsBoolean()
+                        && System.nanoTime() + backoffNanos < deadline) {
+                    retries.incrementAndGet();
+                    scheduler.schedule(() -> attempt(attempt + 1, deadline, call, canRetry, result),
+                            backoffNanos, TimeUnit.NANOSECONDS);
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            });
+        };
+        if (waitNanos == 0) {
+            run.run();
+        } else {
+            scheduler.schedule(run, waitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof GeminiException) {
+            int status = ((GeminiException) error).getStatusCode();
+            return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+        }
+        // timeout / mất kết nối (HttpTimeoutException, ConnectException... đều là IOException)
+        return error instanceof IOException;
+    }
+
+    // Full jitter: ngẫu nhiên trong [0, min(trần, base * 2^(lần-1))]
+    private long backoffNanos(int attempt) {
+        long capMs = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempt - 1, 20));
+        return TimeUnit.MILLISECONDS.toNanos(capMs <= 0 ? 0 : ThreadLocalRandom.current().nextLong(capMs + 1));
+    }
+
+    private static final long QUEUE_FULL = -1;
+    private static final long PAST_DEADLINE = -2;
+
+    // Lấy một token; trả về thời gian phải chờ (0 = có ngay), hoặc QUEUE_FULL / PAST_DEADLINE
+    private synchronized long reserve(long now, long deadline) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        if (waiting >= maxQueue) {
+            rejectedQueueFull.incrementAndGet();
+            return QUEUE_FULL;
+        }
+        long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+        if (now + waitNanos >= deadline) {
+            rejectedDeadline.incrementAndGet();
+            return PAST_DEADLINE;
+        }
+        tokens -= 1;
+        waiting++;
+        queued.incrementAndGet();
+        return waitNanos;
+    }
+
+    // Kiểm tra nhanh lúc vào: OPEN và chưa hết thời gian nghỉ -> khỏi tốn token
+    private synchronized boolean isOpen(long now) {
+        return state == State.OPEN && now - openedAt < openNanos;
+    }
+
+    // Ngay trước khi gọi: OPEN hết nghỉ -> HALF_OPEN, chỉ một request thử được đi
+    private synchronized boolean admit(long now) {
+        if (state == State.OPEN) {
+            if (now - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            System.out.println("Gemini circuit: " + state + " -> CLOSED");
+        }
+        state = State.CLOSED;
+        probeInFlight = false;
+    }
+
+    private synchronized void onFailure(long now) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            System.err.println("⚠️ Gemini circuit: " + state + " -> OPEN sau " + consecutiveFailures + " lỗi liên tiếp");
+            state = State.OPEN;
+            openedAt = now;
+            probeInFlight = false;
+            opens.incrementAndGet();
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("consecutiveFailures", consecutiveFailures);
+        stats.put("tokens", Math.max(0, tokens));
+        stats.put("waiting", waiting);
+        stats.put("calls", calls.get());
+        stats.put("retries", retries.get());
+        stats.put("queued", queued.get());
+        stats.put("rejectedQueueFull", rejectedQueueFull.get());
+        stats.put("rejectedDeadline", rejectedDeadline.get());
+        stats.put("rejectedOpen", rejectedOpen.get());
+        stats.put("opens", opens.get());
+        return stats;
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// ✅ Lớp thực thi có kiểm soát quanh ProcessBuilder cho các analyzer:
+//  - budget thời gian thực cho mỗi lần chạy, hết giờ thì kill cả cây process
+//  - giới hạn CPU/RAM tuỳ chọn qua prlimit (rlimit) hoặc systemd-run (cgroup)
+//  - output giữ trong ring buffer có giới hạn, phần bị cắt được đánh dấu truncated
+public class GovernedProcess {
+
+    static final int MAX_LINES = Integer.getInteger("devreview.output.maxLines", 5_000);
+    static final int MAX_LINE_CHARS = Integer.getInteger("devreview.output.maxLineChars", 4_096);
+    static final int MAX_OUTPUT_BYTES = Integer.getInteger("devreview.output.maxBytes", 8 * 1024 * 1024);
+
+    // -Ddevreview.limits.enabled=true bật rlimit; -Ddevreview.limits.cgroup=true dùng cgroup
+    private static final boolean RLIMITS = Boolean.getBoolean("devreview.limits.enabled");
+    private static final boolean CGROUP = Boolean.getBoolean("devreview.limits.cgroup");
+    private static final long CPU_SECONDS = Long.getLong("devreview.limits.cpuSeconds", 120L);
+    private static final long MEMORY_MB = Long.getLong("devreview.limits.memoryMb", 1_024L);
+
+    private static final ScheduledExecutorService WATCHDOG =
+        Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("process-watchdog-"));
+    private static final String PRLIMIT = findExecutable("prlimit");
+    private static final String SYSTEMD_RUN = findExecutable("systemd-run");
+
+    public static class Result {
+        public final List<String> lines;
+        public final boolean truncated;
+        public final boolean timedOut;
+        public final int exitCode;
+        public final long elapsedMs;
+
+        public Result(List<String> lines, boolean truncated, boolean timedOut, int exitCode, long elapsedMs) {
+            this.lines = lines;
+            this.truncated = truncated;
+            this.timedOut = timedOut;
+            this.exitCode = exitCode;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    public static Result run(List<String> command, String stdin, long budgetMs)
+            throws IOException, InterruptedException {
+        return run(command, stdin, budgetMs, null);
+    }
+
+    // onLine (tuỳ chọn) nhận từng dòng output ngay khi đọc được.
+    // Tổng output giới hạn MAX_OUTPUT_BYTES như runStreaming; mỗi dòng chỉ giữ
+    // MAX_LINE_CHARS ký tự đầu ngay lúc đọc (một dòng vô hạn không có '\n' không làm tràn heap)
+    public static Result run(List<String> command, String stdin, long budgetMs, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        RingBuffer buffer = new RingBuffer(MAX_LINES);
+        Result result = execute(command, stdin, budgetMs, true, output -> {
+            CappedInputStream capped = new CappedInputStream(output, MAX_OUTPUT_BYTES);
+            BufferedReader br = new BufferedReader(new InputStreamReader(capped, StandardCharsets.UTF_8));
+            String line;
+            while ((line = readLine(br, buffer)) != null) {
+                buffer.add(line);
+                if (onLine != null) {
+                    onLine.accept(line);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            if (capped.capped) {
+                throw new OutputCappedException();
+            }
+        });
+        return new Result(buffer.toList(), buffer.truncated || result.truncated, result.timedOut,
+            result.exitCode, result.elapsedMs);
+    }
+
+    // Như BufferedReader.readLine ('\n', '\r' hoặc "\r\n" kết thúc dòng) nhưng bỏ phần
+    // vượt MAX_LINE_CHARS thay vì giữ trong bộ nhớ; null khi hết stream
+    private static String readLine(BufferedReader reader, RingBuffer buffer) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int ch = reader.read();
+        if (ch < 0) {
+            return null;
+        }
+        while (ch >= 0 && ch != '\n' && ch != '\r') {
+            if (line.length() < MAX_LINE_CHARS) {
+                line.append((char) ch);
+            } else {
+                buffer.truncated = true;
+            }
+            ch = reader.read();
+        }
+        if (ch == '\r') {
+            reader.mark(1);
+            if (reader.read() != '\n') {
+                reader.reset();
+            }
+        }
+        return line.toString();
+    }
+
+    // Đọc stdout của tool dạng stream (vd. JSON parse bằng Jackson streaming).
+    public interface OutputReader {
+        void read(InputStream output) throws IOException, InterruptedException;
+    }
+
+    // ✅ Giao thẳng stdout cho reader, giới hạn MAX_OUTPUT_BYTES thay vì số dòng
+    // (output JSON thường nằm trên một dòng rất dài). mergeStderr=false để cảnh
+    // báo in ra stderr không làm hỏng JSON. Result.lines luôn rỗng.
+    public static Result runStreaming(List<String> command, String stdin, long budgetMs, boolean mergeStderr,
+            OutputReader reader) throws IOException, InterruptedException {
+        return execute(command, stdin, budgetMs, mergeStderr, output -> {
+            CappedInputStream capped = new CappedInputStream(output, MAX_OUTPUT_BYTES);
+            try {
+                reader.read(capped);
+            } catch (IOException e) {
+                // JSON bị cắt ngang do chạm giới hạn -> không phải lỗi của tool
+                if (!capped.capped) {
+                    throw e;
+                }
+            }
+            if (capped.capped) {
+                throw new OutputCappedException();
+            }
+        });
+    }
+
+    private static Result execute(List<String> command, String stdin, long budgetMs, boolean mergeStderr,
+            OutputReader reader) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ProcessBuilder pb = new ProcessBuilder(limitedCommand(command, true));
+        if (mergeStderr) {
+            pb.redirectErrorStream(true);
+        } else {
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        }
+        Process process = pb.start();
+        if (stdin != null) {
+            AnalyzerInput.feedStdin(process, stdin);
+        } else {
+            process.getOutputStream().close();
+        }
+
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        ScheduledFuture<?> watchdog = WATCHDOG.schedule(() -> {
+            timedOut.set(true);
+            killTree(process);
+        }, budgetMs, TimeUnit.MILLISECONDS);
+
+        boolean truncated = false;
+        int exitCode;
+        // Watchdog còn hiệu lực tới khi process thoát: tool đóng stdout nhưng vẫn chạy
+        // thì waitFor cũng bị cắt theo budget
+        try {
+            try (InputStream output = process.getInputStream()) {
+                reader.read(output);
+            } catch (OutputCappedException e) {
+                // output quá lớn -> dừng tool, giữ phần đã parse
+                truncated = true;
+                killTree(process);
+            } catch (IOException e) {
+                // stream bị đóng do watchdog kill -> giữ phần output đã đọc được
+                if (!timedOut.get()) {
+                    killTree(process);
+                    throw e;
+                }
+            }
+            exitCode = process.waitFor();
+        } catch (InterruptedException e) {
+            killTree(process);
+            throw e;
+        } finally {
+            watchdog.cancel(false);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (timedOut.get()) {
+            System.out.println("⏱ " + command.get(0) + " vượt budget " + budgetMs + "ms, đã kill cả cây process");
+        }
+        return new Result(new ArrayList<>(), truncated || timedOut.get(), timedOut.get(), exitCode, elapsedMs);
+    }
+
+    // Chụp danh sách process con trước, kill process gốc rồi kill hết con cháu
+    // (để process gốc không kịp phản ứng / sinh thêm process con)
+    public static void killTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    // Thêm prlimit / systemd-run vào trước lệnh khi bật giới hạn tài nguyên.
+    // limitCpu=false cho process sống lâu (worker) vì RLIMIT_CPU là cộng dồn.
+    static List<String> limitedCommand(List<String> command, boolean limitCpu) {
+        List<String> wrapped = new ArrayList<>();
+        if (CGROUP && SYSTEMD_RUN != null) {
+            wrapped.addAll(List.of(SYSTEMD_RUN, "--user", "--scope", "--quiet",
+                "-p", "MemoryMax=" + MEMORY_MB + "M"));
+            if (limitCpu) {
+                wrapped.addAll(List.of("-p", "RuntimeMaxSec=" + CPU_SECONDS));
+            }
+            wrapped.add("--");
+        } else if (RLIMITS && PRLIMIT != null) {
+            wrapped.add(PRLIMIT);
+            wrapped.add("--as=" + MEMORY_MB * 1024 * 1024);
+            if (limitCpu) {
+                wrapped.add("--cpu=" + CPU_SECONDS);
+            }
+            wrapped.add("--");
+        }
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    // Giới hạn số dòng trên một List đã có sẵn (output từ worker pool)
+    static Result bounded(List<String> lines, long elapsedMs) {
+        RingBuffer buffer = new RingBuffer(MAX_LINES);
+        for (String line : lines) {
+            if (line.length() > MAX_LINE_CHARS) {
+                line = line.substring(0, MAX_LINE_CHARS);
+                buffer.truncated = true;
+            }
+            buffer.add(line);
+        }
+        return new Result(buffer.toList(), buffer.truncated, false, 0, elapsedMs);
+    }
+
+    private static String findExecutable(String name) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            Path candidate = Paths.get(dir, name);
+            if (Files.isExecutable(candidate)) {
+                return candidate.toString();
+            }
+        }
+        return null;
+    }
+
+    // Giữ MAX_LINES dòng cuối cùng, có dòng bị đẩy ra thì đánh dấu truncated
+    static class RingBuffer {
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+        private final int capacity;
+        boolean truncated;
+
+        RingBuffer(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void add(String line) {
+            if (lines.size() == capacity) {
+                lines.removeFirst();
+                truncated = true;
+            }
+            lines.addLast(line);
+        }
+
+        List<String> toList() {
+            return new ArrayList<>(lines);
+        }
+    }
+
+    // Đọc tối đa `limit` byte, sau đó báo EOF
+    private static class CappedInputStream extends FilterInputStream {
+        private long remaining;
+        boolean capped;
+
+        CappedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                capped = true;
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                capped = true;
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+
+    private static class OutputCappedException extends IOException {
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+import com.example.service.StaticAnalysisService.ReviewResult;
+import com.example.service.StaticAnalysisService.ToolReport;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntPredicate;
+
+// ✅ Review tăng dần theo từng hàm/class: file lớn chỉ sửa một hàm thì chỉ hàm đó
+// (và các unit phụ thuộc vào signature của nó) bị phân tích lại.
+//  - key của mỗi unit = hash(phiên bản tool, prelude, code của unit, stub các unit nó gọi tới)
+//    -> sửa thân hàm A chỉ làm đổi key của A; đổi signature A làm đổi key các unit gọi A
+//  - unit không đổi được thay bằng stub (chỉ giữ signature) trong module tổng hợp
+//    đưa cho pylint / mypy, rồi line number được ánh xạ ngược về file gốc
+//  - CrossHair thực thi code thật: hàm gọi tới stub sẽ nhận None -> phản ví dụ sai. Nó chạy
+//    trên file gốc, chỉ với các hàm thuộc unit cần phân tích lại
+public class IncrementalReview {
+
+    private static final int AUTO_LINES = Integer.getInteger("devreview.incremental.autoLines", 500);
+    private static final int MIN_UNITS = 2;
+    private static final LruCache<String, List<Issue>> UNIT_CACHE =
+        new LruCache<>(Integer.getInteger("devreview.incremental.maxUnits", 20_000));
+    // Các cảnh báo ở prelude có thể sai khi tên chỉ được dùng trong thân hàm đã bị stub
+    private static final Set<String> PRELUDE_USAGE_CODES = Set.of("W0611", "W0614");
+    private static final Set<String> MESSAGE_WORDS = Set.of("Unused", "import", "imported", "as", "from");
+
+    // requested = null -> tự bật với file lớn
+    public static boolean shouldUse(Boolean requested, String language, String code) {
+        if (!"python".equalsIgnoreCase(language) || code == null) {
+            return false;
+        }
+        if (requested != null) {
+            return requested;
+        }
+        return code.chars().filter(ch -> ch == '\n').count() + 1 >= AUTO_LINES;
+    }
+
+    public static ReviewResult review(String language, String code) throws InterruptedException {
+        String fingerprint = ReviewCache.fingerprint();
+        PythonUnits.Split split = PythonUnits.split(code);
+        // File có lỗi cú pháp: pre-lint trả lời ngay, không lưu gì vào cache từng unit
+        if (fingerprint == null || split.units.size() < MIN_UNITS || !PythonPreLint.check(code).isEmpty()) {
+            return StaticAnalysisService.review(language, code);
+        }
+        long start = System.nanoTime();
+
+        Map<String, String> stubs = new HashMap<>();
+        for (PythonUnits.Unit unit : split.units) {
+            stubs.put(unit.name, String.join("\n", split.stub(unit)));
+        }
+        String prelude = split.prelude();
+        String preludeKey = ReviewCache.sha256(fingerprint + "|prelude|" + prelude + "|" + new TreeMap<>(stubs));
+        // Issue không gắn với dòng nào (line 0, vd. lỗi cấp module) phụ thuộc cả file,
+        // chỉ dùng lại được khi cả file giống hệt
+        String moduleKey = ReviewCache.sha256(fingerprint + "|module|" + code);
+
+        List<Issue> issues = new ArrayList<>();
+        Map<PythonUnits.Unit, String> dirty = new LinkedHashMap<>();
+        for (PythonUnits.Unit unit : split.units) {
+            String key = unitKey(fingerprint, prelude, unit, stubs);
+            List<Issue> cached = UNIT_CACHE.get(key);
+            if (cached == null) {
+                dirty.put(unit, key);
+            } else {
+                issues.addAll(shift(cached, unit.startLine - 1));
+            }
+        }
+        int reused = split.units.size() - dirty.size();
+
+        List<Issue> cachedPrelude = UNIT_CACHE.get(preludeKey);
+        List<Issue> cachedModule = UNIT_CACHE.get(moduleKey);
+        if (dirty.isEmpty() && cachedPrelude != null && cachedModule != null) {
+            issues.addAll(shift(cachedPrelude, 0));
+            issues.addAll(cachedModule);
+            StaticAnalysisService.sortIssues(issues);
+            Map<String, ToolReport> tools = new LinkedHashMap<>();
+            for (String tool : List.of(StaticAnalysisService.PYLINT, StaticAnalysisService.MYPY,
+                    StaticAnalysisService.CROSSHAIR)) {
+                tools.put(tool, new ToolReport(tool, true, 0, null));
+            }
+            ReviewResult result = new ReviewResult(issues, tools, elapsedMs(start));
+            result.cached = true;
+            result.reusedUnits = reused;
+            result.analyzedUnits = 0;
+            return result;
+        }
+
+        Synthetic synthetic = synthesize(split, dirty.keySet());
+        StaticAnalysisService.ReviewOptions stubbedTools = new StaticAnalysisService.ReviewOptions(null, null,
+            List.of(StaticAnalysisService.PYLINT, StaticAnalysisService.MYPY));
+        CompletableFuture<ReviewResult> stubbedRun =
+            StaticAnalysisService.reviewAsync(language, String.join("\n", synthetic.lines), null, stubbedTools);
+        List<Issue> crosshairIssues = new ArrayList<>();
+        ToolReport crosshair = runCrosshair(code, dirtyLines(dirty.keySet()), crosshairIssues);
+        ReviewResult run = join(stubbedRun);
+        run.tools.put(StaticAnalysisService.CROSSHAIR, crosshair);
+        Merged merged = merge(split, synthetic, dirty.keySet(), run.issues);
+        mergeReal(split, dirty.keySet(), crosshairIssues, merged);
+        for (List<Issue> unitIssues : merged.units.values()) {
+            issues.addAll(unitIssues);
+        }
+        issues.addAll(merged.prelude);
+        issues.addAll(merged.module);
+        StaticAnalysisService.sortIssues(issues);
+
+        // Chỉ lưu kết quả từng unit khi mọi tool chạy xong trọn vẹn
+        if (run.tools.values().stream().allMatch(r -> r.completed && !r.truncated)) {
+            for (Map.Entry<PythonUnits.Unit, String> entry : dirty.entrySet()) {
+                UNIT_CACHE.put(entry.getValue(),
+                    shift(merged.units.get(entry.getKey()), -(entry.getKey().startLine - 1)));
+            }
+            UNIT_CACHE.put(preludeKey, shift(merged.prelude, 0));
+            UNIT_CACHE.put(moduleKey, new ArrayList<>(merged.module));
+        }
+
+        ReviewResult result = new ReviewResult(issues, run.tools, elapsedMs(start));
+        result.reusedUnits = reused;
+        result.analyzedUnits = dirty.size();
+        return result;
+    }
+
+    // Module tổng hợp: prelude + unit cần phân tích (nguyên văn) + stub của unit còn lại.
+    // origin.get(i) = dòng gốc của dòng tổng hợp i+1, -1 nếu là dòng stub
+    static class Synthetic {
+        final List<String> lines = new ArrayList<>();
+        final List<Integer> origin = new ArrayList<>();
+        final Set<String> stubbedNames = new HashSet<>();
+    }
+
+    // Issue của tool chạy trên module tổng hợp, đã đưa về dòng gốc và chia theo nơi lưu cache
+    static class Merged {
+        final Map<PythonUnits.Unit, List<Issue>> units = new LinkedHashMap<>();
+        final List<Issue> prelude = new ArrayList<>();
+        final List<Issue> module = new ArrayList<>();
+    }
+
+    static Synthetic synthesize(PythonUnits.Split split, Set<PythonUnits.Unit> dirty) {
+        Synthetic synthetic = new Synthetic();
+        int line = 1;
+        while (line <= split.lines.size()) {
+            PythonUnits.Unit unit = split.unitAt(line);
+            if (unit == null) {
+                synthetic.lines.add(split.lines.get(line - 1));
+                synthetic.origin.add(line);
+                line++;
+            } else if (dirty.contains(unit)) {
+                for (int i = unit.startLine; i <= unit.endLine; i++) {
+                    synthetic.lines.add(split.lines.get(i - 1));
+                    synthetic.origin.add(i);
+                }
+                line = unit.endLine + 1;
+            } else {
+                for (String stubLine : split.stub(unit)) {
+                    synthetic.lines.add(stubLine);
+                    synthetic.origin.add(-1);
+                }
+                synthetic.stubbedNames.addAll(PythonUnits.identifiers(unit.text));
+                line = unit.endLine + 1;
+            }
+        }
+        return synthetic;
+    }
+
+    static Merged merge(PythonUnits.Split split, Synthetic synthetic, Set<PythonUnits.Unit> dirty,
+            List<Issue> issues) {
+        Merged merged = new Merged();
+        dirty.forEach(unit -> merged.units.put(unit, new ArrayList<>()));
+        for (Issue issue : issues) {
+            if (issue.line < 1 || issue.line > synthetic.origin.size()) {
+                merged.module.add(issue);
+                continue;
+            }
+            int mapped = synthetic.origin.get(issue.line - 1);
+            if (mapped < 0) {
+                continue; // issue do stub sinh ra, unit thật đã có kết quả trong cache
+            }
+            Issue remapped = new Issue(issue.type, mapped, issue.col, issue.code, issue.message, issue.tool);
+            PythonUnits.Unit unit = split.unitAt(mapped);
+            if (unit != null) {
+                merged.units.get(unit).add(remapped);
+            } else if (!(PRELUDE_USAGE_CODES.contains(issue.code) && usedInStubs(issue.message, synthetic.stubbedNames))) {
+                merged.prelude.add(remapped);
+            }
+        }
+        return merged;
+    }
+
+    // Issue đã mang dòng gốc (tool chạy trên file thật): vào unit cần phân tích lại nếu nằm
+    // trong đó, còn lại phụ thuộc cả file -> module
+    static void mergeReal(PythonUnits.Split split, Set<PythonUnits.Unit> dirty, List<Issue> issues, Merged merged) {
+        for (Issue issue : issues) {
+            PythonUnits.Unit unit = issue.line < 1 ? null : split.unitAt(issue.line);
+            if (unit != null && dirty.contains(unit)) {
+                merged.units.get(unit).add(issue);
+            } else {
+                merged.module.add(issue);
+            }
+        }
+    }
+
+    static IntPredicate dirtyLines(Set<PythonUnits.Unit> dirty) {
+        return line -> dirty.stream().anyMatch(unit -> unit.startLine <= line && line <= unit.endLine);
+    }
+
+    private static ToolReport runCrosshair(String code, IntPredicate lines, List<Issue> issues)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        String tool = StaticAnalysisService.CROSSHAIR;
+        try {
+            GovernedProcess.Result result = CrosshairRunner.run(code, PythonAnalyzer.budgetMs(tool), line -> {
+                Issue issue = StaticAnalysisService.parseLine(tool, line);
+                if (issue != null) {
+                    issues.add(issue);
+                }
+            }, lines);
+            ToolReport report = new ToolReport(tool, !result.timedOut, elapsedMs(start),
+                result.timedOut ? "Vượt quá " + PythonAnalyzer.budgetMs(tool) + "ms, kết quả chưa đầy đủ" : null);
+            report.truncated = result.truncated;
+            return report;
+        } catch (IOException e) {
+            return new ToolReport(tool, false, elapsedMs(start), e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private static ReviewResult join(CompletableFuture<ReviewResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause; // ServiceOverloadedException -> 429
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("units", UNIT_CACHE.size());
+        stats.put("maxUnits", UNIT_CACHE.maxEntries());
+        stats.put("evictions", UNIT_CACHE.evictions());
+        stats.put("autoLines", AUTO_LINES);
+        return stats;
+    }
+
+    private static String unitKey(String fingerprint, String prelude, PythonUnits.Unit unit, Map<String, String> stubs) {
+        StringBuilder key = new StringBuilder(fingerprint).append("|").append(prelude).append("|").append(unit.text);
+        Set<String> used = PythonUnits.identifiers(unit.text);
+        new TreeMap<>(stubs).forEach((name, stub) -> {
+            if (!name.equals(unit.name) && used.contains(name)) {
+                key.append("|").append(stub);
+            }
+        });
+        return ReviewCache.sha256(key.toString());
+    }
+
+    // Issue bị W0611 "Unused import x" trong khi x chỉ được dùng trong thân hàm đã stub
+    private static boolean usedInStubs(String message, Set<String> stubbedNames) {
+        for (String word : PythonUnits.identifiers(message)) {
+            if (!MESSAGE_WORDS.contains(word) && stubbedNames.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Issue> shift(List<Issue> issues, int offset) {
+        List<Issue> shifted = new ArrayList<>(issues.size());
+        for (Issue issue : issues) {
+            int line = issue.line > 0 ? issue.line + offset : issue.line;
+            shifted.add(new Issue(issue.type, line, issue.col, issue.code, issue.message, issue.tool));
+        }
+        return shifted;
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.service;
+
+import com.example.model.LlmCacheEntry;
+import com.example.repository.LlmCacheEntryRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ✅ Cache kết quả explain / suggest: key = SHA-256(loại, phiên bản prompt, ngôn ngữ,
+// code đã bỏ comment + khoảng trắng thừa). Tầng RAM (LRU + TTL) đứng trước tầng
+// Postgres tuỳ chọn (llm.cache.persistent=true) để giữ kết quả qua các lần restart.
+// Chỉ kết quả thành công mới được cache; lỗi HTTP / quota thì lần sau gọi lại.
+@Service
+public class LlmResponseCache {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    @Value("${llm.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${llm.cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${llm.cache.persistent:false}")
+    private boolean persistent;
+
+    @Autowired
+    private LlmCacheEntryRepository repository;
+
+    @Autowired
+    private GeminiClient geminiClient;
+
+    private final LruCache<String, Entry> memory;
+    private final ExecutorService writer =
+            Executors.newSingleThreadExecutor(StaticAnalysisService.daemonThreads("llm-cache-writer-"));
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong dbHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    private static class Entry {
+        final Map<String, Object> value;
+        final long expiresAtMs;
+
+        Entry(Map<String, Object> value, long expiresAtMs) {
+            this.value = value;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    public LlmResponseCache(@Value("${llm.cache.max-entries:1000}") int maxEntries) {
+        this.memory = new LruCache<>(maxEntries);
+    }
+
+    @PostConstruct
+    void startPurge() {
+        if (enabled && persistent) {
+            ScheduledExecutorService purger =
+                    Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("llm-cache-purge-"));
+            purger.scheduleWithFixedDelay(() -> {
+                try {
+                    int deleted = repository.deleteExpired(LocalDateTime.now());
+                    if (deleted > 0) {
+                        System.out.println("LLM cache: xoá " + deleted + " entry hết hạn");
+                    }
+                } catch (Exception e) {
+                    System.err.println("❌ Không dọn được LLM cache: " + e.getMessage());
+                }
+            }, 1, 60, TimeUnit.MINUTES);
+        }
+    }
+
+    public static String key(String kind, String promptVersion, String language, String code) {
+        String lang = language == null ? "" : language.trim().toLowerCase();
+        return ReviewCache.sha256(kind + "\u0000" + promptVersion + "\u0000"
+                + lang + "\u0000" + CodeNormalizer.normalize(lang, code));
+    }
+
+    // Bản sao của kết quả đã cache (người gọi có thể sửa map thoải mái), null nếu miss
+    public Map<String, Object> get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = memory.get(key);
+        if (entry != null && entry.expiresAtMs > now) {
+            memoryHits.incrementAndGet();
+            return new HashMap<>(entry.value);
+        }
+        if (entry != null) {
+            memory.remove(key);
+            expired.incrementAndGet();
+        }
+        if (persistent) {
+            try {
+                LlmCacheEntry row = repository.findById(key).orElse(null);
+                if (row != null && row.getExpiresAt().isAfter(LocalDateTime.now())) {
+                    Map<String, Object> value = geminiClient.mapper().readValue(row.getPayload(), MAP_TYPE);
+                    long remainingMs = Duration.between(LocalDateTime.now(), row.getExpiresAt()).toMillis();
+                    memory.put(key, new Entry(value, now + remainingMs));
+                    dbHits.incrementAndGet();
+                    return new HashMap<>(value);
+                }
+            } catch (Exception e) {
+                System.err.println("❌ Lỗi đọc LLM cache từ DB: " + e.getMessage());
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, String kind, String language, Map<String, Object> value) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Object> copy = new HashMap<>(value);
+        memory.put(key, new Entry(copy, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes)));
+        if (persistent) {
+            // Ghi DB trên thread riêng: không chặn thread của HttpClient trả kết quả
+            writer.execute(() -> {
+                try {
+                    LocalDateTime now = LocalDateTime.now();
+                    repository.save(new LlmCacheEntry(key, kind, language,
+                            geminiClient.mapper().writeValueAsString(copy), now, now.plusMinutes(ttlMinutes)));
+                } catch (Exception e) {
+                    System.err.println("❌ Lỗi ghi LLM cache vào DB: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long hits = memoryHits.get() + dbHits.get();
+        long total = hits + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("persistent", persistent);
+        stats.put("ttlMinutes", ttlMinutes);
+        stats.put("size", memory.size());
+        stats.put("maxEntries", memory.maxEntries());
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("dbHits", dbHits.get());
+        stats.put("misses", misses.get());
+        stats.put("expired", expired.get());
+        stats.put("evictions", memory.evictions());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        return stats;
+    }
+}
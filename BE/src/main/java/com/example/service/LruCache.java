@@ -0,0 +1,55 @@
+package com.example.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ✅ Cache LRU có giới hạn số phần tử, đếm số lần bị evict
+public class LruCache<K, V> {
+
+    private final int maxEntries;
+    private final AtomicLong evictions = new AtomicLong();
+    private final LinkedHashMap<K, V> map;
+
+    public LruCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    public synchronized V remove(K key) {
+        return map.remove(key);
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.service;
+
+import com.example.exception.GeminiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// ✅ Chọn model Gemini theo latency / tỉ lệ lỗi đo được (gemini.models, theo thứ tự ưu
+// tiên). Call gửi tới model tốt nhất; quá p95 của model đó mà chưa có kết quả thì gửi
+// thêm một bản (hedge) tới model kế tiếp, lấy kết quả nào về trước; có kết quả thì huỷ
+// bản còn lại. Model chính lỗi tạm thời (429 / 5xx / mạng) thì chuyển ngay sang model kế
+// tiếp (failover); Gemini trả 4xx cho chính request thì model nào cũng lỗi -> trả luôn.
+// Số hedge bị giới hạn theo tỉ lệ số call để lúc cả hệ thống chậm không nhân đôi tải
+// lên Gemini. Mỗi bản gửi đi phải tự qua GeminiResilience (send do GeminiClient truyền vào).
+@Component
+public class ModelRouter {
+
+    private static final int WINDOW = 256;
+    private static final int MIN_SAMPLES = 10;
+    // Trọng số EWMA của tỉ lệ lỗi
+    private static final double ERROR_ALPHA = 0.1;
+    // Hedge thêm được khi còn dưới tỉ lệ này (cộng một ít cho lúc mới khởi động)
+    private static final int HEDGE_BURST = 5;
+
+    private final List<Model> models;
+    private final long hedgeDefaultMs;
+    private final long hedgeMinMs;
+    private final double maxHedgeRatio;
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("gemini-hedge-"));
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    static class Model {
+        final String name;
+        final int priority;
+        final long[] samples = new long[WINDOW];
+        int count;
+        int next;
+        double errorRate;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong wins = new AtomicLong();
+
+        Model(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        synchronized void record(long ms, boolean success) {
+            if (success) {
+                samples[next] = ms;
+                next = (next + 1) % samples.length;
+                count = Math.min(count + 1, samples.length);
+            }
+            errorRate += ERROR_ALPHA * ((success ? 0 : 1) - errorRate);
+        }
+
+        // percentile theo ms; -1 khi chưa đủ mẫu
+        synchronized long percentile(double p) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) Math.ceil(p * count) - 1)];
+        }
+
+        synchronized double errorRate() {
+            return errorRate;
+        }
+    }
+
+    public ModelRouter(
+            @Value("${gemini.models:${gemini.model:gemini-2.0-flash}}") String models,
+            @Value("${gemini.hedge.default-ms:3000}") long hedgeDefaultMs,
+            @Value("${gemini.hedge.min-ms:300}") long hedgeMinMs,
+            @Value("${gemini.hedge.max-ratio:0.2}") double maxHedgeRatio) {
+        List<Model> list = new ArrayList<>();
+        for (String name : models.split(",")) {
+            if (!name.isBlank()) {
+                list.add(new Model(name.trim(), list.size()));
+            }
+        }
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("gemini.models không được để trống");
+        }
+        this.models = List.copyOf(list);
+        this.hedgeDefaultMs = hedgeDefaultMs;
+        this.hedgeMinMs = hedgeMinMs;
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    // Một model, không hedge (test / cấu hình tối thiểu)
+    public static ModelRouter single(String model) {
+        return new ModelRouter(model, 0, 0, 0);
+    }
+
+    // Model tốt nhất hiện tại (stream không hedge được, chỉ chọn model)
+    public String pick() {
+        return ranked().get(0).name;
+    }
+
+    // Xếp theo p50 nhân hệ số lỗi; chưa đủ mẫu thì giữ thứ tự cấu hình (p50 giả định tăng dần)
+    private List<Model> ranked() {
+        return models.stream()
+                .sorted(Comparator.comparingDouble((Model m) -> {
+                    long p50 = m.percentile(0.5);
+                    double latency = p50 < 0 ? hedgeDefaultMs * (m.priority + 1) / 2.0 : p50;
+                    return latency * (1 + 4 * m.errorRate());
+                }).thenComparingInt(m -> m.priority))
+                .collect(Collectors.toList());
+    }
+
+    public <T> CompletableFuture<T> call(Function<String, CompletableFuture<T>> send) {
+        calls.incrementAndGet();
+        List<Model> order = ranked();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Có kết quả (hoặc người gọi huỷ) -> huỷ các bản còn chạy, đóng request HTTP của bản thua
+        List<CompletableFuture<T>> running = new CopyOnWriteArrayList<>();
+        result.whenComplete((value, error) -> running.forEach(f -> f.cancel(true)));
+        if (order.size() == 1) {
+            attempt(order.get(0), send, false, result, running, new AtomicBoolean(), () -> true);
+            return result;
+        }
+        Model primary = order.get(0);
+        Model secondary = order.get(1);
+        AtomicBoolean secondaryStarted = new AtomicBoolean();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicBoolean settled = new AtomicBoolean();
+
+        // Kết quả lỗi chỉ được trả khi không còn bản nào đang chạy / sắp chạy
+        Runnable startSecondary = () -> {
+            pending.incrementAndGet();
+            attempt(secondary, send, true, result, running, settled, () -> pending.decrementAndGet() == 0);
+        };
+        attempt(primary, send, false, result, running, settled, () -> {
+            if (!result.isDone() && secondaryStarted.compareAndSet(false, true)) {
+                failovers.incrementAndGet();
+                startSecondary.run();
+            }
+            return pending.decrementAndGet() == 0;
+        });
+
+        long p95 = primary.percentile(0.95);
+        long delayMs = Math.max(hedgeMinMs, p95 < 0 ? hedgeDefaultMs : p95);
+        timer.schedule(() -> {
+            if (!result.isDone() && hedgeAllowed() && secondaryStarted.compareAndSet(false, true)) {
+                hedges.incrementAndGet();
+                startSecondary.run();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    // onFailure (chỉ gọi với lỗi tạm thời) trả true nếu đây là bản cuối cùng -> báo lỗi cho người gọi
+    private <T> void attempt(Model model, Function<String, CompletableFuture<T>> send, boolean hedge,
+            CompletableFuture<T> result, List<CompletableFuture<T>> running, AtomicBoolean settled,
+            BooleanSupplier onFailure) {
+        long start = System.nanoTime();
+        model.calls.incrementAndGet();
+        CompletableFuture<T> future;
+        try {
+            future = send.apply(model.name);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        running.add(future);
+        if (result.isDone()) {
+            // Bản khác đã xong trong lúc bản này được gửi
+            future.cancel(true);
+        }
+        CompletableFuture<T> current = future;
+        future.whenComplete((value, error) -> {
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            if (current.isCancelled()) {
+                // Bản thua bị huỷ: latency thật ít nhất bằng ngần này -> ghi làm mẫu cận dưới,
+                // để model chậm vẫn có số liệu mà không tính là lỗi. Người gọi tự huỷ thì bỏ qua.
+                if (!result.isCancelled()) {
+                    model.record(ms, true);
+                }
+                return;
+            }
+            Throwable cause = error == null ? null : GeminiClient.unwrap(error);
+            if (isClientError(cause)) {
+                // Gemini từ chối chính request (400...): model khác cũng sẽ trả như vậy
+                // -> trả luôn, không failover, không tính là lỗi của model
+                if (settled.compareAndSet(false, true)) {
+                    result.completeExceptionally(cause);
+                }
+                return;
+            }
+            // Bị chặn ở phía mình (quota, circuit, deadline) thì chưa tới model: không ghi số liệu,
+            // chỉ coi như bản này thua. Bản hedge lỗi không bao giờ làm hỏng call khi bản chính còn chạy.
+            boolean reachedModel = error == null || GeminiResilience.isRetryable(cause);
+            if (reachedModel) {
+                model.record(ms, error == null);
+            }
+            if (error == null) {
+                // Đếm thắng trước khi complete: người gọi thấy kết quả thì số liệu đã khớp
+                if (settled.compareAndSet(false, true)) {
+                    model.wins.incrementAndGet();
+                    if (hedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    result.complete(value);
+                }
+                return;
+            }
+            if (reachedModel) {
+                model.errors.incrementAndGet();
+            }
+            if (onFailure.getAsBoolean() && settled.compareAndSet(false, true)) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    // Lỗi 4xx không retry được mà Gemini thật sự trả về (status 0 = bị chặn ở phía mình)
+    private static boolean isClientError(Throwable cause) {
+        if (!(cause instanceof GeminiException) || GeminiResilience.isRetryable(cause)) {
+            return false;
+        }
+        int status = ((GeminiException) cause).getStatusCode();
+        return status >= 400 && status < 500;
+    }
+
+    private boolean hedgeAllowed() {
+        return maxHedgeRatio > 0 && hedges.get() < calls.get() * maxHedgeRatio + HEDGE_BURST;
+    }
+
+    public Map<String, Object> stats() {
+        long totalCalls = calls.get();
+        long totalHedges = hedges.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("calls", totalCalls);
+        stats.put("hedges", totalHedges);
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("failovers", failovers.get());
+        stats.put("hedgeRate", totalCalls == 0 ? 0.0 : (double) totalHedges / totalCalls);
+        stats.put("hedgeWinRate", totalHedges == 0 ? 0.0 : (double) hedgeWins.get() / totalHedges);
+        Map<String, Object> perModel = new LinkedHashMap<>();
+        for (Model model : models) {
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("calls", model.calls.get());
+            s.put("errors", model.errors.get());
+            s.put("wins", model.wins.get());
+            s.put("errorRate", model.errorRate());
+            s.put("p50", model.percentile(0.5));
+            s.put("p95", model.percentile(0.95));
+            s.put("p99", model.percentile(0.99));
+            perModel.put(model.name, s);
+        }
+        stats.put("models", perModel);
+        return stats;
+    }
+}
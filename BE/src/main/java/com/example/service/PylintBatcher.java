@@ -0,0 +1,255 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// ✅ Gom các lần chạy pylint đồng thời thành một lệnh "pylint --jobs=N f1.py f2.py ...":
+// request đầu tiên mở một cửa sổ WINDOW_MS, các request tới trong cửa sổ đó (tối đa
+// MAX_FILES) được ghi thành các module riêng và chạy chung một interpreter. Output
+// được trả về đúng người gọi theo tên file.
+// Đánh đổi: WINDOW_MS lớn -> batch to hơn (throughput cao) nhưng mỗi request chờ thêm.
+// -Ddevreview.pylint.batchWindowMs=0 tắt batching.
+// Batch nhiều file chỉ được nửa budget; hết giờ thì các file chưa chắc đã xong được chạy
+// lại riêng với phần budget còn lại, để một file chậm không làm timeout cả batch.
+// Chỉ khi --jobs=1 thứ tự output mới cho biết file nào đã xong (pylint duyệt file theo thứ
+// tự tham số); với --jobs>1 output của các worker xen kẽ nên mọi file đều được chạy lại.
+public class PylintBatcher {
+
+    private static final long WINDOW_MS = Long.getLong("devreview.pylint.batchWindowMs", 5L);
+    private static final int MAX_FILES = Integer.getInteger("devreview.pylint.batchMaxFiles", 16);
+    private static final int JOBS =
+        Integer.getInteger("devreview.pylint.batchJobs", Runtime.getRuntime().availableProcessors());
+    // Dòng output của pylint: "<path>/<file>.py:<line>:<col>: ..."
+    private static final Pattern FILE_PREFIX = Pattern.compile("^(?:.*[/\\\\])?([^/\\\\]+\\.py):\\d+:");
+
+    private static final ScheduledExecutorService TIMER =
+        Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("pylint-batch-timer-"));
+    private static final ExecutorService RUNNER =
+        Executors.newCachedThreadPool(StaticAnalysisService.daemonThreads("pylint-batch-"));
+
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong files = new AtomicLong();
+    private static final AtomicLong batchCounter = new AtomicLong();
+
+    private static List<Pending> current;
+    private static ScheduledFuture<?> flushTimer;
+
+    static class Pending {
+        final String code;
+        final Consumer<String> onLine;
+        // Giới hạn như output của một lần chạy pylint riêng
+        GovernedProcess.RingBuffer lines = new GovernedProcess.RingBuffer(GovernedProcess.MAX_LINES);
+        // Số dòng đã stream cho người gọi; khi chạy lại riêng, pylint in lại đúng thứ tự
+        // đó nên bỏ qua chừng ấy dòng đầu để không gửi trùng
+        int streamed;
+        int replayed;
+        final CompletableFuture<GovernedProcess.Result> result = new CompletableFuture<>();
+
+        Pending(String code, Consumer<String> onLine) {
+            this.code = code;
+            this.onLine = onLine;
+        }
+    }
+
+    public static boolean enabled() {
+        return WINDOW_MS > 0 && MAX_FILES > 1;
+    }
+
+    public static GovernedProcess.Result run(String code, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        Pending pending = new Pending(code, onLine);
+        enqueue(pending);
+        try {
+            // Batch tự kill pylint khi hết budget; chờ thêm cửa sổ gom + chút dư
+            return pending.result.get(PythonAnalyzer.budgetMs(StaticAnalysisService.PYLINT) + WINDOW_MS + 2_000L,
+                TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new InterruptedIOException("Batch pylint không trả kết quả");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long b = batches.get();
+        stats.put("enabled", enabled());
+        stats.put("windowMs", WINDOW_MS);
+        stats.put("maxFiles", MAX_FILES);
+        stats.put("batches", b);
+        stats.put("files", files.get());
+        stats.put("avgBatchSize", b == 0 ? 0.0 : (double) files.get() / b);
+        return stats;
+    }
+
+    private static void enqueue(Pending pending) {
+        List<Pending> full = null;
+        synchronized (PylintBatcher.class) {
+            if (current == null) {
+                current = new ArrayList<>();
+                flushTimer = TIMER.schedule(PylintBatcher::flushOnTimer, WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+            current.add(pending);
+            if (current.size() >= MAX_FILES) {
+                flushTimer.cancel(false);
+                full = current;
+                current = null;
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+    }
+
+    private static void flushOnTimer() {
+        List<Pending> batch;
+        synchronized (PylintBatcher.class) {
+            batch = current;
+            current = null;
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+    }
+
+    private static void submit(List<Pending> batch) {
+        RUNNER.execute(() -> {
+            try {
+                List<String> command = new ArrayList<>();
+                command.add(StaticAnalysisService.PYLINT);
+                command.addAll(PythonAnalyzer.toolArgs(StaticAnalysisService.PYLINT));
+                runBatch(batch, command, PythonAnalyzer.budgetMs(StaticAnalysisService.PYLINT));
+            } catch (Throwable e) {
+                batch.forEach(p -> p.result.completeExceptionally(e));
+            }
+        });
+    }
+
+    static void runBatch(List<Pending> batch, List<String> baseCommand, long budgetMs)
+            throws IOException, InterruptedException {
+        runBatch(batch, baseCommand, budgetMs, JOBS);
+    }
+
+    static void runBatch(List<Pending> batch, List<String> baseCommand, long budgetMs, int maxJobs)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        batches.incrementAndGet();
+        files.addAndGet(batch.size());
+        // Tên module không trùng giữa các batch để tránh import chéo
+        String prefix = "b" + batchCounter.incrementAndGet() + "_";
+        Path dir = Files.createTempDirectory(AnalyzerInput.scratchDir(), "pylint-batch-");
+        try {
+            Map<String, Pending> byFile = new HashMap<>();
+            Map<Pending, Path> paths = new HashMap<>();
+            List<String> command = new ArrayList<>(baseCommand);
+            int jobs = Math.max(1, Math.min(maxJobs, batch.size()));
+            command.add("--jobs=" + jobs);
+            for (int i = 0; i < batch.size(); i++) {
+                String name = prefix + i + ".py";
+                Path file = dir.resolve(name);
+                Files.writeString(file, batch.get(i).code, StandardCharsets.UTF_8);
+                byFile.put(name, batch.get(i));
+                paths.put(batch.get(i), file);
+                command.add(file.toString());
+            }
+
+            // Vị trí (theo thứ tự tham số) của file có output gần nhất
+            int[] last = {-1};
+            GovernedProcess.Result result = GovernedProcess.run(command, null,
+                batch.size() > 1 ? budgetMs / 2 : budgetMs, line -> {
+                    Matcher m = FILE_PREFIX.matcher(line);
+                    Pending owner = m.find() ? byFile.get(m.group(1)) : null;
+                    if (owner != null) {
+                        last[0] = batch.indexOf(owner);
+                        deliver(owner, line, false);
+                    }
+                });
+            if (batch.size() > 1) {
+                System.out.println("Batch pylint: " + batch.size() + " file trong " + result.elapsedMs + "ms");
+            }
+            if (!result.timedOut || batch.size() == 1) {
+                for (Pending p : batch) {
+                    complete(p, result.timedOut, result.exitCode, result.elapsedMs);
+                }
+                return;
+            }
+
+            // --jobs=1: mọi file đứng trước file đang in dở đã xong (kể cả file không có issue);
+            // --jobs>1: không có dấu hiệu xong nào đáng tin -> chạy lại riêng tất cả
+            int finished = jobs == 1 ? Math.max(0, last[0]) : 0;
+            List<Pending> unfinished = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (i < finished) {
+                    complete(batch.get(i), false, result.exitCode, result.elapsedMs);
+                } else {
+                    unfinished.add(batch.get(i));
+                }
+            }
+            long remainingMs = Math.max(1, budgetMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            List<Future<?>> reruns = new ArrayList<>();
+            for (Pending p : unfinished) {
+                reruns.add(RUNNER.submit(() -> {
+                    rerunAlone(p, baseCommand, paths.get(p), remainingMs);
+                    return null;
+                }));
+            }
+            for (Future<?> rerun : reruns) {
+                try {
+                    rerun.get();
+                } catch (ExecutionException e) {
+                    // Lỗi đã được ghi vào result của file tương ứng
+                }
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void rerunAlone(Pending p, List<String> baseCommand, Path file, long budgetMs) {
+        try {
+            p.lines = new GovernedProcess.RingBuffer(GovernedProcess.MAX_LINES);
+            List<String> command = new ArrayList<>(baseCommand);
+            command.add(file.toString());
+            GovernedProcess.Result result = GovernedProcess.run(command, null, budgetMs, line -> {
+                if (FILE_PREFIX.matcher(line).find()) {
+                    deliver(p, line, true);
+                }
+            });
+            complete(p, result.timedOut, result.exitCode, result.elapsedMs);
+        } catch (Throwable e) {
+            p.result.completeExceptionally(e);
+        }
+    }
+
+    private static void deliver(Pending owner, String line, boolean rerun) {
+        owner.lines.add(line);
+        if (rerun && ++owner.replayed <= owner.streamed) {
+            return;
+        }
+        owner.streamed++;
+        if (owner.onLine != null) {
+            owner.onLine.accept(line);
+        }
+    }
+
+    private static void complete(Pending p, boolean timedOut, int exitCode, long elapsedMs) {
+        p.result.complete(new GovernedProcess.Result(p.lines.toList(), p.lines.truncated || timedOut, timedOut,
+            exitCode, elapsedMs));
+    }
+}
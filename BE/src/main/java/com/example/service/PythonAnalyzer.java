@@ -2,58 +2,118 @@ package com.example.service;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class PythonAnalyzer {
 
-    private static List<String> runTool(String tool, String... args) throws IOException, InterruptedException {
-        // Tạo file tạm
-        File tempFile = File.createTempFile("analyze-", ".py");
-        try (FileWriter fw = new FileWriter(tempFile)) {
-            fw.write(args[0]); // code Python truyền vào
-        }
+    // Thời gian tối đa (ms) cho mỗi tool, chỉnh bằng -Ddevreview.<tool>.budgetMs
+    private static final Map<String, Long> TOOL_BUDGET_MS = Map.of(
+        "pylint", Long.getLong("devreview.pylint.budgetMs", 20_000L),
+        "mypy", Long.getLong("devreview.mypy.budgetMs", 30_000L),
+        "crosshair", Long.getLong("devreview.crosshair.budgetMs", 60_000L)
+    );
+
+    // Budget của CrossHair cho mỗi điều kiện / mỗi đường thực thi (giây)
+    private static final String CROSSHAIR_PER_CONDITION_TIMEOUT =
+        System.getProperty("devreview.crosshair.perConditionTimeout", "4");
+    private static final String CROSSHAIR_PER_PATH_TIMEOUT =
+        System.getProperty("devreview.crosshair.perPathTimeout", "1");
 
-        List<String> command = new ArrayList<>();
-        command.add(tool);
+    static long budgetMs(String tool) {
+        return TOOL_BUDGET_MS.getOrDefault(tool, 30_000L);
+    }
 
-        // Thêm tham số theo từng tool
+    // Tham số theo từng tool (không gồm tên tool và đường dẫn file)
+    static List<String> toolArgs(String tool) {
         if ("pylint".equals(tool)) {
-            command.add("--disable=all");
-            command.add("--enable=E,W");
-            command.add("--output-format=text");
+            return List.of("--disable=all", "--enable=E,W", "--output-format=text");
         } else if ("mypy".equals(tool)) {
-            command.add("--ignore-missing-imports");
-            command.add("--show-error-codes");
+            return List.of("--ignore-missing-imports", "--show-error-codes");
         } else if ("crosshair".equals(tool)) {
-            command.add("check");
+            return List.of("check", "--per_condition_timeout", CROSSHAIR_PER_CONDITION_TIMEOUT,
+                "--per_path_timeout", CROSSHAIR_PER_PATH_TIMEOUT);
         }
+        return List.of();
+    }
 
-        command.add(tempFile.getAbsolutePath());
+    // ✅ Chạy một tool với budget riêng; output bị cắt/timeout vẫn được trả về,
+    // đánh dấu truncated để phía gọi parse phần đã có
+    public static GovernedProcess.Result run(String tool, String code) throws IOException, InterruptedException {
+        return run(tool, code, null);
+    }
+
+    // onLine (tuỳ chọn) nhận từng dòng output: ngay lập tức khi fork process,
+    // hoặc một loạt khi worker trả kết quả
+    public static GovernedProcess.Result run(String tool, String code, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        // ✅ CrossHair: check song song từng hàm thay vì cả module
+        if (StaticAnalysisService.CROSSHAIR.equals(tool)) {
+            return CrosshairRunner.run(code, budgetMs(tool), onLine);
+        }
 
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
+        // ✅ mypy: ưu tiên dmypy daemon (cache typeshed còn nóng), lỗi thì chạy như cũ
+        if (StaticAnalysisService.MYPY.equals(tool) && DmypyPool.shared().isReady()) {
+            try {
+                return DmypyPool.shared().check(code, budgetMs(tool), onLine);
+            } catch (PythonWorkerPool.WorkerUnavailableException e) {
+                System.out.println("⚠ " + e.getMessage() + " -> chạy mypy thường");
+            }
+        }
 
-        List<String> output = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                output.add(line);
+        // Ưu tiên worker Python đã warm; pool chưa sẵn sàng thì fork như cũ
+        PythonWorkerPool pool = PythonWorkerPool.shared();
+        if (pool.supports(tool)) {
+            long start = System.nanoTime();
+            try {
+                GovernedProcess.Result result =
+                    GovernedProcess.bounded(pool.run(tool, toolArgs(tool), code, budgetMs(tool)), elapsedMs(start));
+                if (onLine != null) {
+                    result.lines.forEach(onLine);
+                }
+                return result;
+            } catch (PythonWorkerPool.WorkerUnavailableException e) {
+                System.out.println("⚠ " + e.getMessage() + " -> chạy " + tool + " bằng process riêng");
+            } catch (InterruptedIOException e) {
+                // Worker bị kill vì quá budget, không còn output nào dùng được
+                return new GovernedProcess.Result(new ArrayList<>(), true, true, -1, elapsedMs(start));
             }
         }
-        process.waitFor();
-        tempFile.delete();
-        return output;
+        return forkTool(tool, code, onLine);
+    }
+
+    private static long elapsedMs(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static GovernedProcess.Result forkTool(String tool, String code, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        // ✅ Nhiều request pylint cùng lúc -> gom thành một lần chạy
+        if (StaticAnalysisService.PYLINT.equals(tool) && PylintBatcher.enabled()) {
+            return PylintBatcher.run(code, onLine);
+        }
+        // Không dùng file tạm trên đĩa: stdin / tham số / file scratch trên tmpfs
+        AnalyzerInput.Mode mode = AnalyzerInput.modeFor(tool, code);
+        try (AnalyzerInput.ScratchFile scratch = mode == AnalyzerInput.Mode.SCRATCH_FILE
+                ? AnalyzerInput.ScratchFile.create(".py", code) : null) {
+            List<String> command = new ArrayList<>();
+            command.add(tool);
+            command.addAll(toolArgs(tool));
+            command.addAll(AnalyzerInput.inputArgs(mode, code, scratch));
+
+            return GovernedProcess.run(command, mode == AnalyzerInput.Mode.STDIN ? code : null, budgetMs(tool), onLine);
+        }
     }
 
     public static List<String> runPylint(String code) throws IOException, InterruptedException {
-        return runTool("pylint", code);
+        return run("pylint", code).lines;
     }
 
     public static List<String> runMypy(String code) throws IOException, InterruptedException {
-        return runTool("mypy", code);
+        return run("mypy", code).lines;
     }
 
     public static List<String> runCrosshair(String code) throws IOException, InterruptedException {
-        return runTool("crosshair", code);
+        return run("crosshair", code).lines;
     }
 }
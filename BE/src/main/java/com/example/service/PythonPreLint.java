@@ -0,0 +1,321 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+// ✅ Kiểm tra cú pháp nhanh ngay trong JVM trước khi gọi pylint/mypy/CrossHair:
+// chuỗi chưa đóng, ngoặc không khớp, lỗi thụt lề ở bước tokenize. Gặp cấu trúc mà
+// scanner không chắc (f-string lồng nhau / nhiều dòng kiểu PEP 701) thì không báo gì
+// và để tool thật quyết định. Có lỗi thì trả về ngay (vài micro giây) và bỏ qua các
+// tool bên ngoài.
+public class PythonPreLint {
+
+    static final String TOOL = "prelint";
+    private static final boolean ENABLED =
+        Boolean.parseBoolean(System.getProperty("devreview.prelint.enabled", "true"));
+
+    private static final String OPENERS = "([{";
+    private static final String CLOSERS = ")]}";
+    private static final String STRING_PREFIX_CHARS = "rRbBfFuU";
+    // f-string lồng sâu hơn mức này thì coi như không chắc chắn
+    private static final int MAX_FSTRING_NESTING = 8;
+
+    // Lỗi cú pháp đầu tiên (giống Python chỉ báo một lỗi), rỗng nếu không thấy
+    public static List<Issue> check(String code) {
+        if (!ENABLED || code == null) {
+            return List.of();
+        }
+        Issue issue = scan(code.replace("\r\n", "\n").replace('\r', '\n').split("\n", -1));
+        return issue == null ? List.of() : List.of(issue);
+    }
+
+    private static Issue scan(String[] lines) {
+        // Thụt lề có tab / form feed thì Python so sánh theo luật riêng -> không kiểm tra thụt lề
+        boolean checkIndent = true;
+        for (String line : lines) {
+            int indent = PythonUnits.indentOf(line);
+            if (line.substring(0, indent).indexOf('\t') >= 0 || (indent < line.length() && line.charAt(indent) == '\f')) {
+                checkIndent = false;
+                break;
+            }
+        }
+
+        Deque<int[]> brackets = new ArrayDeque<>(); // {ký tự, dòng, cột}
+        Deque<Integer> indents = new ArrayDeque<>();
+        indents.push(0);
+        String triple = null;
+        int tripleLine = 0;
+        int tripleCol = 0;
+        char openQuote = 0; // chuỗi thường nối dòng bằng '\'
+        int quoteLine = 0;
+        int quoteCol = 0;
+        boolean continuation = false;
+        int expectIndentAfter = 0; // dòng header kết thúc bằng ':'
+
+        for (int n = 1; n <= lines.length; n++) {
+            String line = lines[n - 1]; // f-string nhiều dòng có thể đẩy n / line tới dòng sau
+            boolean logicalStart = triple == null && openQuote == 0 && brackets.isEmpty() && !continuation;
+            continuation = false;
+            String stripped = line.strip();
+            if (logicalStart && checkIndent && !stripped.isEmpty() && !stripped.startsWith("#")) {
+                int indent = PythonUnits.indentOf(line);
+                if (expectIndentAfter > 0) {
+                    if (indent <= indents.peek()) {
+                        return error(n, indent, "expected an indented block after line " + expectIndentAfter);
+                    }
+                    indents.push(indent);
+                    expectIndentAfter = 0;
+                } else if (indent > indents.peek()) {
+                    return error(n, indent, "unexpected indent");
+                } else if (indent < indents.peek()) {
+                    while (indent < indents.peek()) {
+                        indents.pop();
+                    }
+                    if (indent != indents.peek()) {
+                        return error(n, indent, "unindent does not match any outer indentation level");
+                    }
+                }
+            }
+
+            char lastCode = 0;
+            int c = 0;
+            while (c < line.length()) {
+                char ch = line.charAt(c);
+                if (triple != null || openQuote != 0) {
+                    if (ch == '\\') {
+                        c += 2;
+                        continue;
+                    }
+                    if (triple != null && line.startsWith(triple, c)) {
+                        triple = null;
+                        c += 3;
+                        lastCode = '"';
+                        continue;
+                    }
+                    if (openQuote != 0 && ch == openQuote) {
+                        openQuote = 0;
+                        lastCode = ch;
+                    }
+                    c++;
+                    continue;
+                }
+                if (ch == '#') {
+                    break;
+                }
+                if (ch == '"' || ch == '\'') {
+                    String quote3 = String.valueOf(ch).repeat(3);
+                    if (stringPrefix(line, c).indexOf('f') >= 0) {
+                        // Phần {...} của f-string là biểu thức (3.12: được chứa cùng loại dấu nháy,
+                        // xuống dòng, comment) -> đi qua theo cú pháp riêng
+                        String quote = line.startsWith(quote3, c) ? quote3 : String.valueOf(ch);
+                        int[] end = skipFString(lines, n - 1, c + quote.length(), quote, 0);
+                        if (end == null) {
+                            return null;
+                        }
+                        n = end[0] + 1;
+                        line = lines[n - 1];
+                        c = end[1];
+                        lastCode = ch;
+                        continue;
+                    }
+                    if (line.startsWith(quote3, c)) {
+                        triple = quote3;
+                        tripleLine = n;
+                        tripleCol = c;
+                        c += 3;
+                        continue;
+                    }
+                    int start = c;
+                    c++;
+                    while (c < line.length() && line.charAt(c) != ch) {
+                        c += line.charAt(c) == '\\' ? 2 : 1;
+                    }
+                    if (c >= line.length()) {
+                        if (line.endsWith("\\") && c == line.length() + 1) {
+                            // "abc\ <xuống dòng> def" - chuỗi tiếp tục ở dòng sau
+                            openQuote = ch;
+                            quoteLine = n;
+                            quoteCol = start;
+                            break;
+                        }
+                        return error(n, start, "unterminated string literal (detected at line " + n + ")");
+                    }
+                    c++;
+                    lastCode = ch;
+                    continue;
+                }
+                if (OPENERS.indexOf(ch) >= 0) {
+                    brackets.push(new int[]{ch, n, c});
+                } else if (CLOSERS.indexOf(ch) >= 0) {
+                    if (brackets.isEmpty()) {
+                        return error(n, c, "unmatched '" + ch + "'");
+                    }
+                    int[] open = brackets.pop();
+                    char expected = CLOSERS.charAt(OPENERS.indexOf(open[0]));
+                    if (ch != expected) {
+                        return error(n, c, "closing parenthesis '" + ch + "' does not match opening parenthesis '"
+                            + (char) open[0] + "'" + (open[1] != n ? " on line " + open[1] : ""));
+                    }
+                } else if (ch == '\\' && c == line.length() - 1) {
+                    continuation = true;
+                }
+                if (!Character.isWhitespace(ch)) {
+                    lastCode = ch;
+                }
+                c++;
+            }
+            if (openQuote != 0 && !line.endsWith("\\")) {
+                return error(quoteLine, quoteCol, "unterminated string literal (detected at line " + n + ")");
+            }
+
+            if (checkIndent && lastCode == ':' && triple == null && openQuote == 0 && brackets.isEmpty()
+                    && !continuation) {
+                expectIndentAfter = n;
+            }
+        }
+
+        int last = lines.length > 1 && lines[lines.length - 1].isEmpty() ? lines.length - 1 : lines.length;
+        if (triple != null) {
+            return error(tripleLine, tripleCol,
+                "unterminated triple-quoted string literal (detected at line " + last + ")");
+        }
+        if (openQuote != 0) {
+            return error(quoteLine, quoteCol, "unterminated string literal (detected at line " + last + ")");
+        }
+        if (!brackets.isEmpty()) {
+            int[] open = brackets.peek();
+            return error(open[1], open[2], "'" + (char) open[0] + "' was never closed");
+        }
+        if (expectIndentAfter > 0) {
+            return error(last, 0, "expected an indented block after line " + expectIndentAfter);
+        }
+        return null;
+    }
+
+    // Tiền tố chuỗi ngay trước dấu nháy (vd. "rb", "f"), viết thường; "" nếu không có
+    static String stringPrefix(String line, int quote) {
+        int start = quote;
+        while (start > 0 && quote - start < 2 && STRING_PREFIX_CHARS.indexOf(line.charAt(start - 1)) >= 0) {
+            start--;
+        }
+        if (start > 0 && (Character.isLetterOrDigit(line.charAt(start - 1)) || line.charAt(start - 1) == '_')) {
+            return ""; // vd. "elif'..." hay "xf'...": chữ cái thuộc identifier, không phải tiền tố
+        }
+        return line.substring(start, quote).toLowerCase(Locale.ROOT);
+    }
+
+    // Đi qua thân f-string bắt đầu ở (li, c) ngay sau dấu nháy mở. Trả {dòng 0-based, cột sau
+    // dấu nháy đóng}, hoặc null khi không chắc chắn (hết file, xuống dòng trong phần literal
+    // của chuỗi một dòng, lồng quá sâu...) -> người gọi bỏ qua cả lần kiểm tra.
+    private static int[] skipFString(String[] lines, int li, int c, String quote, int nesting) {
+        if (nesting > MAX_FSTRING_NESTING) {
+            return null;
+        }
+        boolean tripleQuoted = quote.length() == 3;
+        // Mỗi phần tử: số ngoặc đang mở trong biểu thức của một {...}; -1 = đang ở format spec
+        Deque<Integer> fields = new ArrayDeque<>();
+        while (li < lines.length) {
+            String line = lines[li];
+            while (c < line.length()) {
+                char ch = line.charAt(c);
+                boolean inExpression = !fields.isEmpty() && fields.peek() >= 0;
+                if (!inExpression) {
+                    // Phần literal hoặc format spec
+                    if (ch == '\\') {
+                        c += 2;
+                    } else if (line.startsWith(quote, c)) {
+                        return fields.isEmpty() ? new int[]{li, c + quote.length()} : null;
+                    } else if (ch == '{' && fields.isEmpty() && c + 1 < line.length() && line.charAt(c + 1) == '{') {
+                        c += 2;
+                    } else if (ch == '}' && fields.isEmpty() && c + 1 < line.length() && line.charAt(c + 1) == '}') {
+                        c += 2;
+                    } else if (ch == '{') {
+                        fields.push(0);
+                        c++;
+                    } else if (ch == '}') {
+                        if (fields.isEmpty()) {
+                            return null; // "}" đơn lẻ: lỗi thật, nhưng để tool báo
+                        }
+                        fields.pop();
+                        c++;
+                    } else {
+                        c++;
+                    }
+                    continue;
+                }
+                int open = fields.peek();
+                if (ch == '"' || ch == '\'') {
+                    String quote3 = String.valueOf(ch).repeat(3);
+                    String inner = line.startsWith(quote3, c) ? quote3 : String.valueOf(ch);
+                    int[] end = stringPrefix(line, c).indexOf('f') >= 0
+                        ? skipFString(lines, li, c + inner.length(), inner, nesting + 1)
+                        : skipString(lines, li, c + inner.length(), inner);
+                    if (end == null) {
+                        return null;
+                    }
+                    li = end[0];
+                    line = lines[li];
+                    c = end[1];
+                    continue;
+                }
+                if (ch == '#') {
+                    break; // comment trong biểu thức nhiều dòng (PEP 701)
+                }
+                if (OPENERS.indexOf(ch) >= 0) {
+                    fields.pop();
+                    fields.push(open + 1);
+                } else if (CLOSERS.indexOf(ch) >= 0) {
+                    fields.pop();
+                    if (open > 0) {
+                        fields.push(open - 1);
+                    } else if (ch != '}') {
+                        return null;
+                    }
+                } else if (ch == ':' && open == 0) {
+                    fields.pop();
+                    fields.push(-1); // bắt đầu format spec, có thể chứa {...} lồng
+                }
+                c++;
+            }
+            boolean inExpression = !fields.isEmpty() && fields.peek() >= 0;
+            if (!tripleQuoted && !inExpression && !line.endsWith("\\")) {
+                return null;
+            }
+            li++;
+            c = 0;
+        }
+        return null;
+    }
+
+    // Chuỗi thường (không phải f-string) bên trong biểu thức của f-string
+    private static int[] skipString(String[] lines, int li, int c, String quote) {
+        while (li < lines.length) {
+            String line = lines[li];
+            while (c < line.length()) {
+                if (line.charAt(c) == '\\') {
+                    c += 2;
+                } else if (line.startsWith(quote, c)) {
+                    return new int[]{li, c + quote.length()};
+                } else {
+                    c++;
+                }
+            }
+            if (quote.length() == 1 && !line.endsWith("\\")) {
+                return null;
+            }
+            li++;
+            c = 0;
+        }
+        return null;
+    }
+
+    // Cùng định dạng với E0001 của pylint để phía FE hiển thị như nhau
+    private static Issue error(int line, int col, String message) {
+        return new Issue("ERROR", line, col, "E0001",
+            "Parsing failed: '" + message + " (<unknown>, line " + line + ")'", TOOL);
+    }
+}
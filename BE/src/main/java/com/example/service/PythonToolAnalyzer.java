@@ -0,0 +1,45 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.ReviewListener;
+import com.example.service.StaticAnalysisService.ReviewOptions;
+import com.example.service.StaticAnalysisService.ReviewResult;
+
+import java.util.List;
+
+// Python: pylint + mypy + CrossHair (worker pool, cache, budget từng tool)
+public class PythonToolAnalyzer implements Analyzer {
+
+    static final int MAX_CONCURRENT = Integer.getInteger("devreview.python.maxConcurrent",
+        Runtime.getRuntime().availableProcessors() * 2);
+
+    @Override
+    public String language() {
+        return "python";
+    }
+
+    @Override
+    public List<String> tools() {
+        return StaticAnalysisService.TOOL_ORDER;
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return MAX_CONCURRENT;
+    }
+
+    @Override
+    public long budgetMs() {
+        return tools().stream().mapToLong(PythonAnalyzer::budgetMs).max().orElse(30_000L);
+    }
+
+    @Override
+    public ReviewResult analyze(String code, ReviewListener listener) throws InterruptedException {
+        return StaticAnalysisService.reviewPython(code, listener);
+    }
+
+    @Override
+    public ReviewResult analyze(String code, ReviewListener listener, ReviewOptions options)
+            throws InterruptedException {
+        return StaticAnalysisService.reviewPython(code, listener, options);
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.service;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// ✅ Tách code Python thành các unit top-level (def / async def / class, kèm
+// decorator) và phần còn lại (prelude: import, biến global, lệnh top-level).
+// Chỉ quét dòng + chuỗi + ngoặc, không dựng AST, nên chạy được cả với code lỗi.
+public class PythonUnits {
+
+    private static final Pattern HEADER =
+        Pattern.compile("^\\s*(?:async\\s+)?(def|class)\\s+([A-Za-z_][A-Za-z0-9_]*)");
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    public static class Unit {
+        public final String name;
+        public final String kind;      // "def" hoặc "class"
+        public final int startLine;    // 1-based, tính cả decorator
+        public final int endLine;      // 1-based, inclusive
+        public final int headerLine;   // dòng chứa def/class
+        public final String text;
+        public final List<Unit> methods; // các def trực tiếp trong class
+
+        Unit(String name, String kind, int startLine, int endLine, int headerLine, String text, List<Unit> methods) {
+            this.name = name;
+            this.kind = kind;
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.headerLine = headerLine;
+            this.text = text;
+            this.methods = methods;
+        }
+    }
+
+    public static class Split {
+        public final List<String> lines;
+        public final List<Unit> units;
+        final boolean[] logicalStart; // dòng bắt đầu một câu lệnh mới (không nằm trong chuỗi/ngoặc)
+        final boolean[] endsWithColon;
+
+        Split(List<String> lines, List<Unit> units, boolean[] logicalStart, boolean[] endsWithColon) {
+            this.lines = lines;
+            this.units = units;
+            this.logicalStart = logicalStart;
+            this.endsWithColon = endsWithColon;
+        }
+
+        // Unit chứa dòng (1-based), null nếu dòng thuộc prelude
+        public Unit unitAt(int line) {
+            for (Unit unit : units) {
+                if (line >= unit.startLine && line <= unit.endLine) {
+                    return unit;
+                }
+            }
+            return null;
+        }
+
+        public String prelude() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 1; i <= lines.size(); i++) {
+                if (unitAt(i) == null) {
+                    sb.append(lines.get(i - 1)).append('\n');
+                }
+            }
+            return sb.toString();
+        }
+
+        // Bản "stub" của unit: giữ header def/class (và thân class), thay thân hàm bằng "..."
+        public List<String> stub(Unit unit) {
+            List<String> out = new ArrayList<>();
+            int skipIndent = -1;
+            for (int i = unit.startLine; i <= unit.endLine; i++) {
+                String line = lines.get(i - 1);
+                boolean blank = line.isBlank() || line.stripLeading().startsWith("#");
+                if (skipIndent >= 0) {
+                    if (blank || !logicalStart[i - 1] || indentOf(line) > skipIndent) {
+                        continue;
+                    }
+                    skipIndent = -1;
+                }
+                out.add(line);
+                Matcher m = HEADER.matcher(line);
+                if (logicalStart[i - 1] && m.find() && "def".equals(m.group(1))) {
+                    // header có thể trải nhiều dòng (tham số xuống dòng)
+                    int last = i;
+                    while (last < unit.endLine && !logicalStart[last]) {
+                        out.add(lines.get(last));
+                        last++;
+                    }
+                    if (endsWithColon[last - 1]) {
+                        out.add(" ".repeat(indentOf(line) + 4) + "...");
+                        skipIndent = indentOf(line);
+                    }
+                    i = last;
+                }
+            }
+            return out;
+        }
+    }
+
+    public static Split split(String code) {
+        List<String> lines = Arrays.asList(code.replace("\r\n", "\n").replace('\r', '\n').split("\n", -1));
+        boolean[] logicalStart = new boolean[lines.size()];
+        boolean[] endsWithColon = new boolean[lines.size()];
+        scan(lines, logicalStart, endsWithColon);
+
+        // Dòng bắt đầu câu lệnh top-level (cột 0, không phải comment)
+        List<Integer> topLevel = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (logicalStart[i] && !line.isBlank() && indentOf(line) == 0 && !line.startsWith("#")) {
+                topLevel.add(i);
+            }
+        }
+
+        List<Unit> units = new ArrayList<>();
+        for (int t = 0; t < topLevel.size(); t++) {
+            int start = topLevel.get(t);
+            if (!isUnitStart(lines.get(start))) {
+                continue;
+            }
+            // Decorator: gom các dòng @ liên tiếp với def/class phía sau
+            int header = start;
+            int next = t;
+            while (lines.get(header).startsWith("@") && next + 1 < topLevel.size()) {
+                next++;
+                header = topLevel.get(next);
+            }
+            Matcher m = HEADER.matcher(lines.get(header));
+            if (!m.find()) {
+                t = next;
+                continue;
+            }
+            int end = next + 1 < topLevel.size() ? topLevel.get(next + 1) - 1 : lines.size() - 1;
+            // Dòng trống / comment ở cuối thuộc về prelude (thường là comment cho unit sau)
+            while (end > header && (lines.get(end).isBlank() || lines.get(end).stripLeading().startsWith("#"))) {
+                end--;
+            }
+            List<Unit> methods = "class".equals(m.group(1))
+                ? findMethods(lines, logicalStart, header + 1, end)
+                : List.of();
+            units.add(new Unit(m.group(2), m.group(1), start + 1, end + 1, header + 1,
+                String.join("\n", lines.subList(start, end + 1)), methods));
+            t = next;
+        }
+        return new Split(lines, units, logicalStart, endsWithColon);
+    }
+
+    // Tên (identifier) được dùng trong đoạn code, để tìm các unit phụ thuộc nhau
+    public static Set<String> identifiers(String text) {
+        Set<String> names = new HashSet<>();
+        Matcher m = IDENTIFIER.matcher(text);
+        while (m.find()) {
+            names.add(m.group());
+        }
+        return names;
+    }
+
+    static int indentOf(String line) {
+        int n = 0;
+        while (n < line.length() && (line.charAt(n) == ' ' || line.charAt(n) == '\t')) {
+            n++;
+        }
+        return n;
+    }
+
+    private static boolean isUnitStart(String line) {
+        return line.startsWith("@") || HEADER.matcher(line).find();
+    }
+
+    // Các def trực tiếp trong thân class (index 0-based, inclusive)
+    private static List<Unit> findMethods(List<String> lines, boolean[] logicalStart, int from, int to) {
+        List<Unit> methods = new ArrayList<>();
+        int bodyIndent = -1;
+        for (int i = from; i <= to; i++) {
+            String line = lines.get(i);
+            if (!logicalStart[i] || line.isBlank() || line.stripLeading().startsWith("#")) {
+                continue;
+            }
+            int indent = indentOf(line);
+            if (bodyIndent < 0) {
+                bodyIndent = indent;
+            }
+            if (indent != bodyIndent) {
+                continue;
+            }
+            int start = i;
+            int header = i;
+            while (lines.get(header).stripLeading().startsWith("@") && header < to) {
+                header = nextStatement(lines, logicalStart, header, to);
+            }
+            Matcher m = HEADER.matcher(lines.get(header));
+            if (!m.find() || !"def".equals(m.group(1))) {
+                i = header;
+                continue;
+            }
+            int end = header;
+            for (int j = header + 1; j <= to; j++) {
+                String body = lines.get(j);
+                if (body.isBlank() || body.stripLeading().startsWith("#")) {
+                    continue;
+                }
+                if (logicalStart[j] && indentOf(body) <= bodyIndent) {
+                    break;
+                }
+                end = j;
+            }
+            methods.add(new Unit(m.group(2), "def", start + 1, end + 1, header + 1,
+                String.join("\n", lines.subList(start, end + 1)), List.of()));
+            i = end;
+        }
+        return methods;
+    }
+
+    private static int nextStatement(List<String> lines, boolean[] logicalStart, int from, int to) {
+        for (int j = from + 1; j <= to; j++) {
+            if (logicalStart[j] && !lines.get(j).isBlank() && !lines.get(j).stripLeading().startsWith("#")) {
+                return j;
+            }
+        }
+        return to;
+    }
+
+    // Quét chuỗi (kể cả triple-quote), comment, ngoặc và dấu \ nối dòng để biết
+    // dòng nào thực sự bắt đầu một câu lệnh mới
+    private static void scan(List<String> lines, boolean[] logicalStart, boolean[] endsWithColon) {
+        String triple = null;
+        int depth = 0;
+        boolean continuation = false;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            logicalStart[i] = triple == null && depth == 0 && !continuation;
+            continuation = false;
+            char lastCode = 0;
+            int c = 0;
+            while (c < line.length()) {
+                if (triple != null) {
+                    int close = line.indexOf(triple, c);
+                    if (close < 0) {
+                        c = line.length();
+                        break;
+                    }
+                    triple = null;
+                    c = close + 3;
+                    lastCode = '"';
+                    continue;
+                }
+                char ch = line.charAt(c);
+                if (ch == '#') {
+                    break;
+                }
+                if (ch == '"' || ch == '\'') {
+                    String quote3 = String.valueOf(ch).repeat(3);
+                    if (line.startsWith(quote3, c)) {
+                        triple = quote3;
+                        c += 3;
+                        continue;
+                    }
+                    c++;
+                    while (c < line.length() && line.charAt(c) != ch) {
+                        c += line.charAt(c) == '\\' ? 2 : 1;
+                    }
+                    c++;
+                    lastCode = ch;
+                    continue;
+                }
+                if (ch == '(' || ch == '[' || ch == '{') {
+                    depth++;
+                } else if ((ch == ')' || ch == ']' || ch == '}') && depth > 0) {
+                    depth--;
+                }
+                if (!Character.isWhitespace(ch)) {
+                    lastCode = ch;
+                }
+                c++;
+            }
+            endsWithColon[i] = lastCode == ':' && depth == 0 && triple == null;
+            if (triple == null && line.endsWith("\\")) {
+                continuation = true;
+            }
+        }
+    }
+}
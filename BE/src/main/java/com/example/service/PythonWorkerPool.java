@@ -0,0 +1,345 @@
+package com.example.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ✅ Pool các process Python sống lâu (analyzer_worker.py): mỗi worker nạp
+// pylint/mypy/crosshair một lần rồi nhận job qua stdin/stdout, tránh trả giá
+// khởi động interpreter + import cho mỗi request.
+public class PythonWorkerPool {
+
+    private static final String PYTHON = System.getProperty("devreview.worker.python", "python3");
+    private static final boolean ENABLED =
+        Boolean.parseBoolean(System.getProperty("devreview.worker.enabled", "true"));
+    static final int SIZE =
+        Integer.getInteger("devreview.worker.count", Runtime.getRuntime().availableProcessors());
+    // Recycle worker sau N job hoặc khi RSS vượt ngưỡng (MB)
+    private static final int MAX_JOBS = Integer.getInteger("devreview.worker.maxJobs", 200);
+    private static final long MAX_RSS_KB = Long.getLong("devreview.worker.maxRssMb", 512L) * 1024;
+    private static final long STARTUP_TIMEOUT_MS = Long.getLong("devreview.worker.startupTimeoutMs", 30_000L);
+    private static final long HEALTH_CHECK_INTERVAL_MS = Long.getLong("devreview.worker.healthCheckMs", 30_000L);
+    private static final long PING_TIMEOUT_MS = 5_000L;
+    // Spawn lỗi -> thử lại sau backoff tăng gấp đôi (tối đa MAX_SPAWN_BACKOFF_MS), không bỏ cuộc hẳn
+    private static final long SPAWN_BACKOFF_MS = Long.getLong("devreview.worker.spawnBackoffMs", 1_000L);
+    private static final long MAX_SPAWN_BACKOFF_MS = 60_000L;
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static volatile PythonWorkerPool shared;
+
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    private final Set<Worker> all = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("python-pool-"));
+    private final ExecutorService spawner =
+        Executors.newCachedThreadPool(StaticAnalysisService.daemonThreads("python-spawn-"));
+    // Chỉ bật khi pool bị tắt (cấu hình / shutdown / thiếu script); spawn lỗi thì thử lại
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicInteger failedSpawns = new AtomicInteger();
+    private final AtomicLong jobs = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+    private final String python;
+    private final int size;
+    private final long spawnBackoffMs;
+    private volatile Set<String> tools = Set.of();
+    private volatile Path script;
+
+    PythonWorkerPool(String python, int size, long spawnBackoffMs) {
+        this.python = python;
+        this.size = size;
+        this.spawnBackoffMs = spawnBackoffMs;
+    }
+
+    public static class WorkerUnavailableException extends IOException {
+        public WorkerUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    // Pool dùng chung, khởi động lười ở request đầu tiên (các request trong lúc
+    // pool đang khởi động sẽ fallback về ProcessBuilder)
+    public static PythonWorkerPool shared() {
+        if (shared == null) {
+            synchronized (PythonWorkerPool.class) {
+                if (shared == null) {
+                    shared = new PythonWorkerPool(PYTHON, SIZE, SPAWN_BACKOFF_MS);
+                    if (ENABLED) {
+                        shared.start();
+                    } else {
+                        shared.closed.set(true);
+                    }
+                }
+            }
+        }
+        return shared;
+    }
+
+    private void start() {
+        try {
+            start(extractScript());
+        } catch (IOException e) {
+            System.err.println("❌ Không thể chuẩn bị analyzer_worker.py: " + e.getMessage());
+            closed.set(true);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "python-pool-shutdown"));
+    }
+
+    void start(Path script) {
+        this.script = script;
+        for (int i = 0; i < size; i++) {
+            spawner.submit(this::spawn);
+        }
+        scheduler.scheduleWithFixedDelay(this::healthCheck,
+            HEALTH_CHECK_INTERVAL_MS, HEALTH_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isReady() {
+        return !closed.get() && !all.isEmpty();
+    }
+
+    public boolean supports(String tool) {
+        return isReady() && tools.contains(tool);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ENABLED && !closed.get());
+        stats.put("size", size);
+        stats.put("alive", all.size());
+        stats.put("idle", idle.size());
+        stats.put("jobs", jobs.get());
+        stats.put("recycled", recycled.get());
+        stats.put("failedSpawns", failedSpawns.get());
+        stats.put("tools", tools);
+        return stats;
+    }
+
+    // Gửi một job cho worker rảnh; chờ worker tối đa timeoutMs rồi chờ kết quả
+    // trong phần thời gian còn lại. Hết giờ thì kill worker và thay worker mới.
+    public List<String> run(String tool, List<String> args, String code, long timeoutMs)
+            throws IOException, InterruptedException {
+        return run(tool, args, code, null, timeoutMs);
+    }
+
+    // targetSuffix (tuỳ chọn) được nối vào sau đường dẫn file, vd ":12" = hàm ở dòng 12
+    public List<String> run(String tool, List<String> args, String code, String targetSuffix, long timeoutMs)
+            throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        if (!supports(tool)) {
+            throw new WorkerUnavailableException("Worker pool chưa sẵn sàng cho " + tool);
+        }
+        Worker worker = idle.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (worker == null) {
+            throw new WorkerUnavailableException("Không có worker rảnh sau " + timeoutMs + "ms");
+        }
+
+        boolean healthy = false;
+        try {
+            Map<String, Object> request = new LinkedHashMap<>();
+            request.put("op", "analyze");
+            request.put("tool", tool);
+            request.put("args", args);
+            request.put("code", code);
+            if (targetSuffix != null) {
+                request.put("target_suffix", targetSuffix);
+            }
+            long remaining = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            JsonNode response = worker.call(request, remaining);
+            healthy = true;
+            jobs.incrementAndGet();
+
+            if (!response.path("ok").asBoolean()) {
+                if (response.path("unavailable").asBoolean()) {
+                    throw new WorkerUnavailableException(response.path("error").asText());
+                }
+                throw new IOException("Worker lỗi khi chạy " + tool + ": " + response.path("error").asText());
+            }
+            List<String> output = new ArrayList<>();
+            response.path("output").forEach(line -> output.add(line.asText()));
+            return output;
+        } finally {
+            release(worker, healthy);
+        }
+    }
+
+    private void release(Worker worker, boolean healthy) {
+        // Watchdog có thể đã kill worker ngay sau khi đọc xong frame -> không trả về idle
+        healthy = healthy && !worker.destroyed && worker.process.isAlive();
+        if (healthy && worker.jobs < MAX_JOBS && worker.rssKb < MAX_RSS_KB) {
+            idle.offer(worker);
+            return;
+        }
+        if (healthy) {
+            System.out.println("♻ Recycle python worker pid=" + worker.pid
+                + " (jobs=" + worker.jobs + ", rss=" + worker.rssKb / 1024 + "MB)");
+        }
+        replace(worker);
+    }
+
+    private void replace(Worker worker) {
+        all.remove(worker);
+        worker.destroy();
+        recycled.incrementAndGet();
+        if (!closed.get()) {
+            spawner.submit(this::spawn);
+        }
+    }
+
+    private void spawn() {
+        if (closed.get()) {
+            return;
+        }
+        try {
+            Worker worker = new Worker();
+            failedSpawns.set(0);
+            all.add(worker);
+            idle.offer(worker);
+        } catch (Exception e) {
+            // Không khởi động được python (chưa cài, thiếu quyền, hết RAM tạm thời...) ->
+            // thử lại sau backoff; trong lúc đó PythonAnalyzer fallback về ProcessBuilder
+            int failures = failedSpawns.incrementAndGet();
+            long delayMs = Math.min(MAX_SPAWN_BACKOFF_MS, spawnBackoffMs << Math.min(failures - 1, 16));
+            System.err.println("❌ Không khởi động được python worker: " + e.getMessage()
+                + " (thử lại sau " + delayMs + "ms)");
+            if (!closed.get()) {
+                scheduler.schedule(() -> spawner.submit(this::spawn), delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void healthCheck() {
+        for (Worker worker : new ArrayList<>(all)) {
+            if (!idle.remove(worker)) {
+                continue; // đang bận, kiểm tra ở vòng sau
+            }
+            boolean healthy = false;
+            try {
+                worker.call(Map.of("op", "ping"), PING_TIMEOUT_MS);
+                healthy = worker.process.isAlive();
+            } catch (Exception e) {
+                System.err.println("⚠ Python worker pid=" + worker.pid + " không phản hồi: " + e.getMessage());
+            }
+            release(worker, healthy);
+        }
+    }
+
+    void shutdown() {
+        closed.set(true);
+        for (Worker worker : all) {
+            worker.destroy();
+        }
+        scheduler.shutdownNow();
+        spawner.shutdownNow();
+    }
+
+    private static Path extractScript() throws IOException {
+        Path target = Files.createTempFile("analyzer_worker-", ".py");
+        target.toFile().deleteOnExit();
+        try (InputStream in = PythonWorkerPool.class.getResourceAsStream("/python/analyzer_worker.py")) {
+            if (in == null) {
+                throw new FileNotFoundException("python/analyzer_worker.py không có trong classpath");
+            }
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    private class Worker {
+        final Process process;
+        final long pid;
+        final DataOutputStream in;
+        final DataInputStream out;
+        int jobs;
+        long rssKb;
+        volatile boolean destroyed;
+
+        Worker() throws IOException, InterruptedException {
+            // Giới hạn RAM (nếu bật) áp cho cả worker; CPU thì không vì worker sống lâu
+            ProcessBuilder pb = new ProcessBuilder(
+                GovernedProcess.limitedCommand(List.of(python, "-u", script.toString()), false));
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+            pb.environment().put("DEVREVIEW_SCRATCH_DIR", AnalyzerInput.scratchDir().toString());
+            process = pb.start();
+            pid = process.pid();
+            in = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            out = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+            JsonNode hello = readWithTimeout(STARTUP_TIMEOUT_MS);
+            if (!hello.path("ready").asBoolean()) {
+                destroy();
+                throw new IOException("Handshake không hợp lệ: " + hello);
+            }
+            Set<String> available = new TreeSet<>();
+            hello.path("tools").forEach(t -> available.add(t.asText()));
+            tools = Collections.unmodifiableSet(available);
+            rssKb = hello.path("rss_kb").asLong();
+            System.out.println("✅ Python worker pid=" + pid + " sẵn sàng, tools=" + available);
+        }
+
+        JsonNode call(Map<String, Object> request, long timeoutMs) throws IOException, InterruptedException {
+            byte[] payload = MAPPER.writeValueAsBytes(request);
+            in.writeInt(payload.length);
+            in.write(payload);
+            in.flush();
+            JsonNode response = readWithTimeout(timeoutMs);
+            if ("analyze".equals(request.get("op"))) {
+                jobs++;
+            }
+            rssKb = response.path("rss_kb").asLong(rssKb);
+            return response;
+        }
+
+        // Đọc frame là blocking -> watchdog kill process khi quá hạn để gỡ read.
+        // Watchdog và người đọc tranh nhau cờ expired: bên nào lấy được trước quyết định
+        private JsonNode readWithTimeout(long timeoutMs) throws IOException, InterruptedException {
+            AtomicBoolean expired = new AtomicBoolean(false);
+            ScheduledFuture<?> watchdog = scheduler.schedule(() -> {
+                if (expired.compareAndSet(false, true)) {
+                    destroy();
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+            try {
+                int length = out.readInt();
+                if (length < 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Frame không hợp lệ: " + length + " bytes");
+                }
+                byte[] data = new byte[length];
+                out.readFully(data);
+                return MAPPER.readTree(new String(data, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                if (expired.get()) {
+                    throw new InterruptedIOException("Worker pid=" + pid + " quá " + timeoutMs + "ms");
+                }
+                throw e;
+            } finally {
+                watchdog.cancel(false);
+                // Watchdog đã chạy (kể cả ngay sau khi frame đọc xong): đánh dấu worker đã
+                // hủy ngay tại đây để release() không trả nó về idle
+                if (!expired.compareAndSet(false, true)) {
+                    destroy();
+                }
+                if (Thread.interrupted()) {
+                    destroy();
+                    throw new InterruptedException();
+                }
+            }
+        }
+
+        void destroy() {
+            destroyed = true;
+            GovernedProcess.killTree(process);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.ReviewResult;
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// ✅ Cache kết quả /api/review theo nội dung: key = SHA-256(ngôn ngữ, code đã
+// chuẩn hoá, phiên bản + cấu hình analyzer). Tầng RAM (LRU) đứng trước tầng đĩa
+// tuỳ chọn (-Ddevreview.cache.dir) để giữ kết quả qua các lần restart.
+// Khi phiên bản linter đổi thì fingerprint đổi -> các entry cũ tự mất hiệu lực.
+// Tầng đĩa cũng có giới hạn số entry / dung lượng, vượt thì xoá file ít dùng nhất
+// theo mtime (đọc trúng từ đĩa sẽ cập nhật mtime).
+public class ReviewCache {
+
+    private static final boolean ENABLED =
+        Boolean.parseBoolean(System.getProperty("devreview.cache.enabled", "true"));
+    private static final int MAX_ENTRIES = Integer.getInteger("devreview.cache.maxEntries", 2_000);
+    private static final String DISK_DIR = System.getProperty("devreview.cache.dir");
+    private static final long VERSION_CHECK_MS = Long.getLong("devreview.cache.versionCheckMs", 10 * 60_000L);
+    private static final List<String> TOOLS = List.of("pylint", "mypy", "crosshair");
+    // Entry nằm trong thư mục con riêng: devreview.cache.dir có thể là thư mục dùng chung,
+    // khi dọn fingerprint cũ chỉ được đụng tới thư mục của cache này
+    static final String DISK_SUBDIR = "devreview-review-cache";
+    private static final int MAX_DISK_ENTRIES = Integer.getInteger("devreview.cache.maxDiskEntries", 20_000);
+    private static final long MAX_DISK_BYTES = Long.getLong("devreview.cache.maxDiskBytes", 256L * 1024 * 1024);
+    // Dọn xuống 90% giới hạn để không phải quét thư mục sau mỗi lần ghi
+    private static final double DISK_TRIM_TO = 0.9;
+
+    private static final Gson GSON = new Gson();
+    private static final LruCache<String, ReviewResult> MEMORY = new LruCache<>(MAX_ENTRIES);
+
+    private static final AtomicLong memoryHits = new AtomicLong();
+    private static final AtomicLong diskHits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong invalidations = new AtomicLong();
+    // Ước lượng dung lượng thư mục fingerprint hiện tại, đặt lại chính xác mỗi lần dọn
+    private static final AtomicLong diskEntries = new AtomicLong();
+    private static final AtomicLong diskBytes = new AtomicLong();
+    private static final AtomicLong diskEvictions = new AtomicLong();
+    private static final AtomicBoolean trimScheduled = new AtomicBoolean();
+
+    private static final ScheduledExecutorService MAINTENANCE = ENABLED
+        ? Executors.newSingleThreadScheduledExecutor(StaticAnalysisService.daemonThreads("review-cache-"))
+        : null;
+
+    // null = chưa biết phiên bản tool -> tạm thời bỏ qua cache
+    private static volatile String fingerprint;
+    private static volatile Map<String, String> versions = Map.of();
+
+    static {
+        if (ENABLED) {
+            MAINTENANCE.scheduleWithFixedDelay(ReviewCache::refreshFingerprint, 0, VERSION_CHECK_MS,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Fingerprint phiên bản + cấu hình analyzer hiện tại, null nếu chưa xác định
+    public static String fingerprint() {
+        return ENABLED ? fingerprint : null;
+    }
+
+    public static String key(String language, String code) {
+        String fp = fingerprint;
+        if (!ENABLED || fp == null || code == null) {
+            return null;
+        }
+        return sha256(language.toLowerCase() + "\u0000" + normalize(code) + "\u0000" + fp);
+    }
+
+    // Chuẩn hoá nhưng giữ nguyên số dòng để line/col của Issue vẫn đúng
+    static String normalize(String code) {
+        String[] lines = code.replace("\r\n", "\n").replace('\r', '\n').split("\n", -1);
+        StringBuilder sb = new StringBuilder(code.length());
+        for (String line : lines) {
+            sb.append(line.stripTrailing()).append('\n');
+        }
+        return sb.toString().stripTrailing();
+    }
+
+    public static ReviewResult get(String key) {
+        if (key == null) {
+            return null;
+        }
+        ReviewResult hit = MEMORY.get(key);
+        if (hit != null) {
+            memoryHits.incrementAndGet();
+            return copy(hit);
+        }
+        hit = readDisk(key);
+        if (hit != null) {
+            diskHits.incrementAndGet();
+            MEMORY.put(key, hit);
+            return copy(hit);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public static void put(String key, ReviewResult result) {
+        if (key == null) {
+            return;
+        }
+        ReviewResult stored = copy(result);
+        stored.cached = false;
+        MEMORY.put(key, stored);
+        writeDisk(key, stored);
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        stats.put("enabled", ENABLED);
+        stats.put("size", MEMORY.size());
+        stats.put("maxEntries", MEMORY.maxEntries());
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        stats.put("evictions", MEMORY.evictions());
+        stats.put("invalidations", invalidations.get());
+        stats.put("diskDir", DISK_DIR);
+        if (DISK_DIR != null) {
+            stats.put("diskEntries", diskEntries.get());
+            stats.put("diskBytes", diskBytes.get());
+            stats.put("maxDiskEntries", MAX_DISK_ENTRIES);
+            stats.put("maxDiskBytes", MAX_DISK_BYTES);
+            stats.put("diskEvictions", diskEvictions.get());
+        }
+        stats.put("versions", versions);
+        return stats;
+    }
+
+    private static ReviewResult copy(ReviewResult result) {
+        ReviewResult copy = new ReviewResult(new ArrayList<>(result.issues),
+            new LinkedHashMap<>(result.tools), result.elapsedMs);
+        copy.cached = true;
+        return copy;
+    }
+
+    // ✅ Đọc phiên bản từng tool; đổi phiên bản -> xoá tầng RAM và thư mục đĩa cũ
+    static void refreshFingerprint() {
+        try {
+            Map<String, String> current = new LinkedHashMap<>();
+            StringBuilder config = new StringBuilder();
+            for (String tool : TOOLS) {
+                current.put(tool, toolVersion(tool));
+                config.append(tool).append(PythonAnalyzer.toolArgs(tool)).append(';');
+            }
+            String next = sha256(current + "|" + config).substring(0, 16);
+            String previous = fingerprint;
+            if (!next.equals(previous)) {
+                if (previous != null) {
+                    System.out.println("♻ Phiên bản analyzer thay đổi " + versions + " -> " + current
+                        + ", xoá cache review");
+                    invalidations.incrementAndGet();
+                    MEMORY.clear();
+                }
+                versions = current;
+                fingerprint = next;
+                if (DISK_DIR != null) {
+                    purgeStaleDiskEntries(Paths.get(DISK_DIR, DISK_SUBDIR), next);
+                    trimDisk();
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("⚠ Không kiểm tra được phiên bản analyzer: " + e.getMessage());
+        }
+    }
+
+    private static String toolVersion(String tool) {
+        try {
+            Process process = new ProcessBuilder(tool, "--version").redirectErrorStream(true).start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = new String(in.readNBytes(4096), StandardCharsets.UTF_8).trim();
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return "timeout";
+            }
+            return output.replaceAll("\\s+", " ");
+        } catch (IOException e) {
+            return "missing";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    private static Path diskPath(String key) {
+        return Paths.get(DISK_DIR, DISK_SUBDIR, fingerprint, key.substring(0, 2), key + ".json");
+    }
+
+    private static ReviewResult readDisk(String key) {
+        if (DISK_DIR == null) {
+            return null;
+        }
+        Path path = diskPath(key);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            ReviewResult result = GSON.fromJson(reader, ReviewResult.class);
+            // mtime = lần dùng gần nhất, để dọn theo LRU
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        } catch (Exception e) {
+            System.err.println("⚠ Entry cache hỏng, xoá " + path + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    private static void writeDisk(String key, ReviewResult result) {
+        if (DISK_DIR == null) {
+            return;
+        }
+        Path path = diskPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            long previous = Files.isRegularFile(path) ? Files.size(path) : -1;
+            // Ghi ra file tạm rồi rename để không bao giờ đọc phải file ghi dở
+            Path tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.writeString(tmp, GSON.toJson(result), StandardCharsets.UTF_8);
+            long size = Files.size(tmp);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long entries = previous < 0 ? diskEntries.incrementAndGet() : diskEntries.get();
+            long bytes = diskBytes.addAndGet(size - Math.max(0, previous));
+            if ((entries > MAX_DISK_ENTRIES || bytes > MAX_DISK_BYTES) && trimScheduled.compareAndSet(false, true)) {
+                // Quét thư mục trên thread của cache, không bắt request đang ghi phải chờ
+                MAINTENANCE.execute(() -> {
+                    try {
+                        trimDisk();
+                    } finally {
+                        trimScheduled.set(false);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            System.err.println("⚠ Không ghi được cache xuống đĩa: " + e.getMessage());
+        }
+    }
+
+    private static void trimDisk() {
+        String fp = fingerprint;
+        if (fp == null) {
+            return;
+        }
+        DiskUsage usage = trimDisk(Paths.get(DISK_DIR, DISK_SUBDIR, fp), MAX_DISK_ENTRIES, MAX_DISK_BYTES);
+        diskEntries.set(usage.entries);
+        diskBytes.set(usage.bytes);
+        if (usage.evicted > 0) {
+            diskEvictions.addAndGet(usage.evicted);
+            System.out.println("🧹 Cache review trên đĩa vượt giới hạn, đã xoá " + usage.evicted + " entry cũ");
+        }
+    }
+
+    static class DiskUsage {
+        int entries;
+        long bytes;
+        int evicted;
+    }
+
+    // Vượt maxEntries / maxBytes -> xoá entry có mtime cũ nhất tới khi còn DISK_TRIM_TO giới hạn
+    static DiskUsage trimDisk(Path dir, int maxEntries, long maxBytes) {
+        DiskUsage usage = new DiskUsage();
+        if (!Files.isDirectory(dir)) {
+            return usage;
+        }
+        List<Path> files = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        try (Stream<Path> paths = Files.walk(dir, 2)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!path.getFileName().toString().endsWith(".json")) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attrs.isRegularFile()) {
+                        files.add(path);
+                        attributes.put(path, attrs);
+                        usage.bytes += attrs.size();
+                    }
+                } catch (IOException ignored) {
+                    // file vừa bị xoá / ghi đè
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("⚠ Không quét được cache trên đĩa: " + e.getMessage());
+            return usage;
+        }
+        usage.entries = files.size();
+        if (usage.entries <= maxEntries && usage.bytes <= maxBytes) {
+            return usage;
+        }
+        files.sort(Comparator.comparing(path -> attributes.get(path).lastModifiedTime()));
+        long targetEntries = (long) (maxEntries * DISK_TRIM_TO);
+        long targetBytes = (long) (maxBytes * DISK_TRIM_TO);
+        for (Path path : files) {
+            if (usage.entries <= targetEntries && usage.bytes <= targetBytes) {
+                break;
+            }
+            try {
+                if (Files.deleteIfExists(path)) {
+                    usage.entries--;
+                    usage.bytes -= attributes.get(path).size();
+                    usage.evicted++;
+                }
+            } catch (IOException e) {
+                System.err.println("⚠ Không xoá được " + path + ": " + e.getMessage());
+            }
+        }
+        return usage;
+    }
+
+    static void purgeStaleDiskEntries(Path root, String current) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(dir -> Files.isDirectory(dir) && !dir.getFileName().toString().equals(current))
+                .forEach(ReviewCache::deleteRecursively);
+        } catch (IOException e) {
+            System.err.println("⚠ Không dọn được cache cũ: " + e.getMessage());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("⚠ Không xoá được " + dir + ": " + e.getMessage());
+        }
+    }
+
+    static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
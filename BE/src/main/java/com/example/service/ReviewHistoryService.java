@@ -1,16 +1,27 @@
 package com.example.service;
 
+import com.example.model.HistoryListItem;
 import com.example.model.ReviewHistory;
 import com.example.model.User;
 import com.example.repository.ReviewHistoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Comparator;
+import java.util.Map;
 
 @Service
 public class ReviewHistoryService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private ReviewHistoryRepository reviewHistoryRepository;
 
@@ -80,6 +91,52 @@ public class ReviewHistoryService {
         return histories;
     }
 
+    // ✅ Lịch sử phân trang keyset (mới nhất trước): chỉ dòng nhẹ (HistoryListItem),
+    // cursor = vị trí (createdAt, id) của dòng cuối trang trước, null = trang đầu
+    public Map<String, Object> getHistoryPage(String username, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Lấy dư một dòng để biết còn trang sau hay không
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<HistoryListItem> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = reviewHistoryRepository.findHistoryPage(username, page);
+        } else {
+            String[] position = decodeCursor(cursor);
+            rows = reviewHistoryRepository.findHistoryPageAfter(username,
+                    LocalDateTime.parse(position[0]), Long.parseLong(position[1]), page);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<HistoryListItem> items = hasMore ? rows.subList(0, size) : rows;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("items", items);
+        result.put("hasMore", hasMore);
+        if (hasMore) {
+            HistoryListItem last = items.get(items.size() - 1);
+            result.put("nextCursor", encodeCursor(last.getCreatedAt(), last.getId()));
+        }
+        return result;
+    }
+
+    static String encodeCursor(LocalDateTime createdAt, Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (position.length != 2) {
+                throw new IllegalArgumentException("cursor không hợp lệ");
+            }
+            LocalDateTime.parse(position[0]);
+            Long.parseLong(position[1]);
+            return position;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("cursor không hợp lệ", e);
+        }
+    }
+
     // ✅ THÊM: Method lấy lịch sử với phân trang
     public List<ReviewHistory> getHistoryWithLimit(String username, int limit) {
         List<ReviewHistory> allHistories = getHistory(username);
@@ -0,0 +1,95 @@
+package com.example.service;
+
+import java.util.*;
+
+// ✅ Chọn tool Python cho một request theo độ sâu / budget thời gian:
+//   fast     - editor-on-save: chỉ tool dự kiến xong trong ~300ms
+//   standard - pylint + mypy, budget 10s
+//   deep     - đủ pylint + mypy + CrossHair, không cắt (pre-submit)
+// Budget truyền vào trực tiếp được ưu tiên hơn budget mặc định của depth. Thời gian
+// dự kiến của tool lấy từ ToolLatency (p90 theo nhóm kích thước code).
+// Prior của mọi tool đều lớn hơn budget fast, nên nếu chỉ dựa vào ước lượng thì fast
+// bỏ hết tool mãi mãi và không bao giờ có mẫu. Vì vậy khi nhóm kích thước còn thiếu
+// mẫu, tool rẻ nhất trong số bị loại vẫn được chạy làm "probe": quá budget thì request
+// không chờ, nhưng tool chạy tiếp ở nền tới hết budget riêng để ghi nhận latency.
+public class ReviewPlanner {
+
+    public static final String FAST = "fast";
+    public static final String STANDARD = "standard";
+    public static final String DEEP = "deep";
+
+    private static final long FAST_BUDGET_MS = Long.getLong("devreview.depth.fastBudgetMs", 300L);
+    private static final long STANDARD_BUDGET_MS = Long.getLong("devreview.depth.standardBudgetMs", 10_000L);
+
+    public static class Plan {
+        public final List<String> tools;
+        public final List<String> skipped;
+        // Tool chạy để lấy mẫu latency (nằm trong tools), quá budget thì không bị huỷ
+        public final List<String> probes;
+        // null = không giới hạn thêm ngoài budget riêng của từng tool
+        public final Long budgetMs;
+
+        Plan(List<String> tools, List<String> skipped, List<String> probes, Long budgetMs) {
+            this.tools = tools;
+            this.skipped = skipped;
+            this.probes = probes;
+            this.budgetMs = budgetMs;
+        }
+    }
+
+    public static boolean isDepth(String depth) {
+        return FAST.equals(depth) || STANDARD.equals(depth) || DEEP.equals(depth);
+    }
+
+    public static Plan plan(StaticAnalysisService.ReviewOptions options, String code) {
+        List<String> candidates = new ArrayList<>(StaticAnalysisService.TOOL_ORDER);
+        if (options == null) {
+            return new Plan(candidates, new ArrayList<>(), new ArrayList<>(), null);
+        }
+        if (options.tools != null) {
+            candidates.retainAll(options.tools);
+        }
+        String depth = options.depth == null ? "" : options.depth.toLowerCase(Locale.ROOT);
+        Long budget = options.budgetMs;
+        if (STANDARD.equals(depth)) {
+            candidates.remove(StaticAnalysisService.CROSSHAIR);
+            if (budget == null) {
+                budget = STANDARD_BUDGET_MS;
+            }
+        } else if (FAST.equals(depth) && budget == null) {
+            budget = FAST_BUDGET_MS;
+        }
+
+        List<String> tools = new ArrayList<>();
+        List<String> skipped = new ArrayList<>(StaticAnalysisService.TOOL_ORDER);
+        skipped.removeAll(candidates);
+        if (options.tools != null) {
+            // Tool không được yêu cầu thì không tính là "bị bỏ qua"
+            skipped.retainAll(options.tools);
+        }
+        int lines = ToolLatency.lineCount(code);
+        String probe = null;
+        for (String tool : candidates) {
+            // Tool chạy song song nên mỗi tool chỉ cần tự vừa budget
+            if (budget == null || ToolLatency.estimateMs(tool, lines) <= budget) {
+                tools.add(tool);
+            } else if (!ToolLatency.warmedUp(tool, lines)
+                    && (probe == null || ToolLatency.estimateMs(tool, lines) < ToolLatency.estimateMs(probe, lines))) {
+                if (probe != null) {
+                    skipped.add(probe);
+                }
+                probe = tool;
+            } else {
+                skipped.add(tool);
+            }
+        }
+        List<String> probes = new ArrayList<>();
+        if (probe != null) {
+            tools.add(probe);
+            probes.add(probe);
+            tools.sort(Comparator.comparingInt(StaticAnalysisService.TOOL_ORDER::indexOf));
+        }
+        skipped.sort(Comparator.comparingInt(StaticAnalysisService.TOOL_ORDER::indexOf));
+        return new Plan(tools, skipped, probes, budget);
+    }
+}
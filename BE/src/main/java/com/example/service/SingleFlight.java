@@ -0,0 +1,59 @@
+package com.example.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// ✅ Gộp các lời gọi giống hệt nhau đang chạy: caller đầu tiên gọi upstream, các caller
+// sau (cùng key, trong lúc call chưa xong) gắn vào cùng kết quả. Mỗi caller nhận một
+// bản sao (copy) của future chung -> client ngắt kết nối / cancel chỉ huỷ bản của nó,
+// call chung vẫn chạy tiếp cho những người còn lại.
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CompletableFuture<V> call(K key, Supplier<CompletableFuture<V>> upstream) {
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> existing = calls.putIfAbsent(key, shared);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.copy();
+        }
+        leaders.incrementAndGet();
+        try {
+            upstream.get().whenComplete((value, error) -> {
+                // bỏ khỏi map trước khi complete: caller tới sau khi xong sẽ gọi mới, không nhận kết quả cũ
+                calls.remove(key, shared);
+                if (error != null) {
+                    shared.completeExceptionally(GeminiClient.unwrap(error));
+                } else {
+                    shared.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            calls.remove(key, shared);
+            shared.completeExceptionally(e);
+        }
+        return shared.copy();
+    }
+
+    public int inFlight() {
+        return calls.size();
+    }
+
+    public Map<String, Object> stats() {
+        long started = leaders.get();
+        long joined = coalesced.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", calls.size());
+        stats.put("upstreamCalls", started);
+        stats.put("duplicatesAvoided", joined);
+        stats.put("coalesceRate", started + joined == 0 ? 0.0 : (double) joined / (started + joined));
+        return stats;
+    }
+}
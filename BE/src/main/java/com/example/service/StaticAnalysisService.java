@@ -2,6 +2,9 @@ package com.example.service;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.*;
 
 public class StaticAnalysisService {
@@ -12,6 +15,7 @@ public class StaticAnalysisService {
         public int col;
         public String code;
         public String message;
+        public String tool;
 
         public Issue(String type, int line, int col, String code, String message) {
             this.type = type;
@@ -20,62 +24,446 @@ public class StaticAnalysisService {
             this.code = code;
             this.message = message;
         }
+
+        public Issue(String type, int line, int col, String code, String message, String tool) {
+            this(type, line, col, code, message);
+            this.tool = tool;
+        }
+    }
+
+    // ✅ Thông tin chạy của từng tool (đã xong chưa, mất bao lâu)
+    public static class ToolReport {
+        public String tool;
+        public boolean completed;
+        public long elapsedMs;
+        public String error;
+        public boolean truncated; // output bị cắt hoặc tool bị kill giữa chừng
+
+        public ToolReport(String tool, boolean completed, long elapsedMs, String error) {
+            this.tool = tool;
+            this.completed = completed;
+            this.elapsedMs = elapsedMs;
+            this.error = error;
+        }
+    }
+
+    // ✅ Nhận kết quả ngay khi có: từng Issue lúc dòng output vừa parse xong,
+    // và một sự kiện khi mỗi tool chạy xong (dùng cho /api/review/stream).
+    // Có thể được gọi đồng thời từ nhiều thread tool.
+    public interface ReviewListener {
+        void onIssue(Issue issue);
+
+        void onToolDone(ToolReport report);
+    }
+
+    // Kết quả parse của một tool kèm thông tin chạy
+    private static class ToolRun {
+        final List<Issue> issues;
+        final ToolReport report;
+
+        ToolRun(List<Issue> issues, ToolReport report) {
+            this.issues = issues;
+            this.report = report;
+        }
+    }
+
+    // ✅ Tuỳ chọn độ sâu cho một review (xem ReviewPlanner); null = chạy đủ tool
+    public static class ReviewOptions {
+        public String depth;
+        public Long budgetMs;
+        // Giới hạn tập tool (vd. chạy nền các tool đã bị bỏ qua), null = tất cả
+        public List<String> tools;
+
+        public ReviewOptions(String depth, Long budgetMs, List<String> tools) {
+            this.depth = depth;
+            this.budgetMs = budgetMs;
+            this.tools = tools;
+        }
+    }
+
+    public static class ReviewResult {
+        public List<Issue> issues;
+        public Map<String, ToolReport> tools;
+        public long elapsedMs;
+        public boolean cached;
+        // Tool không chạy vì dự kiến không kịp budget / không thuộc depth đã chọn
+        public List<String> skippedTools = new ArrayList<>();
+        // Chỉ có khi review tăng dần (IncrementalReview)
+        public Integer reusedUnits;
+        public Integer analyzedUnits;
+
+        public ReviewResult(List<Issue> issues, Map<String, ToolReport> tools, long elapsedMs) {
+            this.issues = issues;
+            this.tools = tools;
+            this.elapsedMs = elapsedMs;
+        }
+
+        // Map trả về cho client, dùng chung cho /review và phần review của /analyze
+        public Map<String, Object> toResponse() {
+            Map<String, Object> res = new HashMap<>();
+            res.put("success", true);
+            res.put("feedback", issues);
+            res.put("tools", tools); // ✅ tool nào đã xong, mất bao lâu
+            res.put("skippedTools", skippedTools);
+            res.put("elapsedMs", elapsedMs);
+            res.put("cached", cached);
+            if (analyzedUnits != null) {
+                res.put("reusedUnits", reusedUnits);
+                res.put("analyzedUnits", analyzedUnits);
+            }
+            return res;
+        }
     }
 
     private static final Pattern PYLINT_PATTERN =
         Pattern.compile(".*:(\\d+):(\\d+): ([EW]\\d{4}): (.*)");
     private static final Pattern MYPY_PATTERN =
         Pattern.compile(".*:(\\d+): (error): (.*)  \\[(.*)\\]");
+    private static final Pattern CROSSHAIR_PATTERN =
+        Pattern.compile(".*:(\\d+): error: (.*)");
+
+    static final String PYLINT = "pylint";
+    static final String MYPY = "mypy";
+    static final String CROSSHAIR = "crosshair";
+
+    // Thứ tự tool dùng khi sắp xếp các issue cùng dòng/cột
+    static final List<String> TOOL_ORDER = List.of(PYLINT, MYPY, CROSSHAIR);
+
+    // GovernedProcess tự kill tool khi hết budget; chờ thêm chút để lấy phần output đã có
+    private static final long GRACE_MS = 1_000L;
+
+    // ✅ Executor cho từng tool của một review Python. Review đã được lane "python" của
+    // AnalyzerRegistry giới hạn số lượng, nên pool tool có đúng sức chứa lane x số tool:
+    // task của lane không bao giờ phải xếp hàng lần hai ở đây (lane là nơi duy nhất
+    // xếp hàng / từ chối). Đầy (chỉ khi cấu hình tay nhỏ hơn) thì từ chối, tool được
+    // báo là bị bỏ qua chứ không chạy trên thread của lane.
+    private static final int TOOL_THREADS = Integer.getInteger("devreview.analysis.threads",
+        PythonToolAnalyzer.MAX_CONCURRENT * TOOL_ORDER.size());
+    private static final ThreadPoolExecutor TOOL_EXECUTOR = new ThreadPoolExecutor(
+        TOOL_THREADS, TOOL_THREADS,
+        60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(TOOL_THREADS),
+        daemonThreads("analyzer-"),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    static {
+        TOOL_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    // Thread điều phối cho các review chạy nền (streaming); chỉ chờ tool nên rẻ
+    private static final int REQUEST_THREADS = Math.max(3, Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService REQUEST_EXECUTOR = new ThreadPoolExecutor(
+        REQUEST_THREADS, REQUEST_THREADS * 4,
+        60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(REQUEST_THREADS * 16),
+        daemonThreads("review-"),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
 
     public static List<Issue> reviewCode(String language, String code)
             throws IOException, InterruptedException {
-        if (!"python".equalsIgnoreCase(language)) {
-            return Collections.emptyList();
+        return review(language, code).issues;
+    }
+
+    public static ReviewResult review(String language, String code) throws InterruptedException {
+        return review(language, code, null);
+    }
+
+    // Chạy review trên thread riêng, dùng cho endpoint streaming
+    public static CompletableFuture<ReviewResult> reviewAsync(String language, String code, ReviewListener listener) {
+        return reviewAsync(language, code, listener, null);
+    }
+
+    public static CompletableFuture<ReviewResult> reviewAsync(String language, String code, ReviewListener listener,
+                                                              ReviewOptions options) {
+        CompletableFuture<ReviewResult> future = new CompletableFuture<>();
+        try {
+            REQUEST_EXECUTOR.execute(() -> {
+                try {
+                    future.complete(review(language, code, listener, options));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
         }
+        return future;
+    }
 
-        List<Issue> issues = new ArrayList<>();
+    // ✅ Chọn analyzer theo ngôn ngữ (AnalyzerRegistry), chạy trong pool riêng của
+    // ngôn ngữ đó. listener (có thể null) nhận kết quả từng phần.
+    public static ReviewResult review(String language, String code, ReviewListener listener)
+            throws InterruptedException {
+        return review(language, code, listener, null);
+    }
+
+    public static ReviewResult review(String language, String code, ReviewListener listener, ReviewOptions options)
+            throws InterruptedException {
+        return AnalyzerRegistry.review(language, code, listener, options);
+    }
 
-        // 1. Pylint
-        for (String line : PythonAnalyzer.runPylint(code)) {
-            Matcher m = PYLINT_PATTERN.matcher(line);
-            if (m.matches()) {
-                issues.add(new Issue(
-                    m.group(3).startsWith("E") ? "ERROR" : "WARNING",
-                    Integer.parseInt(m.group(1)),
-                    Integer.parseInt(m.group(2)),
-                    m.group(3),
-                    m.group(4)
-                ));
+    static ReviewResult reviewPython(String code, ReviewListener listener) throws InterruptedException {
+        return reviewPython(code, listener, null);
+    }
+
+    // ✅ Chạy song song các tool mà ReviewPlanner chọn (mặc định pylint, mypy,
+    // CrossHair); trả về khi tool chậm nhất xong hoặc hết budget
+    static ReviewResult reviewPython(String code, ReviewListener listener, ReviewOptions options)
+            throws InterruptedException {
+        long start = System.nanoTime();
+
+        // ✅ Lỗi cú pháp hiển nhiên -> trả về ngay, không tốn 3 process Python
+        List<Issue> syntaxErrors = PythonPreLint.check(code);
+        if (!syntaxErrors.isEmpty()) {
+            ToolReport report = new ToolReport(PythonPreLint.TOOL, true, elapsedMs(start, System.nanoTime()), null);
+            if (listener != null) {
+                syntaxErrors.forEach(listener::onIssue);
+                listener.onToolDone(report);
+            }
+            Map<String, ToolReport> tools = new LinkedHashMap<>();
+            tools.put(PythonPreLint.TOOL, report);
+            return new ReviewResult(new ArrayList<>(syntaxErrors), tools, report.elapsedMs);
+        }
+
+        // ✅ Cùng code + cùng phiên bản tool -> trả kết quả đã cache
+        String cacheKey = ReviewCache.key("python", code);
+        ReviewResult cached = ReviewCache.get(cacheKey);
+        if (cached != null && (options == null || options.tools == null)) {
+            System.out.println("Review cache hit (" + cacheKey.substring(0, 12) + ")");
+            if (listener != null) {
+                cached.issues.forEach(listener::onIssue);
+                cached.tools.values().forEach(listener::onToolDone);
+            }
+            return cached;
+        }
+
+        ReviewPlanner.Plan plan = ReviewPlanner.plan(options, code);
+        if (!plan.skipped.isEmpty()) {
+            System.out.println("Review " + (options.depth == null ? "" : options.depth + " ")
+                + "(budget " + plan.budgetMs + "ms): bỏ qua " + plan.skipped);
+        }
+
+        // Mỗi tool chỉ báo "done" một lần (task xong và timeout có thể xảy ra cùng lúc)
+        Set<String> notified = ConcurrentHashMap.newKeySet();
+        Map<String, Future<ToolRun>> futures = new LinkedHashMap<>();
+        Map<String, ToolReport> reports = new LinkedHashMap<>();
+        List<String> skipped = new ArrayList<>(plan.skipped);
+        // Probe quá budget vẫn chạy tiếp ở nền; khi đó không đẩy issue vào listener nữa
+        Map<String, AtomicBoolean> detached = new HashMap<>();
+        for (String tool : plan.tools) {
+            ReviewListener toolListener = listener;
+            if (listener != null && plan.probes.contains(tool)) {
+                AtomicBoolean gate = new AtomicBoolean();
+                detached.put(tool, gate);
+                toolListener = detachable(listener, gate);
+            }
+            ReviewListener runListener = toolListener;
+            Future<ToolRun> future = trySubmit(TOOL_EXECUTOR, () -> {
+                ToolRun run = runAndParse(tool, code, start, runListener);
+                if (listener != null && notified.add(tool)) {
+                    listener.onToolDone(run.report);
+                }
+                return run;
+            });
+            if (future != null) {
+                futures.put(tool, future);
+                continue;
+            }
+            ToolReport rejected = new ToolReport(tool, false, elapsedMs(start, System.nanoTime()),
+                "Hàng đợi tool đã đầy, bỏ qua");
+            reports.put(tool, rejected);
+            skipped.add(tool);
+            if (listener != null && notified.add(tool)) {
+                listener.onToolDone(rejected);
             }
         }
 
-        // 2. Mypy
-        for (String line : PythonAnalyzer.runMypy(code)) {
-            Matcher m = MYPY_PATTERN.matcher(line);
-            if (m.matches()) {
-                issues.add(new Issue(
-                    "ERROR",
-                    Integer.parseInt(m.group(1)),
-                    0,
-                    m.group(4),
-                    m.group(3)
-                ));
+        List<Issue> issues = new ArrayList<>();
+        for (Map.Entry<String, Future<ToolRun>> entry : futures.entrySet()) {
+            String tool = entry.getKey();
+            Future<ToolRun> future = entry.getValue();
+            // Có budget của request thì không chờ quá budget đó (tool dự đoán sai vẫn bị cắt)
+            long waitMs = PythonAnalyzer.budgetMs(tool) + GRACE_MS;
+            if (plan.budgetMs != null) {
+                waitMs = Math.min(waitMs, plan.budgetMs);
+            }
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(waitMs);
+            ToolReport failure = null;
+            try {
+                ToolRun run = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                issues.addAll(run.issues);
+                reports.put(tool, run.report);
+            } catch (TimeoutException e) {
+                if (plan.probes.contains(tool)) {
+                    // Chưa đủ mẫu latency: không chờ, để tool chạy hết ở nền và ghi nhận thời gian
+                    // Không đưa vào skippedTools để chế độ background không chạy nó lần nữa
+                    if (detached.containsKey(tool)) {
+                        detached.get(tool).set(true);
+                    }
+                    failure = new ToolReport(tool, false, elapsedMs(start, System.nanoTime()),
+                        "Vượt quá " + waitMs + "ms, tiếp tục chạy nền để đo latency");
+                } else {
+                    future.cancel(true);
+                    failure = new ToolReport(tool, false, elapsedMs(start, System.nanoTime()),
+                        "Vượt quá " + waitMs + "ms");
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                failure = new ToolReport(tool, false, elapsedMs(start, System.nanoTime()),
+                    cause.getClass().getSimpleName() + ": " + cause.getMessage());
+            } catch (InterruptedException e) {
+                futures.values().forEach(f -> f.cancel(true));
+                throw e;
+            }
+            if (failure != null) {
+                reports.put(tool, failure);
+                if (listener != null && notified.add(tool)) {
+                    listener.onToolDone(failure);
+                }
+            }
+        }
+
+        sortIssues(issues);
+        long elapsed = elapsedMs(start, System.nanoTime());
+        ReviewResult result = new ReviewResult(issues, reports, elapsed);
+        result.skippedTools = skipped;
+        // Chỉ cache khi đủ mọi tool và tất cả chạy xong trọn vẹn, kết quả bị
+        // bỏ qua/timeout/cắt/lỗi thì không
+        if (reports.keySet().containsAll(TOOL_ORDER)
+                && reports.values().stream().allMatch(r -> r.completed && !r.truncated)) {
+            ReviewCache.put(cacheKey, result);
+        }
+        return result;
+    }
+
+    // Listener bỏ qua issue sau khi gate bật (request đã trả về, tool vẫn đang chạy)
+    private static ReviewListener detachable(ReviewListener listener, AtomicBoolean gate) {
+        return new ReviewListener() {
+            @Override
+            public void onIssue(Issue issue) {
+                if (!gate.get()) {
+                    listener.onIssue(issue);
+                }
             }
+
+            @Override
+            public void onToolDone(ToolReport report) {
+                listener.onToolDone(report);
+            }
+        };
+    }
+
+    // Executor đầy -> null, người gọi báo tool bị bỏ qua
+    static <T> Future<T> trySubmit(ExecutorService executor, Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            return null;
         }
+    }
 
-        // 3. CrossHair
-        for (String line : PythonAnalyzer.runCrosshair(code)) {
-            if (line.contains("Counterexample")) {
-                issues.add(new Issue(
-                    "LOGIC",
-                    0,
-                    0,
-                    "CrossHair",
-                    line.trim()
-                ));
+    private static long elapsedMs(long start, long end) {
+        return TimeUnit.NANOSECONDS.toMillis(end - start);
+    }
+
+    // Sắp xếp cố định theo (line, col, tool) để kết quả không phụ thuộc tool nào xong trước
+    public static void sortIssues(List<Issue> issues) {
+        issues.sort(Comparator.<Issue>comparingInt(i -> i.line)
+            .thenComparingInt(i -> i.col)
+            .thenComparingInt(i -> i.tool == null ? TOOL_ORDER.size() : TOOL_ORDER.indexOf(i.tool)));
+    }
+
+    // Parse từng dòng ngay khi tool in ra để listener nhận Issue sớm nhất có thể
+    private static ToolRun runAndParse(String tool, String code, long start, ReviewListener listener)
+            throws IOException, InterruptedException {
+        long toolStart = System.nanoTime();
+        List<Issue> issues = new ArrayList<>();
+        GovernedProcess.Result result = PythonAnalyzer.run(tool, code, line -> {
+            Issue issue = parseLine(tool, line);
+            if (issue != null) {
+                issues.add(issue);
+                if (listener != null) {
+                    listener.onIssue(issue);
+                }
             }
+        });
+        ToolReport report = new ToolReport(tool, !result.timedOut, elapsedMs(start, System.nanoTime()),
+            result.timedOut ? "Vượt quá " + PythonAnalyzer.budgetMs(tool) + "ms, kết quả chưa đầy đủ" : null);
+        report.truncated = result.truncated;
+        // Chỉ ghi nhận lần chạy trọn vẹn; lần bị kill sẽ kéo lệch histogram về budget
+        if (!result.timedOut) {
+            ToolLatency.record(tool, ToolLatency.lineCount(code), elapsedMs(toolStart, System.nanoTime()));
         }
+        return new ToolRun(issues, report);
+    }
+
+    static Issue parseLine(String tool, String line) {
+        switch (tool) {
+            case PYLINT:
+                return parsePylintLine(line);
+            case MYPY:
+                return parseMypyLine(line);
+            case CROSSHAIR:
+                return parseCrosshairLine(line);
+            default:
+                throw new IllegalArgumentException("Tool không hỗ trợ: " + tool);
+        }
+    }
 
-        return issues;
+    // 1. Pylint
+    static Issue parsePylintLine(String line) {
+        Matcher m = PYLINT_PATTERN.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        return new Issue(
+            m.group(3).startsWith("E") ? "ERROR" : "WARNING",
+            Integer.parseInt(m.group(1)),
+            Integer.parseInt(m.group(2)),
+            m.group(3),
+            m.group(4),
+            PYLINT
+        );
+    }
+
+    // 2. Mypy
+    static Issue parseMypyLine(String line) {
+        Matcher m = MYPY_PATTERN.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        return new Issue(
+            "ERROR",
+            Integer.parseInt(m.group(1)),
+            0,
+            m.group(4),
+            m.group(3),
+            MYPY
+        );
+    }
+
+    // 3. CrossHair: "file.py:LINE: error: false when calling f(x=1) (which returns 2)"
+    static Issue parseCrosshairLine(String line) {
+        Matcher m = CROSSHAIR_PATTERN.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        return new Issue(
+            "LOGIC",
+            Integer.parseInt(m.group(1)),
+            0,
+            "CrossHair",
+            m.group(2).trim(),
+            CROSSHAIR
+        );
     }
 }
@@ -0,0 +1,54 @@
+package com.example.service;
+
+// ✅ Phiên bản tăng dần của chuỗi replaceAll dùng cho text Gemini (bỏ mọi dòng chỉ
+// có khoảng trắng, rồi trim): nhận từng mảnh text khi stream tới, trả về phần có
+// thể gửi ngay. Chỉ giữ lại khoảng trắng / xuống dòng chưa biết có bị bỏ hay không.
+public class StreamingTextNormalizer {
+
+    // Khoảng trắng của dòng hiện tại, chưa biết dòng có nội dung hay không
+    private final StringBuilder pendingSpace = new StringBuilder();
+    // Xuống dòng (kèm khoảng trắng cuối dòng trước) chờ tới khi có nội dung tiếp theo
+    private final StringBuilder pendingBreak = new StringBuilder();
+    private boolean lineHasText;
+    private boolean started;
+
+    public String accept(String chunk) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < chunk.length(); i++) {
+            char ch = chunk.charAt(i);
+            if (ch == '\n') {
+                if (lineHasText) {
+                    pendingBreak.append(pendingSpace).append('\n');
+                }
+                // dòng trắng: bỏ luôn khoảng trắng của nó
+                pendingSpace.setLength(0);
+                lineHasText = false;
+            } else if (isSpace(ch)) {
+                pendingSpace.append(ch);
+            } else {
+                if (started) {
+                    out.append(pendingBreak).append(pendingSpace);
+                }
+                // trim đầu: khoảng trắng trước ký tự đầu tiên không được gửi
+                pendingBreak.setLength(0);
+                pendingSpace.setLength(0);
+                out.append(ch);
+                lineHasText = true;
+                started = true;
+            }
+        }
+        return out.toString();
+    }
+
+    // Hết stream: phần còn giữ lại chỉ là khoảng trắng cuối -> trim
+    public String finish() {
+        pendingBreak.setLength(0);
+        pendingSpace.setLength(0);
+        return "";
+    }
+
+    // Cùng tập ký tự với \s của regex (trừ '\n' đã xử lý riêng)
+    private static boolean isSpace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\r' || ch == '\f' || ch == '\u000B';
+    }
+}
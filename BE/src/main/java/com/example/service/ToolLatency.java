@@ -0,0 +1,100 @@
+package com.example.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ✅ Histogram trượt thời gian chạy của từng tool theo nhóm kích thước code
+// (số dòng). Dùng để đoán tool nào kịp trong budget của một request.
+public class ToolLatency {
+
+    private static final int WINDOW = Integer.getInteger("devreview.latency.window", 256);
+    private static final int MIN_SAMPLES = 5;
+    private static final double PERCENTILE = 0.9;
+    // Ngưỡng số dòng của các nhóm: <50, <200, <1000, còn lại
+    private static final int[] BUCKET_LINES = {50, 200, 1_000};
+    private static final String[] BUCKET_NAMES = {"<50", "<200", "<1000", ">=1000"};
+    // Ước lượng khi chưa đủ mẫu (ms, kiểu chạy lạnh) - cố tình bi quan
+    private static final Map<String, Long> PRIOR_MS = Map.of(
+        StaticAnalysisService.PYLINT, 1_500L,
+        StaticAnalysisService.MYPY, 3_000L,
+        StaticAnalysisService.CROSSHAIR, 10_000L);
+
+    private static final Map<String, Window> WINDOWS = new ConcurrentHashMap<>();
+
+    // Vòng đệm WINDOW mẫu gần nhất
+    private static class Window {
+        final long[] samples = new long[WINDOW];
+        int count;
+        int next;
+
+        synchronized void add(long ms) {
+            samples[next] = ms;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(samples, count);
+        }
+    }
+
+    static int lineCount(String code) {
+        return code == null ? 0 : (int) code.chars().filter(ch -> ch == '\n').count() + 1;
+    }
+
+    private static int bucket(int lines) {
+        for (int i = 0; i < BUCKET_LINES.length; i++) {
+            if (lines < BUCKET_LINES[i]) {
+                return i;
+            }
+        }
+        return BUCKET_LINES.length;
+    }
+
+    private static String key(String tool, int bucket) {
+        return tool + "|" + BUCKET_NAMES[bucket];
+    }
+
+    public static void record(String tool, int lines, long elapsedMs) {
+        WINDOWS.computeIfAbsent(key(tool, bucket(lines)), k -> new Window()).add(elapsedMs);
+    }
+
+    // Nhóm kích thước đã đủ mẫu để tin p90 chưa (chưa đủ thì estimateMs chỉ là prior)
+    public static boolean warmedUp(String tool, int lines) {
+        Window window = WINDOWS.get(key(tool, bucket(lines)));
+        return window != null && window.snapshot().length >= MIN_SAMPLES;
+    }
+
+    // p90 của nhóm kích thước tương ứng; chưa đủ mẫu thì dùng prior
+    public static long estimateMs(String tool, int lines) {
+        Window window = WINDOWS.get(key(tool, bucket(lines)));
+        long[] samples = window == null ? new long[0] : window.snapshot();
+        if (samples.length < MIN_SAMPLES) {
+            return PRIOR_MS.getOrDefault(tool, PythonAnalyzer.budgetMs(tool));
+        }
+        Arrays.sort(samples);
+        return samples[Math.min(samples.length - 1, (int) Math.ceil(PERCENTILE * samples.length) - 1)];
+    }
+
+    // Test: xoá mẫu để bắt đầu lại từ trạng thái lạnh
+    static void reset() {
+        WINDOWS.clear();
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        WINDOWS.forEach((key, window) -> {
+            long[] samples = window.snapshot();
+            Arrays.sort(samples);
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("samples", samples.length);
+            if (samples.length > 0) {
+                s.put("p50", samples[(samples.length - 1) / 2]);
+                s.put("p90", samples[Math.min(samples.length - 1, (int) Math.ceil(PERCENTILE * samples.length) - 1)]);
+                s.put("max", samples[samples.length - 1]);
+            }
+            stats.put(key, s);
+        });
+        return stats;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// ✅ Parser output cho các CommandLineAnalyzer. Output JSON được đọc bằng Jackson
+// streaming: chỉ dựng cây cho từng phần tử của mảng kết quả, không giữ cả document.
+public class ToolOutputParsers {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Pattern CPPCHECK_PATTERN = Pattern.compile("^(\\d+):(\\d+):(\\w+):(\\w+):(.*)$");
+    private static final Pattern GOLINT_PATTERN = Pattern.compile("^.*?:(\\d+):(\\d+): (.*)$");
+    private static final Pattern PHP_LINT_PATTERN =
+        Pattern.compile("^(?:PHP )?(Parse|Fatal) error:\\s*(.*?) in .* on line (\\d+)$");
+
+    // Template cppcheck khớp với parseCppcheckLine
+    static final String CPPCHECK_TEMPLATE = "--template={line}:{column}:{severity}:{id}:{message}";
+
+    // eslint --format json: [{filePath, messages: [{ruleId, severity, message, line, column}]}]
+    public static void eslintJson(InputStream output, Consumer<Issue> sink) throws IOException {
+        forEachInArray(output, "messages", m -> sink.accept(new Issue(
+            m.path("severity").asInt() >= 2 ? "ERROR" : "WARNING",
+            m.path("line").asInt(0),
+            m.path("column").asInt(0),
+            m.path("ruleId").isTextual() ? m.path("ruleId").asText() : "eslint",
+            m.path("message").asText())));
+    }
+
+    // rubocop --format json: {files: [{offenses: [{severity, message, cop_name, location}]}]}
+    public static void rubocopJson(InputStream output, Consumer<Issue> sink) throws IOException {
+        forEachInArray(output, "offenses", o -> {
+            String severity = o.path("severity").asText();
+            JsonNode location = o.path("location");
+            sink.accept(new Issue(
+                "error".equals(severity) || "fatal".equals(severity) ? "ERROR" : "WARNING",
+                location.path("start_line").asInt(location.path("line").asInt(0)),
+                location.path("start_column").asInt(location.path("column").asInt(0)),
+                o.path("cop_name").asText("rubocop"),
+                o.path("message").asText()));
+        });
+    }
+
+    static Issue parseCppcheckLine(String line) {
+        Matcher m = CPPCHECK_PATTERN.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        return new Issue(
+            "error".equals(m.group(3)) ? "ERROR" : "WARNING",
+            Integer.parseInt(m.group(1)),
+            Integer.parseInt(m.group(2)),
+            m.group(4),
+            m.group(5));
+    }
+
+    static Issue parseGolintLine(String line) {
+        Matcher m = GOLINT_PATTERN.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        return new Issue("WARNING", Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), "golint", m.group(3));
+    }
+
+    static Issue parsePhpLintLine(String line) {
+        Matcher m = PHP_LINT_PATTERN.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        return new Issue("ERROR", Integer.parseInt(m.group(3)), 0, m.group(1) + "Error", m.group(2));
+    }
+
+    // Parser theo dòng cho tool chỉ có output dạng text
+    public static CommandLineAnalyzer.OutputParser lines(Function<String, Issue> lineParser) {
+        return (output, sink) -> {
+            BufferedReader br = new BufferedReader(new InputStreamReader(output, StandardCharsets.UTF_8));
+            String line;
+            while ((line = br.readLine()) != null) {
+                Issue issue = lineParser.apply(line.length() > GovernedProcess.MAX_LINE_CHARS
+                    ? line.substring(0, GovernedProcess.MAX_LINE_CHARS) : line);
+                if (issue != null) {
+                    sink.accept(issue);
+                }
+            }
+        };
+    }
+
+    // Duyệt token, gặp field `field` là mảng thì đọc từng object phần tử một
+    static void forEachInArray(InputStream output, String field, Consumer<JsonNode> action) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(output)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.FIELD_NAME || !field.equals(parser.currentName())) {
+                    continue;
+                }
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    action.accept(MAPPER.readTree(parser));
+                }
+            }
+        }
+    }
+}
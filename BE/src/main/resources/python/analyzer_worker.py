@@ -0,0 +1,160 @@
+# Worker Python sống lâu cho PythonWorkerPool.
+# Nạp pylint / mypy / crosshair một lần, sau đó phục vụ request qua stdin/stdout.
+# Frame: 4 byte big-endian độ dài + JSON UTF-8.
+#   request : {"id": 1, "op": "analyze", "tool": "pylint", "args": [...], "code": "..."}
+#             "target_suffix" (tuỳ chọn) nối vào sau đường dẫn, vd ":12" cho crosshair
+#             {"id": 2, "op": "ping"} | {"op": "shutdown"}
+#   response: {"id": 1, "ok": true, "output": [...], "rss_kb": 12345}
+import contextlib
+import importlib
+import io
+import json
+import linecache
+import os
+import shutil
+import struct
+import sys
+import tempfile
+import traceback
+
+FRAME_IN = sys.stdin.buffer
+FRAME_OUT = sys.stdout.buffer
+# print() lạc của tool không được làm hỏng frame -> chuyển hết sang stderr
+sys.stdout = sys.stderr
+
+TOOLS = {}
+MODULE = "snippet"
+# .pyc được kiểm tra theo mtime (giây) + kích thước: hai snippet cùng độ dài trong cùng
+# một giây sẽ dùng nhầm bytecode của job trước
+sys.dont_write_bytecode = True
+# Thư mục làm việc nằm trong vùng scratch tmpfs do Java truyền sang (không ghi xuống đĩa)
+WORKDIR = tempfile.mkdtemp(prefix="devreview-worker-", dir=os.environ.get("DEVREVIEW_SCRATCH_DIR"))
+os.chdir(WORKDIR)
+
+try:
+    import pylint.lint
+    from pylint.reporters.text import TextReporter
+
+    def run_pylint(args, path):
+        out = io.StringIO()
+        pylint.lint.Run(list(args) + [path], reporter=TextReporter(out), exit=False)
+        return out.getvalue().splitlines()
+
+    TOOLS["pylint"] = run_pylint
+except Exception:  # pragma: no cover - tool chưa cài
+    pass
+
+try:
+    from mypy import api as mypy_api
+
+    def run_mypy(args, path):
+        stdout, stderr, _ = mypy_api.run(list(args) + [path])
+        return (stdout + stderr).splitlines()
+
+    TOOLS["mypy"] = run_mypy
+except Exception:  # pragma: no cover
+    pass
+
+try:
+    import crosshair.main as crosshair_main
+
+    def run_crosshair(args, path):
+        out = io.StringIO()
+        with contextlib.redirect_stdout(out), contextlib.redirect_stderr(out):
+            try:
+                crosshair_main.main(list(args) + [path])
+            except SystemExit:
+                pass
+        return out.getvalue().splitlines()
+
+    TOOLS["crosshair"] = run_crosshair
+except Exception:  # pragma: no cover
+    pass
+
+
+def read_frame():
+    header = FRAME_IN.read(4)
+    if len(header) < 4:
+        return None
+    (length,) = struct.unpack(">I", header)
+    data = FRAME_IN.read(length)
+    if len(data) < length:
+        return None
+    return json.loads(data.decode("utf-8"))
+
+
+def write_frame(obj):
+    data = json.dumps(obj).encode("utf-8")
+    FRAME_OUT.write(struct.pack(">I", len(data)))
+    FRAME_OUT.write(data)
+    FRAME_OUT.flush()
+
+
+def rss_kb():
+    try:
+        with open("/proc/self/status") as status:
+            for line in status:
+                if line.startswith("VmRSS:"):
+                    return int(line.split()[1])
+    except OSError:
+        pass
+    return 0
+
+
+def forget_snippet(path):
+    # Mọi job dùng chung snippet.py: bỏ AST / module của job trước khỏi cache của
+    # astroid (pylint) và sys.modules (crosshair import lại "snippet"), nếu không job sau
+    # có thể được phân tích trên code của người khác
+    sys.modules.pop(MODULE, None)
+    linecache.checkcache(path)
+    importlib.invalidate_caches()
+    astroid = sys.modules.get("astroid")
+    cache = getattr(getattr(astroid, "MANAGER", None), "astroid_cache", None)
+    if cache is not None:
+        for name, module in list(cache.items()):
+            if name == MODULE or getattr(module, "file", None) == path:
+                cache.pop(name, None)
+
+
+def analyze(request):
+    tool = TOOLS.get(request.get("tool"))
+    if tool is None:
+        return {"ok": False, "unavailable": True, "error": "tool not installed: %s" % request.get("tool")}
+    # Mỗi worker chỉ xử lý một job một lúc -> dùng lại cùng một tên file
+    # để cache của mypy (.mypy_cache trong WORKDIR) được tận dụng giữa các lần chạy
+    path = os.path.join(WORKDIR, MODULE + ".py")
+    forget_snippet(path)
+    try:
+        with open(path, "w", encoding="utf-8") as f:
+            f.write(request.get("code", ""))
+        target = path + request.get("target_suffix", "")
+        return {"ok": True, "output": tool(request.get("args", []), target)}
+    finally:
+        with contextlib.suppress(OSError):
+            os.unlink(path)
+        forget_snippet(path)
+
+
+def main():
+    write_frame({"ready": True, "pid": os.getpid(), "tools": sorted(TOOLS), "rss_kb": rss_kb()})
+    while True:
+        request = read_frame()
+        if request is None or request.get("op") == "shutdown":
+            return
+        try:
+            if request.get("op") == "analyze":
+                response = analyze(request)
+            else:
+                response = {"ok": True}
+        except Exception:
+            response = {"ok": False, "error": traceback.format_exc(limit=3)}
+        response["id"] = request.get("id")
+        response["rss_kb"] = rss_kb()
+        write_frame(response)
+
+
+if __name__ == "__main__":
+    try:
+        main()
+    finally:
+        shutil.rmtree(WORKDIR, ignore_errors=True)
@@ -0,0 +1,77 @@
+package com.example.repository;
+
+import com.example.model.HistoryListItem;
+import com.example.model.ReviewHistory;
+import com.example.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Keyset trên (createdAt, id): duyệt hết các trang không trùng / sót dòng, kể cả khi createdAt trùng nhau
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class ReviewHistoryRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ReviewHistoryRepository repository;
+
+    private final List<Long> expectedOrder = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        User alice = entityManager.persist(new User("alice", "x"));
+        User bob = entityManager.persist(new User("bob", "x"));
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+        List<ReviewHistory> rows = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ReviewHistory history = new ReviewHistory(alice, "code " + i + " " + "x".repeat(500), "s", "f", "python");
+            history.setErrorLines(i % 2 == 0 ? "[1,5,10]" : null);
+            entityManager.persist(history);
+            // hai dòng cùng createdAt để kiểm tra id làm tie-break
+            history.setCreatedAt(base.plusMinutes(i == 4 ? 3 : i));
+            rows.add(history);
+        }
+        entityManager.persist(new ReviewHistory(bob, "của bob", "s", "f", "java"));
+        entityManager.flush();
+        entityManager.clear();
+
+        rows.sort((a, b) -> a.getCreatedAt().equals(b.getCreatedAt())
+            ? b.getId().compareTo(a.getId()) : b.getCreatedAt().compareTo(a.getCreatedAt()));
+        rows.forEach(r -> expectedOrder.add(r.getId()));
+    }
+
+    @Test
+    void pagesWalkAllRowsNewestFirstWithoutGapsOrDuplicates() {
+        List<HistoryListItem> page = repository.findHistoryPage("alice", PageRequest.of(0, 3));
+        List<Long> seen = new ArrayList<>();
+        while (!page.isEmpty()) {
+            page.forEach(item -> seen.add(item.getId()));
+            HistoryListItem last = page.get(page.size() - 1);
+            page = repository.findHistoryPageAfter("alice", last.getCreatedAt(), last.getId(), PageRequest.of(0, 3));
+        }
+        assertEquals(expectedOrder, seen);
+    }
+
+    @Test
+    void projectionCarriesOnlyPreviewAndErrorCount() {
+        List<HistoryListItem> items = repository.findHistoryPage("alice", PageRequest.of(0, 10));
+
+        assertEquals(7, items.size());
+        items.forEach(item -> assertEquals(ReviewHistoryRepository.HISTORY_PREVIEW_CHARS, item.getPreview().length()));
+        assertEquals(List.of(3, 0), items.stream().map(HistoryListItem::getErrorCount).distinct().sorted((a, b) -> b - a)
+            .collect(Collectors.toList()));
+        assertEquals("python", items.get(0).getLanguage());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.service;
+
+import com.example.exception.ServiceOverloadedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Giới hạn học từ latency: ổn định -> nới, tăng vọt -> siết, lỗi -> giảm nhân; quá tải -> 429
+class AdaptiveConcurrencyLimiterTest {
+
+    private static int limit(AdaptiveConcurrencyLimiter limiter) {
+        return (int) limiter.stats().get("limit");
+    }
+
+    private static int inFlight(AdaptiveConcurrencyLimiter limiter) {
+        return (int) limiter.stats().get("inFlight");
+    }
+
+    // Chạy kín giới hạn hiện tại rồi trả hết với cùng một latency
+    private static void round(AdaptiveConcurrencyLimiter limiter, long rttMs) throws Exception {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = limit(limiter); i > 0; i--) {
+            permits.add(limiter.acquire());
+        }
+        permits.forEach(p -> p.release(TimeUnit.MILLISECONDS.toNanos(rttMs)));
+    }
+
+    @Test
+    void stableLatencyAtFullUseGrowsLimitUpToMax() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 40, 4, 50);
+        for (int i = 0; i < 30; i++) {
+            round(limiter, 100);
+        }
+        assertEquals(40, limit(limiter));
+        assertEquals(0, inFlight(limiter));
+    }
+
+    @Test
+    void latencySpikeShrinksLimitButNotBelowMin() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 40, 4, 50);
+        round(limiter, 100);
+        int before = limit(limiter);
+        for (int i = 0; i < 5; i++) {
+            round(limiter, 500);
+        }
+        int after = limit(limiter);
+        assertTrue(after < before, before + " -> " + after);
+        for (int i = 0; i < 50; i++) {
+            round(limiter, 5_000);
+        }
+        assertEquals(4, limit(limiter));
+    }
+
+    @Test
+    void lowUtilizationDoesNotGrowLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 40, 4, 50);
+        for (int i = 0; i < 50; i++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+            permit.release(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(10, limit(limiter));
+    }
+
+    @Test
+    void dropsBackOffMultiplicatively() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 40, 4, 50);
+        limiter.acquire().release(false);
+        assertEquals(9, limit(limiter));
+        for (int i = 0; i < 30; i++) {
+            limiter.acquire().release(false);
+        }
+        assertEquals(2, limit(limiter));
+        assertEquals(31L, limiter.stats().get("dropped"));
+    }
+
+    @Test
+    void overloadRejectsWithRetryAfter() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1, 100);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire();
+
+        // Hàng đợi còn chỗ: chờ quá queueTimeout thì bị từ chối
+        ServiceOverloadedException timeout = assertThrows(ServiceOverloadedException.class, limiter::acquire);
+        assertTrue(timeout.getRetryAfterSeconds() >= 1);
+
+        held.release(true);
+        assertEquals(0, inFlight(limiter));
+
+        // Một request đang chờ chiếm hết hàng đợi -> request tiếp theo bị từ chối ngay
+        AdaptiveConcurrencyLimiter busy = new AdaptiveConcurrencyLimiter(1, 1, 1, 1, 5_000);
+        AdaptiveConcurrencyLimiter.Permit running = busy.acquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return busy.acquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((int) busy.stats().get("queued") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        long start = System.nanoTime();
+        assertThrows(ServiceOverloadedException.class, busy::acquire);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000, "hàng đợi đầy phải từ chối ngay");
+
+        // Trả suất -> request đang chờ được chạy
+        running.release(true);
+        queued.get(5, TimeUnit.SECONDS).release(true);
+        assertEquals(0, inFlight(busy));
+    }
+
+    @Test
+    void callerReleasesOnlyIfTaskNeverStarted() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 4, 1, 50);
+
+        // Người gọi bỏ cuộc trước: trả suất, task tới lượt sau đó không được chạy
+        AdaptiveConcurrencyLimiter.Permit abandoned = limiter.acquire();
+        assertTrue(abandoned.releaseIfNotStarted());
+        assertFalse(abandoned.start());
+        assertEquals(0, inFlight(limiter));
+
+        // Task đã chạy: người gọi timeout không được trả hộ, suất giữ tới khi task xong
+        AdaptiveConcurrencyLimiter.Permit running = limiter.acquire();
+        assertTrue(running.start());
+        assertFalse(running.releaseIfNotStarted());
+        assertEquals(1, inFlight(limiter));
+        running.release(true);
+        running.release(true);
+        assertEquals(0, inFlight(limiter));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.service;
+
+import java.io.*;
+import java.util.*;
+
+// Benchmark thủ công (không chạy trong mvn test):
+//   mvn test-compile && java -cp target/classes:target/test-classes com.example.service.AnalyzerInputBenchmark [iterations]
+// So sánh cách cũ (File.createTempFile + FileWriter trên đĩa) với file scratch
+// trên tmpfs và pipe qua stdin. `cat` đóng vai analyzer để chỉ đo chi phí I/O + fork.
+public class AnalyzerInputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        String code = sampleCode(400);
+
+        System.out.println("Scratch dir: " + AnalyzerInput.scratchDir());
+        System.out.println("Snippet: " + code.length() + " chars, " + iterations + " lần lặp\n");
+
+        // Warm-up JIT + page cache
+        for (int i = 0; i < 50; i++) {
+            legacyTempFile(code, false);
+            scratchFile(code, false);
+        }
+
+        report("temp file (đĩa), chỉ ghi/xoá", iterations, () -> legacyTempFile(code, false));
+        report("scratch tmpfs, chỉ ghi/xoá", iterations, () -> scratchFile(code, false));
+        int withProcess = Math.max(1, iterations / 5);
+        report("temp file (đĩa) + cat", withProcess, () -> legacyTempFile(code, true));
+        report("scratch tmpfs + cat", withProcess, () -> scratchFile(code, true));
+        report("stdin pipe + cat", withProcess, () -> stdin(code));
+    }
+
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    private static void report(String name, int iterations, Run run) throws Exception {
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            run.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double avg = Arrays.stream(samples).average().orElse(0) / 1_000.0;
+        System.out.printf("%-32s avg=%8.1fµs  p50=%8.1fµs  p99=%8.1fµs%n", name, avg,
+            samples[iterations / 2] / 1_000.0, samples[(int) (iterations * 0.99)] / 1_000.0);
+    }
+
+    // Cách PythonAnalyzer làm trước đây
+    private static void legacyTempFile(String code, boolean withProcess) throws Exception {
+        File tempFile = File.createTempFile("analyze-", ".py");
+        try (FileWriter fw = new FileWriter(tempFile)) {
+            fw.write(code);
+        }
+        if (withProcess) {
+            drain(new ProcessBuilder("cat", tempFile.getAbsolutePath()).start());
+        }
+        tempFile.delete();
+    }
+
+    private static void scratchFile(String code, boolean withProcess) throws Exception {
+        try (AnalyzerInput.ScratchFile scratch = AnalyzerInput.ScratchFile.create(".py", code)) {
+            if (withProcess) {
+                drain(new ProcessBuilder("cat", scratch.path().toString()).start());
+            }
+        }
+    }
+
+    private static void stdin(String code) throws Exception {
+        Process process = new ProcessBuilder("cat").start();
+        AnalyzerInput.feedStdin(process, code);
+        drain(process);
+    }
+
+    private static void drain(Process process) throws Exception {
+        try (InputStream in = process.getInputStream()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        process.waitFor();
+    }
+
+    private static String sampleCode(int functions) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < functions; i++) {
+            sb.append("def f").append(i).append("(x: int) -> int:\n")
+              .append("    return x * ").append(i).append(" + 1\n\n");
+        }
+        return sb.toString();
+    }
+}
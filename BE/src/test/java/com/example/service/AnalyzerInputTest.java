@@ -0,0 +1,41 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Dọn scratch chỉ xoá file cũ do AnalyzerInput tạo, không đụng file khác trong thư mục
+class AnalyzerInputTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file(String name, long ageMs) throws Exception {
+        Path path = Files.writeString(dir.resolve(name), "x");
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - ageMs));
+        return path;
+    }
+
+    @Test
+    void sweepDeletesOnlyOwnStaleFiles() throws Exception {
+        long old = TimeUnit.HOURS.toMillis(2);
+        Path stale = file(AnalyzerInput.SCRATCH_PREFIX + "1.py", old);
+        Path fresh = file(AnalyzerInput.SCRATCH_PREFIX + "2.py", 0);
+        Path foreign = file("notes.txt", old);
+        Path dmypy = Files.createDirectories(dir.resolve("dmypy-1-0"));
+        Files.setLastModifiedTime(dmypy, FileTime.fromMillis(System.currentTimeMillis() - old));
+
+        AnalyzerInput.sweepStale(dir);
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+        assertTrue(Files.exists(foreign));
+        assertTrue(Files.isDirectory(dmypy));
+    }
+}
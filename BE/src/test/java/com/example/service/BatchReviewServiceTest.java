@@ -0,0 +1,192 @@
+package com.example.service;
+
+import com.example.model.BatchReviewRequest.FileEntry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Đọc tar theo stream: ustar, tên dài GNU, size dạng base-256, archive hỏng; giới hạn zip bomb;
+// đường dẫn trùng; ngôn ngữ chưa có analyzer
+class BatchReviewServiceTest {
+
+    // Ghi entry tar tối giản; base256 = ghi size theo kiểu nhị phân của GNU
+    private static void entry(ByteArrayOutputStream out, String name, char type, byte[] data, boolean base256) {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        if (base256) {
+            header[124] = (byte) 0x80;
+            long size = data.length;
+            for (int i = 135; i > 124; i--) {
+                header[i] = (byte) (size & 0xff);
+                size >>>= 8;
+            }
+        } else {
+            byte[] octal = String.format("%011o", data.length).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(octal, 0, header, 124, octal.length);
+        }
+        header[156] = (byte) type;
+        out.writeBytes(header);
+        out.writeBytes(data);
+        out.writeBytes(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> read(byte[] tar) throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        BatchReviewService.readTar(new ByteArrayInputStream(tar), new BatchReviewService.EntrySink() {
+            @Override
+            public boolean acceptsMore() {
+                return true;
+            }
+
+            @Override
+            public void submitEntry(String path, InputStream data) throws IOException {
+                entries.put(path, new String(data.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        });
+        return entries;
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // Sink không đọc gì (như entry bị bỏ qua): phần giải nén còn lại do readZip tự bỏ
+    private static List<String> readZipSkippingAll(byte[] zip, long maxInflatedBytes, int maxRatio)
+            throws Exception {
+        List<String> seen = new ArrayList<>();
+        BatchReviewService.readZip(new ByteArrayInputStream(zip), new BatchReviewService.EntrySink() {
+            @Override
+            public boolean acceptsMore() {
+                return true;
+            }
+
+            @Override
+            public void submitEntry(String path, InputStream data) {
+                seen.add(path);
+            }
+        }, maxInflatedBytes, maxRatio);
+        return seen;
+    }
+
+    @Test
+    void skippedZipBombEntryStillHitsTheRatioLimit() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("a.py", bytes("x = 1\n".repeat(1_000)));
+        entries.put("bomb.bin", new byte[64 * 1024 * 1024]);
+        entries.put("b.py", bytes("y = 2\n"));
+        byte[] archive = zip(entries);
+
+        IOException bomb = assertThrows(IOException.class,
+            () -> readZipSkippingAll(archive, Long.MAX_VALUE, 100));
+        assertTrue(bomb.getMessage().contains("bomb.bin"), bomb.getMessage());
+        // Không giới hạn tỉ lệ thì vẫn đọc được, file nguồn nhỏ nén tốt không bị chặn
+        assertEquals(List.of("a.py", "bomb.bin", "b.py"), readZipSkippingAll(archive, Long.MAX_VALUE, 100_000));
+    }
+
+    @Test
+    void totalInflatedBytesAreCappedAcrossEntries() throws Exception {
+        Random random = new Random(1);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            byte[] data = new byte[256 * 1024];
+            random.nextBytes(data); // không nén được -> tỉ lệ ~1
+            entries.put("f" + i + ".bin", data);
+        }
+        byte[] archive = zip(entries);
+
+        assertThrows(IOException.class, () -> readZipSkippingAll(archive, 1024 * 1024, 100));
+        assertEquals(8, readZipSkippingAll(archive, 4 * 1024 * 1024, 100).size());
+    }
+
+    @Test
+    void languageWithoutAnalyzerIsSkippedNotAnalyzed() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("Program.cs", bytes("class P { static void Main() {} }\n"));
+        BatchReviewService.BatchResult result =
+            BatchReviewService.reviewArchive(new ByteArrayInputStream(zip(entries)), "project.zip");
+
+        BatchReviewService.FileResult file = result.files.get("Program.cs");
+        assertEquals("csharp", file.language);
+        assertNotNull(file.skipped);
+        assertNull(file.issues);
+        assertEquals(0, result.totals.get("analyzed"));
+        assertEquals(1, result.totals.get("skipped"));
+    }
+
+    @Test
+    void readsUstarLongNamesAndBase256Sizes() throws Exception {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        entry(tar, "src/", '5', new byte[0], false);
+        entry(tar, "src/a.py", '0', bytes("x = 1\n"), false);
+        String longName = "pkg/" + "d".repeat(120) + "/b.py";
+        entry(tar, "././@LongLink", 'L', bytes(longName + "\0"), false);
+        entry(tar, "truncated-name", '0', bytes("y = 2\n"), false);
+        entry(tar, "big.py", '0', bytes("z = 3\n".repeat(100)), true);
+        tar.writeBytes(new byte[1024]);
+
+        Map<String, String> entries = read(tar.toByteArray());
+        assertEquals(List.of("src/a.py", longName, "big.py"), List.copyOf(entries.keySet()));
+        assertEquals("y = 2\n", entries.get(longName));
+        assertEquals(600, entries.get("big.py").length());
+    }
+
+    @Test
+    void corruptHeaderIsAnIOException() throws Exception {
+        byte[] header = new byte[512];
+        header[0] = 'a';
+        System.arraycopy(bytes("zz"), 0, header, 124, 2);
+        assertThrows(IOException.class, () -> read(header));
+
+        ByteArrayOutputStream truncated = new ByteArrayOutputStream();
+        entry(truncated, "a.py", '0', bytes("x = 1\n".repeat(200)), false);
+        byte[] cut = Arrays.copyOf(truncated.toByteArray(), 700);
+        assertThrows(IOException.class, () -> read(cut));
+    }
+
+    @Test
+    void duplicatePathsAreSuffixedNotOverwritten() throws Exception {
+        FileEntry first = new FileEntry();
+        first.setPath("notes.txt");
+        first.setCode("một");
+        first.setLanguage("plaintext");
+        FileEntry second = new FileEntry();
+        second.setPath("notes.txt");
+        second.setCode("hai");
+        second.setLanguage("plaintext");
+
+        BatchReviewService.BatchResult result = BatchReviewService.reviewFiles(List.of(first, second));
+        assertEquals(List.of("notes.txt", "notes.txt (2)"), List.copyOf(result.files.keySet()));
+        assertEquals("notes.txt", result.files.get("notes.txt (2)").originalPath);
+        assertEquals(1, result.totals.get("duplicatePaths"));
+        // plaintext không có analyzer -> cả hai bị bỏ qua, không tính là đã phân tích
+        assertEquals(0, result.totals.get("analyzed"));
+        assertEquals(2, result.totals.get("skipped"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Cắt ở ranh giới hàm / class, phủ đủ mọi dòng, và sửa một hàm không làm đổi các phần khác
+class CodeChunkerTest {
+
+    private static String pythonFile(int functions, String marker) {
+        StringBuilder code = new StringBuilder("import os\n\n");
+        for (int i = 0; i < functions; i++) {
+            code.append("def f").append(i).append("(x):\n");
+            for (int j = 0; j < 8; j++) {
+                code.append("    x = x + ").append(i == 7 ? marker : "").append(j).append("  # bước ").append(j).append('\n');
+            }
+            code.append("    return x\n\n");
+        }
+        return code.toString();
+    }
+
+    @Test
+    void pythonChunksStartAtDefinitionsAndCoverEveryLine() {
+        String code = pythonFile(20, "");
+        List<CodeChunker.Chunk> chunks = CodeChunker.split("python", code, 200);
+
+        assertTrue(chunks.size() > 1);
+        assertEquals(1, chunks.get(0).startLine);
+        for (int i = 1; i < chunks.size(); i++) {
+            assertTrue(chunks.get(i).text.startsWith("def "), chunks.get(i).text);
+            assertEquals(chunks.get(i - 1).endLine + 1, chunks.get(i).startLine);
+            assertTrue(CodeChunker.estimateTokens(chunks.get(i).text) <= 200);
+        }
+        assertEquals(code.replaceAll("\n+$", ""),
+            chunks.stream().map(c -> c.text).collect(Collectors.joining("\n")).replaceAll("\n+$", ""));
+    }
+
+    @Test
+    void editingOneFunctionKeepsOtherChunks() {
+        List<String> before = CodeChunker.split("python", pythonFile(30, ""), 200).stream()
+            .map(c -> c.text).collect(Collectors.toList());
+        List<String> after = CodeChunker.split("python", pythonFile(30, "100 + "), 200).stream()
+            .map(c -> c.text).collect(Collectors.toList());
+
+        long changed = after.stream().filter(text -> !before.contains(text)).count();
+        // phần chứa hàm bị sửa có thể tách đôi; các phần sau tự khớp lại ở ranh giới kế tiếp
+        assertTrue(changed >= 1 && changed <= 3, "changed chunks: " + changed);
+        assertTrue(before.size() >= 8 && after.containsAll(before.subList(before.size() - 5, before.size())));
+    }
+
+    @Test
+    void braceLanguagesSplitBetweenMethods() {
+        StringBuilder code = new StringBuilder("public class A {\n");
+        for (int i = 0; i < 10; i++) {
+            code.append("    int m").append(i).append("() {\n        String s = \"}\";\n        return ")
+                .append(i).append(";\n    }\n\n");
+        }
+        code.append("}\n");
+        List<CodeChunker.Chunk> chunks = CodeChunker.split("java", code.toString(), 60);
+
+        assertTrue(chunks.size() > 1);
+        for (int i = 1; i < chunks.size(); i++) {
+            String first = chunks.get(i).text.strip();
+            assertTrue(first.startsWith("int m") || first.equals("}"), first);
+        }
+    }
+
+    @Test
+    void oversizedFunctionIsSplitByLines() {
+        StringBuilder code = new StringBuilder("def big():\n");
+        for (int i = 0; i < 200; i++) {
+            code.append("    value_").append(i).append(" = compute(").append(i).append(")\n");
+        }
+        List<CodeChunker.Chunk> chunks = CodeChunker.split("python", code.toString(), 300);
+
+        assertTrue(chunks.size() > 1);
+        chunks.forEach(c -> assertTrue(CodeChunker.estimateTokens(c.text) <= 300 + 10));
+    }
+}
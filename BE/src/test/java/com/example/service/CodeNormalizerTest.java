@@ -0,0 +1,39 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Code chỉ khác comment / khoảng trắng phải ra cùng key cache; khác nội dung thì khác key
+class CodeNormalizerTest {
+
+    @Test
+    void commentsAndSpacingDoNotChangeKey() {
+        String a = "def add(a, b):\n    return a + b\n";
+        String b = "# cộng hai số\ndef add(a,  b):   # comment\n\n    return a + b   \n\n";
+        assertEquals(LlmResponseCache.key("explain", "v1", "python", a),
+            LlmResponseCache.key("explain", "v1", "Python", b));
+    }
+
+    @Test
+    void indentationAndStringsAreKept() {
+        assertNotEquals(CodeNormalizer.normalize("python", "if x:\n    y()\nz()"),
+            CodeNormalizer.normalize("python", "if x:\n    y()\n    z()"));
+        assertEquals("s = \"a # b  c\"\n", CodeNormalizer.normalize("python", "s = \"a # b  c\"  # thật\n"));
+    }
+
+    @Test
+    void slashCommentsStrippedForCLikeLanguages() {
+        String a = "int x = 1; // một\n/* khối\n nhiều dòng */ int y = 2;\n";
+        assertEquals("int x = 1;\nint y = 2;\n", CodeNormalizer.normalize("java", a));
+        assertEquals("#include <stdio.h>\n", CodeNormalizer.normalize("c", "#include <stdio.h>\n"));
+    }
+
+    @Test
+    void promptVersionChangesKey() {
+        assertNotEquals(LlmResponseCache.key("explain", "v1", "java", "x"),
+            LlmResponseCache.key("explain", "v2", "java", "x"));
+        assertNotEquals(LlmResponseCache.key("explain", "v1", "java", "x"),
+            LlmResponseCache.key("suggest", "v1", "java", "x"));
+    }
+}
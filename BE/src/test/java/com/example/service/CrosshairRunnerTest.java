@@ -0,0 +1,61 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Chọn hàm cho CrossHair: chỉ hàm có contract, kèm --analysis_kind tương ứng
+class CrosshairRunnerTest {
+
+    private static final String CODE = String.join("\n",
+        "def hinted(a: int) -> int:",              // 1: chỉ type hint -> bỏ
+        "    return a",                            // 2
+        "",                                        // 3
+        "def pep316(a):",                          // 4
+        "    '''",                                 // 5
+        "    pre: a > 0",                          // 6
+        "    post: __return__ > 0",                // 7
+        "    '''",                                 // 8
+        "    return a",                            // 9
+        "",                                        // 10
+        "def guarded(a):",                         // 11
+        "    \"\"\"Doc.\"\"\"",                    // 12
+        "    assert a > 0",                        // 13
+        "    return a",                            // 14
+        "",                                        // 15
+        "def late_assert(a):",                     // 16: assert không ở đầu -> bỏ
+        "    b = a + 1",                           // 17
+        "    assert b > 0",                        // 18
+        "    return b",                            // 19
+        "",                                        // 20
+        "@icontract.require(lambda a: a > 0)",     // 21
+        "def checked(a):",                         // 22
+        "    return a",                            // 23
+        "",                                        // 24
+        "@icontract.invariant(lambda self: self.x > 0)", // 25
+        "class Account:",                          // 26
+        "    def deposit(self, n: int) -> None:",  // 27
+        "        self.x += n",                     // 28
+        "",                                        // 29
+        "class Plain:",                            // 30
+        "    def m(self, n: int) -> int:",         // 31
+        "        return n",                        // 32
+        "");
+
+    @Test
+    void onlyContractedFunctionsWithMatchingKinds() {
+        List<CrosshairRunner.Target> targets = CrosshairRunner.targets(CODE);
+        assertEquals(List.of(4, 11, 22, 27), targets.stream().map(t -> t.line).toList());
+        assertEquals(List.of("PEP316", "asserts", "icontract", "icontract"),
+            targets.stream().map(t -> t.analysisKind).toList());
+    }
+
+    @Test
+    void typeHintsAloneHaveNothingToCheck() throws Exception {
+        GovernedProcess.Result result = CrosshairRunner.run("def f(a: int) -> int:\n    return a\n", 1_000L, null);
+        assertEquals(List.of(), result.lines);
+        assertFalse(result.timedOut);
+    }
+}
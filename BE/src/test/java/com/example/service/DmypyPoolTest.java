@@ -0,0 +1,73 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Exit code 2 của dmypy không đồng nghĩa daemon chết: lỗi cú pháp trong snippet cũng trả 2
+class DmypyPoolTest {
+
+    private static GovernedProcess.Result result(int exitCode, String... lines) {
+        return new GovernedProcess.Result(List.of(lines), false, false, exitCode, 5);
+    }
+
+    @Test
+    void syntaxErrorWithExitTwoKeepsDaemon() {
+        AtomicInteger probes = new AtomicInteger();
+        GovernedProcess.Result syntax = result(2, "snippet.py:1: error: invalid syntax  [syntax]",
+            "Found 1 error in 1 file (errors prevented further checking)");
+        assertFalse(DmypyPool.daemonDied(syntax, () -> {
+            probes.incrementAndGet();
+            return false;
+        }));
+        assertEquals(0, probes.get(), "đã có dòng chẩn đoán thì không cần hỏi dmypy status");
+        assertNotNull(StaticAnalysisService.parseMypyLine(syntax.lines.get(0)));
+    }
+
+    @Test
+    void deathMarkersMeanDead() {
+        assertTrue(DmypyPool.daemonDied(result(2, "Daemon has died"), () -> true));
+        assertTrue(DmypyPool.daemonDied(result(2, "No status file found"), () -> true));
+        assertTrue(DmypyPool.daemonDied(result(2, "Response: {'error': 'Connection refused'}"), () -> true));
+        // Chữ trùng marker nằm trong message của mypy thì không tính
+        assertFalse(DmypyPool.daemonDied(
+            result(1, "snippet.py:3: error: Name \"Response:\" is not defined  [name-defined]"), () -> false));
+        assertFalse(DmypyPool.daemonDied(result(1, "snippet.py:2: error: bad  [misc]"), () -> false));
+    }
+
+    @Test
+    void silentExitTwoAsksStatus() {
+        assertTrue(DmypyPool.daemonDied(result(2), () -> false));
+        assertFalse(DmypyPool.daemonDied(result(2), () -> true));
+    }
+
+    @Test
+    void unparseableSnippetAgainstRealDaemon() throws Exception {
+        assumeTrue(commandWorks("dmypy", "--version"), "cần dmypy");
+        DmypyPool pool = DmypyPool.shared();
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (!pool.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+        }
+        assumeTrue(pool.isReady(), "dmypy daemon không khởi động được");
+        long restarts = (long) pool.stats().get("restarts");
+
+        GovernedProcess.Result result = pool.check("x = = 1\n", 30_000, null);
+        assertEquals(2, result.exitCode);
+        assertTrue(result.lines.stream().anyMatch(l -> l.contains("invalid syntax")), String.valueOf(result.lines));
+        assertEquals(restarts, pool.stats().get("restarts"));
+        assertTrue(pool.isReady());
+    }
+
+    private static boolean commandWorks(String... command) {
+        try {
+            return new ProcessBuilder(command).redirectErrorStream(true).start().waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Explain theo phần với Gemini giả: song song có giới hạn, có bước tổng hợp, sửa file chỉ gửi lại phần đổi
+class ExplainServiceChunkTest {
+
+    private GeminiStub stub;
+    private ExplainService service;
+    private final List<String> prompts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicBoolean failSummary = new AtomicBoolean();
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new GeminiStub().handle("/", exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            String body = GeminiStub.requestBody(exchange);
+            prompts.add(body);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            if (failSummary.get() && body.contains("TÓM TẮT")) {
+                active.decrementAndGet();
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            String text = body.contains("TÓM TẮT") ? "Tóm tắt cả file." : "Giải thích phần.";
+            active.decrementAndGet();
+            GeminiStub.respond(exchange, 200, GeminiStub.candidates(text));
+        }).start();
+
+        service = new ExplainService();
+        ReflectionTestUtils.setField(service, "geminiClient", stub.client());
+        ReflectionTestUtils.setField(service, "cache", GeminiStub.cache(1000));
+        ReflectionTestUtils.setField(service, "chunkAboveTokens", 1000);
+        ReflectionTestUtils.setField(service, "chunkTokens", 200);
+        ReflectionTestUtils.setField(service, "parallelChunks", 2);
+        ReflectionTestUtils.setField(service, "maxChunks", 100);
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    private static String file(String marker) {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            code.append("def handler_").append(i).append("(request):\n");
+            for (int j = 0; j < 6; j++) {
+                code.append("    value = request.get('k").append(j).append("') ").append(i == 3 ? marker : "").append('\n');
+            }
+            code.append("    return value\n\n");
+        }
+        return code.toString();
+    }
+
+    @Test
+    void largeFileIsExplainedPerChunkAndMerged() {
+        Map<String, Object> result = service.explainCodeAsync("python", file(""), null).join();
+
+        List<?> chunks = (List<?>) result.get("chunks");
+        assertTrue(chunks.size() > 2);
+        assertEquals("Tóm tắt cả file.", result.get("summary"));
+        assertEquals(chunks.size() + 1, prompts.size());
+        assertTrue(maxActive.get() <= 2, "max concurrent: " + maxActive.get());
+        assertFalse(result.containsKey("partial"));
+    }
+
+    @Test
+    void editedFileOnlyResendsChangedChunks() {
+        Map<String, Object> first = service.explainCodeAsync("python", file(""), null).join();
+        int chunkCount = ((List<?>) first.get("chunks")).size();
+        prompts.clear();
+
+        Map<String, Object> second = service.explainCodeAsync("python", file("or 0"), null).join();
+
+        // phần đã sửa + bước tổng hợp
+        long resentChunks = prompts.stream().filter(p -> !p.contains("TÓM TẮT")).count();
+        assertTrue(resentChunks >= 1 && resentChunks < chunkCount, "resent: " + resentChunks);
+        assertEquals((int) (((List<?>) second.get("chunks")).size() - resentChunks), second.get("reusedChunks"));
+    }
+
+    @Test
+    void failedSummaryIsPartialAndNotCached() {
+        failSummary.set(true);
+        Map<String, Object> first = service.explainCodeAsync("python", file(""), null).join();
+        assertEquals(true, first.get("partial"));
+        assertNotNull(first.get("reduceError"));
+
+        failSummary.set(false);
+        prompts.clear();
+        Map<String, Object> second = service.explainCodeAsync("python", file(""), null).join();
+
+        // không lấy kết quả partial từ cache: bước tổng hợp được gọi lại
+        assertTrue(prompts.stream().anyMatch(p -> p.contains("TÓM TẮT")));
+        assertEquals("Tóm tắt cả file.", second.get("summary"));
+        assertFalse(second.containsKey("partial"));
+    }
+
+    @Test
+    void tooManyChunksIsRejectedWithoutCallingGemini() {
+        ReflectionTestUtils.setField(service, "maxChunks", 2);
+
+        Map<String, Object> result = service.explainCodeAsync("python", file(""), null).join();
+
+        assertTrue(String.valueOf(result.get("explanation")).startsWith("❗"));
+        assertTrue((Integer) result.get("chunkCount") > 2);
+        assertEquals(0, prompts.size());
+    }
+}
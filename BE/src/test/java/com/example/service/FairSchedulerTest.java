@@ -0,0 +1,225 @@
+package com.example.service;
+
+import com.example.exception.ServiceOverloadedException;
+import com.example.service.FairScheduler.Lane;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Thứ tự finish tag giữa các user, suất bulk, token bucket, cap theo user, timeout khi chờ
+class FairSchedulerTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final ExecutorService waiters = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void stop() {
+        waiters.shutdownNow();
+    }
+
+    // bulkCost = 1, nạp 1 token/giây theo đồng hồ giả
+    private FairScheduler scheduler(int slots, int bulkMax, int bulkReserved, long maxWaitMs, int burst,
+            int maxPerUser) {
+        return new FairScheduler(slots, bulkMax, bulkReserved, maxWaitMs, 1, 1.0, burst, maxPerUser, clock::get);
+    }
+
+    private static int stat(FairScheduler scheduler, String name) {
+        return (int) scheduler.stats().get(name);
+    }
+
+    private static int queued(FairScheduler scheduler) {
+        return stat(scheduler, "interactiveQueued") + stat(scheduler, "bulkQueued");
+    }
+
+    // Request chờ trong thread riêng; được cấp thì ghi tên vào order rồi trả suất ngay
+    private Future<?> waitFor(FairScheduler scheduler, String user, Lane lane, String name, List<String> order)
+            throws Exception {
+        int before = queued(scheduler);
+        Future<?> future = waiters.submit(() -> {
+            try (FairScheduler.Ticket ticket = scheduler.acquire(user, lane)) {
+                order.add(name);
+            }
+            return null;
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (queued(scheduler) == before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(2);
+        }
+        assertEquals(before + 1, queued(scheduler), name + " phải đang chờ");
+        return future;
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void finishTagsInterleaveUsers() throws Exception {
+        FairScheduler scheduler = scheduler(1, 1, 0, 5_000, 100, 100);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        FairScheduler.Ticket holder = scheduler.acquire("a", Lane.INTERACTIVE); // tag 1
+
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(waitFor(scheduler, "a", Lane.INTERACTIVE, "a2", order)); // tag 2
+        futures.add(waitFor(scheduler, "a", Lane.INTERACTIVE, "a3", order)); // tag 3
+        futures.add(waitFor(scheduler, "a", Lane.INTERACTIVE, "a4", order)); // tag 4
+        futures.add(waitFor(scheduler, "b", Lane.INTERACTIVE, "b1", order)); // tag 2, tới sau a2
+        holder.close();
+        awaitAll(futures);
+
+        // b gửi sau 3 request của a nhưng không phải chờ hết chúng
+        assertEquals(List.of("a2", "b1", "a3", "a4"), order);
+        assertEquals(0, stat(scheduler, "usersWithWork"));
+    }
+
+    @Test
+    void bulkKeepsReservedSlotAndNeverExceedsMax() throws Exception {
+        FairScheduler scheduler = scheduler(3, 2, 1, 5_000, 100, 100);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<FairScheduler.Ticket> interactive = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            interactive.add(scheduler.acquire("i" + i, Lane.INTERACTIVE));
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(waitFor(scheduler, "bulk", Lane.BULK, "bulk", order));
+        futures.add(waitFor(scheduler, "chat", Lane.INTERACTIVE, "chat", order));
+
+        // Suất trống đầu tiên dành cho bulk (chưa có bulk nào chạy), dù interactive đang chờ
+        interactive.get(0).close();
+        awaitAll(futures.subList(0, 1));
+        interactive.get(1).close();
+        awaitAll(futures);
+        assertEquals(List.of("bulk", "chat"), order);
+        interactive.get(2).close();
+
+        // Không có interactive: bulk vẫn chỉ được tối đa bulkMax suất
+        List<FairScheduler.Ticket> bulk = new ArrayList<>();
+        bulk.add(scheduler.acquire("x", Lane.BULK));
+        bulk.add(scheduler.acquire("y", Lane.BULK));
+        Future<?> third = waitFor(scheduler, "z", Lane.BULK, "z", order);
+        assertEquals(2, stat(scheduler, "bulkActive"));
+        assertEquals(1, stat(scheduler, "bulkQueued"));
+        bulk.get(0).close();
+        third.get(5, TimeUnit.SECONDS);
+        bulk.get(1).close();
+        assertEquals(0, stat(scheduler, "bulkActive"));
+    }
+
+    @Test
+    void tokensRefillAndRetryAfterCountsDown() throws Exception {
+        FairScheduler scheduler = scheduler(4, 2, 1, 5_000, 2, 100);
+        scheduler.acquire("u", Lane.INTERACTIVE).close();
+        scheduler.acquire("u", Lane.INTERACTIVE).close();
+
+        ServiceOverloadedException limited =
+            assertThrows(ServiceOverloadedException.class, () -> scheduler.acquire("u", Lane.INTERACTIVE));
+        assertEquals(1, limited.getRetryAfterSeconds());
+        // user khác có bucket riêng
+        scheduler.acquire("v", Lane.INTERACTIVE).close();
+
+        clock.addAndGet(1_000);
+        scheduler.acquire("u", Lane.INTERACTIVE).close();
+        assertThrows(ServiceOverloadedException.class, () -> scheduler.acquire("u", Lane.INTERACTIVE));
+        assertEquals(0, stat(scheduler, "usersWithWork"));
+    }
+
+    @Test
+    void perUserCapRejectsImmediately() throws Exception {
+        FairScheduler scheduler = scheduler(1, 1, 0, 5_000, 100, 2);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        FairScheduler.Ticket running = scheduler.acquire("greedy", Lane.INTERACTIVE);
+        Future<?> waiting = waitFor(scheduler, "greedy", Lane.INTERACTIVE, "greedy2", order);
+
+        long start = System.nanoTime();
+        ServiceOverloadedException capped =
+            assertThrows(ServiceOverloadedException.class, () -> scheduler.acquire("greedy", Lane.INTERACTIVE));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000, "phải từ chối ngay");
+        assertTrue(capped.getRetryAfterSeconds() >= 1);
+        assertEquals(1, queued(scheduler), "request bị cap không được vào hàng đợi");
+
+        // User khác vẫn được xếp hàng
+        Future<?> other = waitFor(scheduler, "polite", Lane.INTERACTIVE, "polite", order);
+        running.close();
+        waiting.get(5, TimeUnit.SECONDS);
+        other.get(5, TimeUnit.SECONDS);
+        scheduler.acquire("greedy", Lane.INTERACTIVE).close();
+        assertEquals(1L, scheduler.stats().get("userCapped"));
+    }
+
+    @Test
+    void waitTimeoutLeavesTheQueue() throws Exception {
+        FairScheduler scheduler = scheduler(1, 1, 0, 100, 100, 2);
+        FairScheduler.Ticket running = scheduler.acquire("a", Lane.INTERACTIVE);
+
+        ServiceOverloadedException timeout =
+            assertThrows(ServiceOverloadedException.class, () -> scheduler.acquire("b", Lane.INTERACTIVE));
+        assertTrue(timeout.getRetryAfterSeconds() >= 1);
+        assertEquals(0, queued(scheduler));
+        assertEquals(1, stat(scheduler, "usersWithWork"), "chỉ còn request đang chạy của a");
+
+        // Suất trả về không bị cấp cho ticket đã bỏ đi
+        running.close();
+        assertEquals(0, stat(scheduler, "interactiveActive"));
+        assertEquals(0, stat(scheduler, "usersWithWork"));
+        assertEquals(1L, scheduler.stats().get("waitTimeouts"));
+        scheduler.acquire("b", Lane.INTERACTIVE).close();
+    }
+
+    @Test
+    void rotatingClaimedUserIdSharesTheAddressBucketAndCap() throws Exception {
+        FairScheduler scheduler = scheduler(1, 1, 0, 5_000, 2, 100);
+        scheduler.acquire(FairScheduler.userKey(null, 1L, "10.0.0.1"), Lane.INTERACTIVE).close();
+        scheduler.acquire(FairScheduler.userKey("alice", null, "10.0.0.1"), Lane.INTERACTIVE).close();
+
+        // userId / user trong body đổi tuỳ ý nhưng vẫn là cùng một bucket theo IP
+        assertThrows(ServiceOverloadedException.class,
+            () -> scheduler.acquire(FairScheduler.userKey(null, 2L, "10.0.0.1"), Lane.INTERACTIVE));
+        assertThrows(ServiceOverloadedException.class,
+            () -> scheduler.acquire(FairScheduler.userKey(null, null, "10.0.0.1"), Lane.INTERACTIVE));
+        scheduler.acquire(FairScheduler.userKey(null, 1L, "10.0.0.2"), Lane.INTERACTIVE).close();
+
+        FairScheduler capped = scheduler(1, 1, 0, 5_000, 100, 1);
+        FairScheduler.Ticket running = capped.acquire(FairScheduler.userKey(null, 1L, "10.0.0.1"), Lane.INTERACTIVE);
+        assertThrows(ServiceOverloadedException.class,
+            () -> capped.acquire(FairScheduler.userKey(null, 3L, "10.0.0.1"), Lane.INTERACTIVE));
+        running.close();
+        assertEquals(0, stat(capped, "usersWithWork"));
+    }
+
+    @Test
+    void submitAsyncCountsTowardsCapImmediatelyAndRunsWhenGranted() throws Exception {
+        FairScheduler scheduler = scheduler(1, 1, 1, 5_000, 100, 2);
+        FairScheduler.Ticket holder = scheduler.acquire("a", Lane.INTERACTIVE);
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        // Không chặn người gọi dù chưa có suất trống
+        CompletableFuture<String> background = scheduler.submitAsync("a", Lane.BULK, () -> work);
+        assertFalse(background.isDone());
+        assertEquals(1, stat(scheduler, "bulkQueued"));
+        // Việc nền đã giữ chỗ trong cap của user ngay lúc gửi
+        assertThrows(ServiceOverloadedException.class, () -> scheduler.submitAsync("a", Lane.BULK, () -> work));
+
+        holder.close();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (stat(scheduler, "bulkActive") == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "việc nền phải được cấp suất");
+            Thread.sleep(2);
+        }
+        work.complete("done");
+        assertEquals("done", background.get(5, TimeUnit.SECONDS));
+        assertEquals(0, stat(scheduler, "bulkActive"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Prompt gộp: một call Gemini ở chế độ JSON, tách thành phần explain / suggest, gộp với review
+class FullAnalysisServiceTest {
+
+    private GeminiStub stub;
+    private FullAnalysisService service;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private volatile String modelText =
+        "{\\\"explanation\\\": \\\"Hàm cộng hai số. Trả về tổng.\\\\n\\\\nDùng cho máy tính.\\\", "
+            + "\\\"suggestions\\\": \\\"a - first - rõ nghĩa hơn\\\\nb - second - rõ nghĩa hơn\\\"}";
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new GeminiStub().handle("/", exchange -> {
+            requests.add(GeminiStub.requestBody(exchange));
+            GeminiStub.respond(exchange, 200, GeminiStub.candidates(modelText));
+        }).start();
+
+        ExplainService explain = new ExplainService();
+        ReflectionTestUtils.setField(explain, "chunkAboveTokens", 6000);
+        service = new FullAnalysisService();
+        ReflectionTestUtils.setField(service, "geminiClient", stub.client());
+        ReflectionTestUtils.setField(service, "cache", GeminiStub.cache(100));
+        ReflectionTestUtils.setField(service, "explainService", explain);
+        ReflectionTestUtils.setField(service, "suggestNameService", new SuggestNameService());
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void oneJsonCallFillsExplainAndSuggestSections() {
+        Map<String, Object> result = service.analyzeAsync("text", "def add(a, b): return a + b", null).join();
+
+        assertEquals(1, requests.size());
+        assertTrue(requests.get(0).contains("\"responseMimeType\":\"application/json\""), requests.get(0));
+        Map<String, Object> explain = (Map<String, Object>) result.get("explain");
+        Map<String, Object> suggest = (Map<String, Object>) result.get("suggest");
+        assertEquals("Hàm cộng hai số. Trả về tổng.\nDùng cho máy tính.", explain.get("explanation"));
+        assertEquals("a - first - rõ nghĩa hơn\nb - second - rõ nghĩa hơn", suggest.get("suggestions"));
+        assertEquals(true, ((Map<String, Object>) result.get("review")).get("success"));
+        assertFalse(result.containsKey("partial"));
+
+        // lần hai: từ cache, không gọi Gemini
+        Map<String, Object> again = service.analyzeAsync("text", "def add(a, b):  return a + b", null).join();
+        assertEquals(1, requests.size());
+        assertEquals(true, again.get("cached"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void nonJsonReplyIsReturnedAsExplanationAndNotCached() {
+        modelText = "Không phải JSON";
+
+        Map<String, Object> result = service.analyzeAsync("text", "x = 1", null).join();
+        assertEquals("Không phải JSON", ((Map<String, Object>) result.get("explain")).get("explanation"));
+        assertEquals(true, result.get("partial"));
+
+        service.analyzeAsync("text", "x = 1", null).join();
+        assertEquals(2, requests.size());
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.service;
+
+import com.example.exception.GeminiException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stub server thay cho Gemini: kiểm tra request body, đường dẫn model, streaming và xử lý lỗi HTTP
+class GeminiClientTest {
+
+    private GeminiStub stub;
+    private GeminiClient client;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<String> released = new LinkedBlockingQueue<>();
+    private volatile List<String> streamChunks = List.of();
+    // Stub ghi chunk thất bại = client đã đóng kết nối stream
+    private final CountDownLatch streamAborted = new CountDownLatch(1);
+    private volatile int status = 200;
+    private volatile String response =
+        "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Xin chào\"},{\"text\":\"thế giới\"}]}}]}";
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new GeminiStub();
+        stub.handle("/models/test-model:streamGenerateContent", exchange -> {
+            requests.add(exchange.getRequestURI().toString());
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(status, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String chunk : streamChunks) {
+                    out.write(("data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + chunk
+                        + "\"}]}}]}\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    // chunk sau chỉ được gửi khi client đã nhận chunk trước
+                    try {
+                        released.poll(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                streamAborted.countDown();
+            }
+        });
+        stub.handle("/", exchange -> {
+            requests.add(exchange.getRequestURI() + " " + GeminiStub.requestBody(exchange));
+            GeminiStub.respond(exchange, status, response);
+        }).start();
+        client = stub.client();
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    @Test
+    void generateContentSendsPromptAsJson() {
+        JsonNode root = client.generateContent("dòng 1\n\"trích\"").join();
+
+        assertEquals("Xin chào\nthế giới\n", GeminiClient.extractText(root));
+        assertEquals(1, requests.size());
+        String request = requests.get(0);
+        assertTrue(request.startsWith("/models/test-model:generateContent?key=k "), request);
+        assertTrue(request.contains("\"text\":\"dòng 1\\n\\\"trích\\\"\""), request);
+    }
+
+    @Test
+    void concurrentCallsShareClient() {
+        List<CompletableFuture<JsonNode>> futures = new java.util.ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.generateContent("p" + i));
+        }
+        futures.forEach(f -> assertNotNull(GeminiClient.extractText(f.join())));
+        assertEquals(20, requests.size());
+    }
+
+    @Test
+    void httpErrorBecomesGeminiException() {
+        status = 429;
+        response = "{\"error\":\"quota\"}";
+
+        CompletionException error = assertThrows(CompletionException.class,
+            () -> client.generateContent("x").join());
+        GeminiException cause = assertInstanceOf(GeminiException.class, GeminiClient.unwrap(error));
+        assertEquals(429, cause.getStatusCode());
+        assertEquals("{\"error\":\"quota\"}", cause.getBody());
+    }
+
+    @Test
+    void missingCandidatesGivesNullText() {
+        response = "{\"promptFeedback\":{}}";
+        assertNull(GeminiClient.extractText(client.generateContent("x").join()));
+    }
+
+    @Test
+    void streamDeliversChunksBeforeResponseEnds() {
+        streamChunks = List.of("Dòng 1\\n", "\\n  \\n", "Dòng 2");
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        client.streamGenerateContent("x", text -> {
+            received.add(text);
+            released.add(text); // stub chỉ gửi chunk tiếp theo sau khi nhận được chunk này
+        }).join();
+
+        assertEquals(List.of("Dòng 1\n", "\n  \n", "Dòng 2"), received);
+        assertTrue(requests.get(0).endsWith(":streamGenerateContent?alt=sse&key=k"), requests.get(0));
+    }
+
+    @Test
+    void cancellingStreamClosesUpstream() throws Exception {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            chunks.add("c" + i + "x".repeat(1_000));
+        }
+        streamChunks = chunks;
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch first = new CountDownLatch(1);
+
+        CompletableFuture<Void> stream = client.streamGenerateContent("x", text -> {
+            received.add(text);
+            first.countDown();
+        });
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        assertTrue(stream.cancel(true));
+        chunks.forEach(released::add); // cho stub gửi tiếp mọi chunk còn lại
+
+        assertTrue(streamAborted.await(5, TimeUnit.SECONDS), "stub phải thấy kết nối bị đóng");
+        assertEquals(1, received.size(), "không nhận thêm chunk sau khi huỷ");
+    }
+
+    @Test
+    void streamHttpErrorFailsFuture() {
+        status = 503;
+        CompletionException error = assertThrows(CompletionException.class,
+            () -> client.streamGenerateContent("x", text -> { }).join());
+        assertEquals(503, assertInstanceOf(GeminiException.class, GeminiClient.unwrap(error)).getStatusCode());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.service;
+
+import com.example.exception.GeminiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Gemini giả trả lỗi theo kịch bản: kiểm tra retry, circuit breaker, giới hạn quota và deadline
+class GeminiResilienceTest {
+
+    private GeminiStub stub;
+    private final Queue<Integer> script = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger hits = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new GeminiStub().handle("/", exchange -> {
+            hits.incrementAndGet();
+            GeminiStub.requestBody(exchange);
+            Integer scripted = script.poll();
+            int status = scripted == null ? 200 : scripted;
+            GeminiStub.respond(exchange, status,
+                status == 200 ? GeminiStub.candidates("ok") : "{\"error\":" + status + "}");
+        }).start();
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    private GeminiClient client(GeminiResilience resilience, long deadlineMs) {
+        return stub.client(ModelRouter.single(GeminiStub.MODEL), resilience, deadlineMs);
+    }
+
+    private static int status(CompletableFuture<?> future) {
+        CompletionException error = assertThrows(CompletionException.class, future::join);
+        return assertInstanceOf(GeminiException.class, GeminiClient.unwrap(error)).getStatusCode();
+    }
+
+    @Test
+    void retriesTransientErrorsThenSucceeds() {
+        script.addAll(java.util.List.of(429, 503));
+        GeminiResilience resilience = new GeminiResilience(6000, 10, 10, 3, 10, 50, 10, 1_000);
+
+        assertEquals("ok\n", GeminiClient.extractText(client(resilience, 5_000).generateContent("x").join()));
+        assertEquals(3, hits.get());
+        assertEquals(2L, resilience.stats().get("retries"));
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        script.add(400);
+        GeminiResilience resilience = new GeminiResilience(6000, 10, 10, 3, 10, 50, 10, 1_000);
+
+        assertEquals(400, status(client(resilience, 5_000).generateContent("x")));
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void breakerOpensAndFailsFastThenRecovers() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            script.add(500);
+        }
+        GeminiResilience resilience = new GeminiResilience(6000, 10, 10, 1, 0, 0, 2, 200);
+        GeminiClient client = client(resilience, 5_000);
+
+        assertEquals(500, status(client.generateContent("a")));
+        assertEquals(500, status(client.generateContent("b")));
+        assertEquals("OPEN", resilience.stats().get("state"));
+
+        // đang OPEN: không gọi tới server
+        assertEquals(0, status(client.generateContent("c")));
+        assertEquals(2, hits.get());
+
+        Thread.sleep(250);
+        script.clear();
+        assertNotNull(client.generateContent("d").join());
+        assertEquals("CLOSED", resilience.stats().get("state"));
+    }
+
+    @Test
+    void rateLimitQueuesThenRejectsPastDeadlineOrQueueBound() {
+        // 60/phút = 1 token mỗi giây, burst 1, hàng đợi 1
+        GeminiResilience resilience = new GeminiResilience(60, 1, 1, 1, 0, 0, 10, 1_000);
+
+        assertNotNull(client(resilience, 5_000).generateContent("a").join());
+        // token tiếp theo có sau ~1s > deadline 300ms -> từ chối ngay, không chờ
+        long started = System.nanoTime();
+        assertEquals(0, status(client(resilience, 300).generateContent("b")));
+        assertTrue(System.nanoTime() - started < 200_000_000L);
+
+        CompletableFuture<?> queued = client(resilience, 5_000).generateContent("c");
+        assertEquals(0, status(client(resilience, 5_000).generateContent("d")));
+        assertNotNull(queued.join());
+        assertEquals(2, hits.get());
+        assertEquals(1L, resilience.stats().get("rejectedQueueFull"));
+    }
+}
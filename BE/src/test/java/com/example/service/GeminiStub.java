@@ -0,0 +1,76 @@
+package com.example.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+// Gemini giả dùng chung cho các test: HttpServer local + GeminiClient trỏ vào nó.
+// Mỗi test tự đăng ký handler theo đường dẫn rồi start().
+class GeminiStub implements AutoCloseable {
+
+    static final String MODEL = "test-model";
+
+    final HttpServer server;
+
+    GeminiStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Nhiều request song song (hedge, explain theo phần) không phải chờ nhau ở stub
+        server.setExecutor(Executors.newCachedThreadPool());
+    }
+
+    GeminiStub handle(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+        return this;
+    }
+
+    GeminiStub start() {
+        server.start();
+        return this;
+    }
+
+    GeminiClient client(ModelRouter router, GeminiResilience resilience, long deadlineMs) {
+        return new GeminiClient("http://127.0.0.1:" + server.getAddress().getPort() + "/models",
+            "k", 1_000, 5_000, deadlineMs, router, resilience);
+    }
+
+    GeminiClient client() {
+        return client(ModelRouter.single(MODEL), GeminiResilience.passThrough(), 10_000);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    // Body generateContent với một part text (text đã escape JSON)
+    static String candidates(String text) {
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}]}}]}";
+    }
+
+    static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] out = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, out.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(out);
+        }
+    }
+
+    static String requestBody(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    // Cache bật sẵn, TTL 60 phút (trong Spring là @Value)
+    static LlmResponseCache cache(int maxEntries) {
+        LlmResponseCache cache = new LlmResponseCache(maxEntries);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        return cache;
+    }
+}
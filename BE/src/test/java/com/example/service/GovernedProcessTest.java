@@ -0,0 +1,85 @@
+package com.example.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Process con thật (sh, sleep, yes, cat): budget, kill cả cây process, giới hạn output
+class GovernedProcessTest {
+
+    @BeforeEach
+    void requireShell() {
+        assumeTrue(new File("/bin/sh").canExecute(), "cần /bin/sh");
+    }
+
+    private static List<String> sh(String script) {
+        return List.of("/bin/sh", "-c", script);
+    }
+
+    @Test
+    void budgetKillsLongRunningChild() throws Exception {
+        GovernedProcess.Result result = GovernedProcess.run(List.of("sleep", "30"), null, 300);
+
+        assertTrue(result.timedOut);
+        assertTrue(result.truncated);
+        assertTrue(result.elapsedMs < 5_000, "elapsed: " + result.elapsedMs);
+    }
+
+    @Test
+    void budgetKillsWholeProcessTree() throws Exception {
+        GovernedProcess.Result result = GovernedProcess.run(sh("sleep 30 & echo $!; wait"), null, 300);
+
+        assertTrue(result.timedOut);
+        long grandchild = Long.parseLong(result.lines.get(0).trim());
+        long deadline = System.currentTimeMillis() + 5_000;
+        Optional<ProcessHandle> handle = ProcessHandle.of(grandchild);
+        while (handle.isPresent() && handle.get().isAlive()) {
+            assertTrue(System.currentTimeMillis() < deadline, "process cháu vẫn còn chạy");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void childThatClosesStdoutButKeepsRunningIsStillKilled() throws Exception {
+        GovernedProcess.Result result = GovernedProcess.run(sh("echo start; exec >&- 2>&-; sleep 30"), null, 300);
+
+        assertEquals(List.of("start"), result.lines);
+        assertTrue(result.timedOut);
+        assertTrue(result.elapsedMs < 5_000, "elapsed: " + result.elapsedMs);
+    }
+
+    @Test
+    void endlessOutputIsCappedAndToolStopped() throws Exception {
+        GovernedProcess.Result result = GovernedProcess.run(List.of("yes"), null, 20_000);
+
+        assertFalse(result.timedOut);
+        assertTrue(result.truncated);
+        assertEquals(GovernedProcess.MAX_LINES, result.lines.size());
+    }
+
+    @Test
+    void endlessLineWithoutNewlineIsCutWhileReading() throws Exception {
+        // /dev/zero không có '\n': readLine sẽ giữ cả MAX_OUTPUT_BYTES trong một String
+        GovernedProcess.Result result = GovernedProcess.run(List.of("cat", "/dev/zero"), null, 20_000);
+
+        assertFalse(result.timedOut);
+        assertTrue(result.truncated);
+        assertEquals(1, result.lines.size());
+        assertEquals(GovernedProcess.MAX_LINE_CHARS, result.lines.get(0).length());
+    }
+
+    @Test
+    void lineEndingsMatchReadLine() throws Exception {
+        GovernedProcess.Result result = GovernedProcess.run(sh("printf 'a\\r\\nb\\rc\\n\\nd'"), null, 5_000);
+
+        assertEquals(List.of("a", "b", "c", "", "d"), result.lines);
+        assertFalse(result.truncated);
+        assertEquals(0, result.exitCode);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tách file thành unit, dựng module tổng hợp và đưa issue của tool về đúng unit / prelude / module
+class IncrementalReviewTest {
+
+    private static final String CODE = String.join("\n",
+        "import os",                       // 1
+        "import sys",                      // 2
+        "",                                // 3
+        "@decorator",                      // 4
+        "def first(a,",                    // 5
+        "          b):",                   // 6
+        "    s = \"\"\"",                  // 7
+        "def not_a_unit():",               // 8
+        "\"\"\"",                          // 9
+        "    return os.path.join(a, b)",   // 10
+        "",                                // 11
+        "# comment của second",            // 12
+        "class Second:",                   // 13
+        "    x = 1",                       // 14
+        "",                                // 15
+        "    def method(self):",           // 16
+        "        return sys.argv",         // 17
+        "",                                // 18
+        "VALUE = first(1, 2)");            // 19
+
+    private static Issue issue(int line, String code, String message) {
+        return new Issue("WARNING", line, 0, code, message, StaticAnalysisService.PYLINT);
+    }
+
+    @Test
+    void splitsTopLevelUnitsWithDecoratorsAndMethods() {
+        PythonUnits.Split split = PythonUnits.split(CODE);
+        assertEquals(List.of("first", "Second"), split.units.stream().map(u -> u.name).toList());
+
+        PythonUnits.Unit first = split.units.get(0);
+        assertEquals(4, first.startLine);
+        assertEquals(5, first.headerLine);
+        assertEquals(10, first.endLine); // "def" trong chuỗi triple-quote không tách unit
+
+        PythonUnits.Unit second = split.units.get(1);
+        assertEquals(13, second.startLine); // comment phía trên thuộc prelude
+        assertEquals(17, second.endLine);
+        assertEquals(List.of("method"), second.methods.stream().map(m -> m.name).toList());
+
+        assertNull(split.unitAt(12));
+        assertTrue(split.prelude().contains("VALUE = first(1, 2)"));
+        assertFalse(split.prelude().contains("return"));
+    }
+
+    @Test
+    void stubKeepsSignaturesOnly() {
+        PythonUnits.Split split = PythonUnits.split(CODE);
+        assertEquals(List.of("@decorator", "def first(a,", "          b):", "    ..."),
+            split.stub(split.units.get(0)));
+        assertEquals(List.of("class Second:", "    x = 1", "", "    def method(self):", "        ..."),
+            split.stub(split.units.get(1)));
+    }
+
+    @Test
+    void mergeMapsIssuesBackToUnitsPreludeAndModule() {
+        PythonUnits.Split split = PythonUnits.split(CODE);
+        PythonUnits.Unit first = split.units.get(0);
+        PythonUnits.Unit second = split.units.get(1);
+        IncrementalReview.Synthetic synthetic = IncrementalReview.synthesize(split, Set.of(second));
+
+        // first bị stub (4 dòng), second giữ nguyên văn
+        assertEquals(CODE.split("\n").length - 7 + 4, synthetic.lines.size());
+        int stubLine = synthetic.origin.indexOf(-1) + 1;
+        int methodLine = synthetic.origin.indexOf(17) + 1;
+        int valueLine = synthetic.origin.indexOf(19) + 1;
+        assertEquals("        return sys.argv", synthetic.lines.get(methodLine - 1));
+
+        IncrementalReview.Merged merged = IncrementalReview.merge(split, synthetic, Set.of(second), List.of(
+            issue(methodLine, "W0104", "in method"),
+            issue(stubLine, "W0613", "from stub"),
+            issue(valueLine, "C0103", "in prelude"),
+            issue(1, "W0611", "Unused import os"),          // os chỉ dùng trong thân first đã stub
+            issue(0, "R0801", "Similar lines in 2 files"))); // cấp module, không gắn dòng
+
+        assertEquals(List.of(17), merged.units.get(second).stream().map(i -> i.line).toList());
+        assertFalse(merged.units.containsKey(first));
+        assertEquals(List.of("in prelude"), merged.prelude.stream().map(i -> i.message).toList());
+        assertEquals(19, merged.prelude.get(0).line);
+        // Issue line 0 không được trộn vào prelude (key prelude không đổi khi thân unit đổi)
+        assertEquals(List.of("R0801"), merged.module.stream().map(i -> i.code).toList());
+    }
+
+    @Test
+    void crosshairRunsOnRealFileOnlyForDirtyUnits() {
+        String code = String.join("\n",
+            "def helper(x):",               // 1
+            "    return x + 1",             // 2
+            "",                             // 3
+            "def caller(x: int) -> int:",   // 4
+            "    '''",                      // 5
+            "    post: __return__ > x",     // 6
+            "    '''",                      // 7
+            "    return helper(x)",         // 8
+            "",                             // 9
+            "def other(x: int) -> int:",    // 10
+            "    assert x > 0",             // 11
+            "    return x");                // 12
+        PythonUnits.Split split = PythonUnits.split(code);
+        PythonUnits.Unit caller = split.units.get(1);
+
+        // Chỉ hàm vừa sửa được check, và check trên code thật (helper không bị stub)
+        assertEquals(List.of(4), CrosshairRunner.targets(code, IncrementalReview.dirtyLines(Set.of(caller)))
+            .stream().map(t -> t.line).toList());
+
+        IncrementalReview.Merged merged = new IncrementalReview.Merged();
+        merged.units.put(caller, new java.util.ArrayList<>());
+        Issue inCaller = StaticAnalysisService.parseCrosshairLine("/tmp/x.py:8: error: false when calling caller(0)");
+        Issue inHelper = StaticAnalysisService.parseCrosshairLine("/tmp/x.py:2: error: raised in helper");
+        IncrementalReview.mergeReal(split, Set.of(caller), List.of(inCaller, inHelper), merged);
+
+        // dòng đã là dòng gốc; issue ngoài unit vừa sửa phụ thuộc cả file -> module
+        assertEquals(List.of(inCaller), merged.units.get(caller));
+        assertEquals(List.of(inHelper), merged.module);
+    }
+
+    @Test
+    void shouldUseOnlyForLargePythonFilesUnlessRequested() {
+        assertFalse(IncrementalReview.shouldUse(null, "java", CODE));
+        assertFalse(IncrementalReview.shouldUse(null, "python", CODE));
+        assertTrue(IncrementalReview.shouldUse(true, "python", CODE));
+        assertTrue(IncrementalReview.shouldUse(null, "python", "x = 1\n".repeat(600)));
+    }
+}
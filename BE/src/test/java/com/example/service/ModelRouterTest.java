@@ -0,0 +1,168 @@
+package com.example.service;
+
+import com.example.exception.GeminiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stub cho từng model với latency / lỗi theo kịch bản: hedge, failover và chọn model theo latency đo được
+class ModelRouterTest {
+
+    private GeminiStub stub;
+    private final List<String> hits = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new GeminiStub();
+        model("slow", 400, 200);
+        model("fast", 20, 200);
+        model("broken", 0, 503);
+        stub.start();
+    }
+
+    private void model(String model, long latencyMs, int status) {
+        stub.handle("/models/" + model + ":generateContent", exchange -> {
+            hits.add(model);
+            GeminiStub.requestBody(exchange);
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException ignored) {
+            }
+            GeminiStub.respond(exchange, status, GeminiStub.candidates(model));
+        });
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    private GeminiClient client(ModelRouter router) {
+        return client(router, GeminiResilience.passThrough());
+    }
+
+    private GeminiClient client(ModelRouter router, GeminiResilience resilience) {
+        return stub.client(router, resilience, 10_000);
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndFasterModelWins() {
+        ModelRouter router = new ModelRouter("slow,fast", 100, 50, 1.0);
+        GeminiResilience resilience = GeminiResilience.passThrough();
+
+        String text = GeminiClient.extractText(client(router, resilience).generateContent("x").join());
+
+        assertEquals("fast\n", text);
+        assertEquals(java.util.Set.of("slow", "fast"), java.util.Set.copyOf(hits));
+        assertEquals(1L, router.stats().get("hedges"));
+        assertEquals(1L, router.stats().get("hedgeWins"));
+        // bản hedge cũng qua resilience (quota, breaker) như bản chính
+        assertEquals(2L, resilience.stats().get("calls"));
+    }
+
+    @Test
+    void hedgeRejectedByQuotaDoesNotFailTheCall() {
+        ModelRouter router = new ModelRouter("slow,fast", 100, 50, 1.0);
+        // burst 1, không có hàng đợi: bản chính lấy token duy nhất, bản hedge bị từ chối ngay
+        GeminiResilience resilience = new GeminiResilience(1, 1, 0, 1, 0, 0, 10, 1_000);
+
+        String text = GeminiClient.extractText(client(router, resilience).generateContent("x").join());
+
+        assertEquals("slow\n", text);
+        assertEquals(List.of("slow"), hits);
+        assertEquals(1L, router.stats().get("hedges"));
+        assertEquals(1L, resilience.stats().get("rejectedQueueFull"));
+    }
+
+    @Test
+    void hedgeRejectedByOpenCircuitDoesNotFailTheCall() throws Exception {
+        ModelRouter router = new ModelRouter("a,b", 50, 10, 1.0);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+
+        CompletableFuture<String> result = router.call(model -> "a".equals(model)
+            ? primary
+            : CompletableFuture.failedFuture(
+                new GeminiException("Gemini đang lỗi liên tục, tạm ngưng gọi (circuit open)", null)));
+        Thread.sleep(150); // hedge đã được gửi và bị từ chối
+        assertFalse(result.isDone());
+        primary.complete("a");
+
+        assertEquals("a", result.join());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> b = (Map<String, Object>) ((Map<String, Object>) router.stats().get("models")).get("b");
+        assertEquals(0L, b.get("errors"));
+    }
+
+    @Test
+    void loserIsCancelledOnceWinnerSettles() {
+        ModelRouter router = new ModelRouter("a,b", 50, 10, 1.0);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+
+        String winner = router.call(model -> "a".equals(model) ? primary : CompletableFuture.completedFuture(model))
+            .join();
+
+        assertEquals("b", winner);
+        assertTrue(primary.isCancelled());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> a = (Map<String, Object>) ((Map<String, Object>) router.stats().get("models")).get("a");
+        assertEquals(0L, a.get("errors"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void nonRetryableErrorDoesNotFailOver() {
+        ModelRouter router = new ModelRouter("a,b", 5_000, 50, 1.0);
+        List<String> sent = new CopyOnWriteArrayList<>();
+
+        CompletionException error = assertThrows(CompletionException.class, () -> router.<String>call(model -> {
+            sent.add(model);
+            return CompletableFuture.failedFuture(new GeminiException(400, "bad request"));
+        }).join());
+
+        assertEquals(400, assertInstanceOf(GeminiException.class, error.getCause()).getStatusCode());
+        assertEquals(List.of("a"), sent);
+        assertEquals(0L, router.stats().get("failovers"));
+        Map<String, Object> a = (Map<String, Object>) ((Map<String, Object>) router.stats().get("models")).get("a");
+        assertEquals(0L, a.get("errors"));
+    }
+
+    @Test
+    void failingPrimaryFailsOverImmediately() {
+        ModelRouter router = new ModelRouter("broken,fast", 5_000, 50, 1.0);
+
+        long started = System.nanoTime();
+        assertEquals("fast\n", GeminiClient.extractText(client(router).generateContent("x").join()));
+        assertTrue(System.nanoTime() - started < 2_000_000_000L);
+        assertEquals(1L, router.stats().get("failovers"));
+        assertEquals(0L, router.stats().get("hedges"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void measuredLatencyPromotesFasterModel() throws Exception {
+        ModelRouter router = new ModelRouter("slow,fast", 100, 50, 1.0);
+        GeminiClient client = client(router);
+        for (int i = 0; i < 12; i++) {
+            client.generateContent("p" + i).join();
+        }
+        Thread.sleep(100); // chờ các bản thua (slow) bị huỷ và ghi mẫu latency
+
+        assertEquals("fast", router.pick());
+        long hedgesBefore = (Long) router.stats().get("hedges");
+        hits.clear();
+        assertEquals("fast\n", GeminiClient.extractText(client.generateContent("sau").join()));
+        assertEquals(List.of("fast"), hits);
+        assertEquals(hedgesBefore, router.stats().get("hedges"));
+        Map<String, Object> slow = (Map<String, Object>) ((Map<String, Object>) router.stats().get("models")).get("slow");
+        // bản thua bị huỷ khi hedge thắng -> mẫu là cận dưới, ít nhất bằng thời gian chờ hedge
+        assertTrue((Long) slow.get("p50") >= 100);
+    }
+}
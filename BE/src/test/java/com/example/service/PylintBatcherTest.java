@@ -0,0 +1,114 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Batch chạy với một "pylint" giả: --jobs=1 duyệt file tuần tự, --jobs>1 in xen kẽ
+// từng dòng của các file (như nhiều worker chạy song song)
+class PylintBatcherTest {
+
+    // Mỗi dòng "issue" của file -> một message; gặp dòng có "slow" thì treo
+    private static final String FAKE_PYLINT = String.join("\n",
+        "import sys, time",
+        "jobs = 1",
+        "files = []",
+        "for arg in sys.argv[1:]:",
+        "    if arg.startswith('--jobs='):",
+        "        jobs = int(arg[7:])",
+        "    elif not arg.startswith('--'):",
+        "        files.append((arg, list(enumerate(open(arg).read().splitlines(), 1))))",
+        "def emit(path, n, line):",
+        "    if 'slow' in line:",
+        "        time.sleep(30)",
+        "    if 'issue' in line:",
+        "        print(f'{path}:{n}:0: W0104: {line}', flush=True)",
+        "if jobs == 1:",
+        "    for path, lines in files:",
+        "        for n, line in lines:",
+        "            emit(path, n, line)",
+        "else:",
+        "    for i in range(max(len(lines) for _, lines in files)):",
+        "        for path, lines in files:",
+        "            if i < len(lines):",
+        "                emit(path, *lines[i])",
+        "");
+
+    @TempDir
+    Path dir;
+
+    private List<String> fakePylint() throws Exception {
+        assumeTrue(new ProcessBuilder("python3", "--version").start().waitFor() == 0, "cần python3");
+        Path script = dir.resolve("fake_pylint.py");
+        Files.writeString(script, FAKE_PYLINT);
+        return List.of("python3", script.toString());
+    }
+
+    private static GovernedProcess.Result await(PylintBatcher.Pending p) throws Exception {
+        return p.result.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void slowFileTimesOutAloneAndOthersAreRerunWithoutDuplicates() throws Exception {
+        List<String> command = fakePylint();
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        PylintBatcher.Pending done = new PylintBatcher.Pending("x = 1  # issue a\n", streamed::add);
+        PylintBatcher.Pending clean = new PylintBatcher.Pending("y = 2\n", null);
+        PylintBatcher.Pending slow = new PylintBatcher.Pending("slow = 1\n", null);
+        PylintBatcher.Pending after = new PylintBatcher.Pending("z = 3  # issue b\n", null);
+
+        PylintBatcher.runBatch(List.of(done, clean, slow, after), command, 2_000L, 1);
+
+        GovernedProcess.Result doneResult = await(done);
+        assertFalse(doneResult.timedOut);
+        assertEquals(1, doneResult.lines.size());
+        assertEquals(1, streamed.size(), "dòng đã stream không được gửi lại khi chạy riêng");
+        assertFalse(await(clean).timedOut);
+        assertEquals(List.of(), await(clean).lines);
+        assertTrue(await(slow).timedOut);
+        GovernedProcess.Result afterResult = await(after);
+        assertFalse(afterResult.timedOut, "file xếp sau file chậm phải được chạy lại riêng");
+        assertTrue(afterResult.lines.get(0).endsWith("# issue b"));
+    }
+
+    @Test
+    void interleavedFileThatStoppedMidCheckIsRerunNotCompleted() throws Exception {
+        List<String> command = fakePylint();
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        // Thứ tự in: a1, b1, a2, rồi file b treo giữa chừng -> b không phải file in sau cùng
+        PylintBatcher.Pending a = new PylintBatcher.Pending("x = 1  # issue a1\ny = 2  # issue a2\n", streamed::add);
+        PylintBatcher.Pending b = new PylintBatcher.Pending("z = 3  # issue b1\nslow = 1\nw = 4  # issue b2\n", null);
+
+        PylintBatcher.runBatch(List.of(a, b), command, 2_000L, 2);
+
+        assertTrue(await(b).timedOut, "file in dở không được coi là xong");
+        GovernedProcess.Result aResult = await(a);
+        assertFalse(aResult.timedOut);
+        assertEquals(2, aResult.lines.size());
+        assertEquals(2, streamed.size(), "dòng đã stream không được gửi lại khi chạy riêng");
+    }
+
+    @Test
+    void outputPerFileIsBounded() throws Exception {
+        List<String> command = fakePylint();
+        PylintBatcher.Pending noisy = new PylintBatcher.Pending(
+            "x = 1  # issue\n".repeat(GovernedProcess.MAX_LINES + 10), null);
+        PylintBatcher.Pending quiet = new PylintBatcher.Pending("y = 2\n", null);
+
+        PylintBatcher.runBatch(List.of(noisy, quiet), command, 20_000L);
+
+        GovernedProcess.Result result = await(noisy);
+        assertEquals(GovernedProcess.MAX_LINES, result.lines.size());
+        assertTrue(result.truncated);
+        assertFalse(await(quiet).truncated);
+    }
+}
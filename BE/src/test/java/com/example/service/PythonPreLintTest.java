@@ -0,0 +1,91 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Corpus: code hợp lệ không được bị chặn (pre-lint sai = bỏ qua cả 3 tool), code lỗi phải
+// được báo đúng dòng
+class PythonPreLintTest {
+
+    private static final List<String> VALID = List.of(
+        "def f(x):\n    return x + 1\n",
+        "class A:\n    def m(self):\n        pass\n\n    x = 1\n",
+        "if a:\n    b()\nelif c:\n    d()\nelse:\n    e()\n",
+        "x = (1,\n     2)\ny = [\n    3,\n]\n",
+        "s = 'it\\'s'\nt = \"say \\\"hi\\\"\"\n",
+        "doc = '''a ' b \" c\n# not a comment\n'''\n",
+        "x = 1 + \\\n    2\n",
+        "d = {'a': 1, 'b': {'c': 2}}\n",
+        "f = lambda x: x\n",
+        "s = 'ab\\\ncd'\n",
+        "def g():\n\tif x:\n\t\treturn 1\n",
+        "# comment with ' and \" and (\nx = 1\n",
+        "match p:\n    case [a, b]:\n        pass\n",
+        "b = rb'\\d+' + br\"\\\\\"\n",
+        "@decorator(arg=1)\ndef h():\n    ...\n",
+        "try:\n    pass\nexcept (A, B):\n    pass\n",
+        "elif_ = 1\nx = elif_\n",
+        // f-string
+        "name = f'hello {name!r:>{width}}'\n",
+        "s = f\"{{literal}} {value}\"\n",
+        "s = f'{d[\"key\"]}'\n",
+        "s = f'''\n{x}\n'''\n",
+        "s = rf'{x}\\d'\n",
+        "s = f'{x:{\"<\"}10}'\n",
+        // PEP 701 (Python 3.12): cùng loại nháy lồng nhau, biểu thức nhiều dòng có comment
+        "s = f\"{\", \".join(items)}\"\n",
+        "s = f\"{'a' if x else \"b\"}\"\n",
+        "s = f'{\n    x  # comment\n    + 1\n}'\n",
+        "s = f\"{f\"{f\"{x}\"}\"}\"\n",
+        "s = f'{ {\"a\": 1}[\"a\"] }'\n");
+
+    // snippet -> dòng lỗi mong đợi
+    private static final Map<String, Integer> INVALID = Map.of(
+        "s = 'abc\nx = 1\n", 1,
+        "x = (1, 2]\n", 1,
+        "def f():\nreturn 1\n", 2,
+        "x = 1\n    y = 2\n", 2,
+        "if x:\n        a = 1\n    b = 2\n", 3,
+        "foo(1,\n    2\n", 1,
+        "x = 1)\n", 1,
+        "doc = '''never closed\nx = 1\n", 1,
+        "if x:\n", 1,
+        "s = f'ok {x}'\nt = 'oops\n", 2);
+
+    @Test
+    void validCorpusHasNoIssues() {
+        for (String code : VALID) {
+            assertEquals(List.of(), PythonPreLint.check(code), () -> "báo lỗi sai cho:\n" + code);
+        }
+    }
+
+    @Test
+    void invalidCorpusReportsLine() {
+        INVALID.forEach((code, line) -> {
+            List<Issue> issues = PythonPreLint.check(code);
+            assertEquals(1, issues.size(), () -> "không phát hiện lỗi trong:\n" + code);
+            assertEquals(line, issues.get(0).line, () -> "sai dòng cho:\n" + code);
+            assertEquals("E0001", issues.get(0).code);
+        });
+    }
+
+    @Test
+    void unsureFStringsAreLeftToTheTools() {
+        // f-string một dòng không đóng: lỗi thật nhưng scanner không chắc -> không chặn tool
+        assertEquals(List.of(), PythonPreLint.check("s = f'{x}\ny = 1\n"));
+        assertEquals(List.of(), PythonPreLint.check("s = f'{x'\n"));
+    }
+
+    @Test
+    void stringPrefixes() {
+        assertEquals("rb", PythonPreLint.stringPrefix("x = rb'a'", 6));
+        assertEquals("f", PythonPreLint.stringPrefix("f'a'", 1));
+        assertEquals("", PythonPreLint.stringPrefix("elif'a'", 4));
+        assertEquals("", PythonPreLint.stringPrefix("x = 'a'", 4));
+    }
+}
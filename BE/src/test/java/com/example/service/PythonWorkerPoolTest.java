@@ -0,0 +1,180 @@
+package com.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Pool chạy với một worker Python giả nói đúng giao thức frame của analyzer_worker.py
+class PythonWorkerPoolTest {
+
+    // Trả từng dòng code làm output; code "sleep" thì treo; file <script>.fail chứa số
+    // lần handshake còn phải thất bại (mô phỏng python chưa sẵn sàng lúc khởi động)
+    private static final String FAKE_WORKER = String.join("\n",
+        "import json, os, struct, sys, time",
+        "fail = sys.argv[0] + '.fail'",
+        "if os.path.exists(fail):",
+        "    n = int(open(fail).read() or '0')",
+        "    if n > 0:",
+        "        open(fail, 'w').write(str(n - 1))",
+        "        sys.exit(1)",
+        "def write(obj):",
+        "    data = json.dumps(obj).encode()",
+        "    sys.stdout.buffer.write(struct.pack('>I', len(data)) + data)",
+        "    sys.stdout.buffer.flush()",
+        "write({'ready': True, 'tools': ['pylint'], 'rss_kb': 1})",
+        "while True:",
+        "    header = sys.stdin.buffer.read(4)",
+        "    if len(header) < 4:",
+        "        break",
+        "    req = json.loads(sys.stdin.buffer.read(struct.unpack('>I', header)[0]))",
+        "    if req.get('code') == 'sleep':",
+        "        time.sleep(30)",
+        "    write({'ok': True, 'output': req.get('code', '').splitlines(), 'rss_kb': 1})",
+        "");
+
+    // pylint / astroid / crosshair giả cho analyzer_worker.py thật: cache AST theo tên module
+    // như astroid.MANAGER, crosshair import module "snippet" như crosshair.main
+    private static final Map<String, String> FAKE_TOOLS = Map.of(
+        "astroid/__init__.py", String.join("\n",
+            "class _Manager:",
+            "    def __init__(self):",
+            "        self.astroid_cache = {}",
+            "MANAGER = _Manager()",
+            ""),
+        "pylint/__init__.py", "",
+        "pylint/reporters/__init__.py", "",
+        "pylint/reporters/text.py", String.join("\n",
+            "class TextReporter:",
+            "    def __init__(self, out):",
+            "        self.out = out",
+            ""),
+        "pylint/lint.py", String.join("\n",
+            "import os, types, astroid",
+            "def Run(args, reporter=None, exit=True):",
+            "    path = args[-1]",
+            "    name = os.path.splitext(os.path.basename(path))[0]",
+            "    module = astroid.MANAGER.astroid_cache.get(name)",
+            "    if module is None:",
+            "        module = types.SimpleNamespace(file=path, source=open(path).read())",
+            "        astroid.MANAGER.astroid_cache[name] = module",
+            "    reporter.out.write(module.source)",
+            ""),
+        "crosshair/__init__.py", "",
+        "crosshair/main.py", String.join("\n",
+            "import importlib, os, sys",
+            "def main(args):",
+            "    path = args[-1].rsplit(':', 1)[0]",
+            "    sys.path.insert(0, os.path.dirname(path))",
+            "    print(importlib.import_module('snippet').VALUE)",
+            ""));
+
+    @TempDir
+    Path dir;
+
+    private PythonWorkerPool pool;
+
+    @AfterEach
+    void stop() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private Path script(int failures) throws Exception {
+        Path script = dir.resolve("fake_worker.py");
+        Files.writeString(script, FAKE_WORKER);
+        if (failures > 0) {
+            Files.writeString(dir.resolve("fake_worker.py.fail"), String.valueOf(failures));
+        }
+        return script;
+    }
+
+    private PythonWorkerPool start(int failures) throws Exception {
+        assumeTrue(new ProcessBuilder("python3", "-c", "pass").start().waitFor() == 0, "cần python3");
+        pool = new PythonWorkerPool("python3", 1, 50L);
+        pool.start(script(failures));
+        return pool;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "hết thời gian chờ");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void runsJobOnWarmWorker() throws Exception {
+        start(0);
+        await(pool::isReady);
+        assertEquals(List.of("a", "b"), pool.run("pylint", List.of(), "a\nb", 5_000));
+        assertEquals(1L, pool.stats().get("jobs"));
+        assertThrows(PythonWorkerPool.WorkerUnavailableException.class,
+            () -> pool.run("mypy", List.of(), "x", 1_000));
+    }
+
+    @Test
+    void timedOutWorkerIsReplacedNotReturnedToIdle() throws Exception {
+        start(0);
+        await(pool::isReady);
+        assertThrows(InterruptedIOException.class, () -> pool.run("pylint", List.of(), "sleep", 300));
+        assertEquals(1L, pool.stats().get("recycled"));
+        // Worker bị kill không bao giờ vào lại idle; worker thay thế chạy bình thường
+        await(() -> (int) pool.stats().get("idle") == 1);
+        assertEquals(1, pool.stats().get("alive"));
+        assertEquals(List.of("ok"), pool.run("pylint", List.of(), "ok", 5_000));
+    }
+
+    @Test
+    void failedSpawnIsRetriedWithBackoff() throws Exception {
+        start(2);
+        await(pool::isReady);
+        assertEquals(0, pool.stats().get("failedSpawns"));
+        assertEquals(List.of("x"), pool.run("pylint", List.of(), "x", 5_000));
+    }
+
+    @Test
+    void realWorkerDoesNotReuseThePreviousSnippet() throws Exception {
+        Path fakes = dir.resolve("fakes");
+        for (Map.Entry<String, String> file : FAKE_TOOLS.entrySet()) {
+            Files.createDirectories(fakes.resolve(file.getKey()).getParent());
+            Files.writeString(fakes.resolve(file.getKey()), file.getValue());
+        }
+        Path worker = dir.resolve("analyzer_worker.py");
+        try (InputStream in = PythonWorkerPool.class.getResourceAsStream("/python/analyzer_worker.py")) {
+            Files.copy(in, worker);
+        }
+        Path launcher = dir.resolve("launcher.py");
+        Files.writeString(launcher, String.join("\n",
+            "import runpy, sys",
+            "sys.path.insert(0, " + pyString(fakes) + ")",
+            "runpy.run_path(" + pyString(worker) + ", run_name='__main__')",
+            ""));
+        assumeTrue(new ProcessBuilder("python3", "-c", "pass").start().waitFor() == 0, "cần python3");
+        pool = new PythonWorkerPool("python3", 1, 50L);
+        pool.start(launcher);
+        await(pool::isReady);
+
+        // Cùng một worker, cùng độ dài code: job sau phải thấy code của chính nó
+        assertEquals(List.of("VALUE = 'first'"), pool.run("pylint", List.of(), "VALUE = 'first'", 5_000));
+        assertEquals(List.of("VALUE = 'other'"), pool.run("pylint", List.of(), "VALUE = 'other'", 5_000));
+        assertEquals(List.of("first"), pool.run("crosshair", List.of(), "VALUE = 'first'", ":1", 5_000));
+        assertEquals(List.of("other"), pool.run("crosshair", List.of(), "VALUE = 'other'", ":1", 5_000));
+    }
+
+    private static String pyString(Path path) {
+        return "'" + path.toString().replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Dọn fingerprint cũ chỉ trong thư mục con của cache, không đụng dữ liệu khác trong cache.dir;
+// giới hạn số entry / dung lượng của tầng đĩa
+class ReviewCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void purgeOnlyTouchesOwnSubdirectory() throws Exception {
+        Path root = dir.resolve(ReviewCache.DISK_SUBDIR);
+        Files.createDirectories(root.resolve("oldfingerprint/ab"));
+        Files.writeString(root.resolve("oldfingerprint/ab/abc.json"), "{}");
+        Files.createDirectories(root.resolve("current/cd"));
+        Files.createDirectories(dir.resolve("unrelated"));
+        Files.writeString(dir.resolve("unrelated/keep.txt"), "x");
+
+        ReviewCache.purgeStaleDiskEntries(root, "current");
+
+        assertFalse(Files.exists(root.resolve("oldfingerprint")));
+        assertTrue(Files.isDirectory(root.resolve("current/cd")));
+        assertTrue(Files.isRegularFile(dir.resolve("unrelated/keep.txt")));
+    }
+
+    // 5 entry 10 byte, mtime tăng dần theo i (entry 0 ít dùng nhất)
+    private Path entries() throws Exception {
+        Path current = dir.resolve("current");
+        for (int i = 0; i < 5; i++) {
+            Path file = current.resolve("0" + i + "/0" + i + "key.json");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, "0123456789");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000L + i * 1_000L));
+        }
+        Files.writeString(current.resolve("00/partial.tmp"), "x");
+        return current;
+    }
+
+    @Test
+    void diskTierEvictsLeastRecentlyUsedOverEntryCap() throws Exception {
+        Path current = entries();
+        // Đọc trúng entry 0 -> mtime mới nhất, không bị xoá
+        Files.setLastModifiedTime(current.resolve("00/00key.json"), FileTime.fromMillis(2_000_000L));
+
+        ReviewCache.DiskUsage usage = ReviewCache.trimDisk(current, 3, Long.MAX_VALUE);
+
+        assertEquals(3, usage.evicted);
+        assertEquals(2, usage.entries);
+        assertEquals(20, usage.bytes);
+        assertTrue(Files.exists(current.resolve("00/00key.json")));
+        assertTrue(Files.exists(current.resolve("04/04key.json")));
+        assertFalse(Files.exists(current.resolve("01/01key.json")));
+        assertTrue(Files.exists(current.resolve("00/partial.tmp")), "chỉ đụng tới file entry");
+    }
+
+    @Test
+    void diskTierEvictsOverByteCapAndLeavesSmallCacheAlone() throws Exception {
+        Path current = entries();
+
+        ReviewCache.DiskUsage untouched = ReviewCache.trimDisk(current, 100, 50);
+        assertEquals(0, untouched.evicted);
+        assertEquals(5, untouched.entries);
+
+        ReviewCache.DiskUsage usage = ReviewCache.trimDisk(current, 100, 35);
+        assertEquals(2, usage.evicted);
+        assertEquals(30, usage.bytes);
+        assertFalse(Files.exists(current.resolve("01/01key.json")));
+        assertTrue(Files.exists(current.resolve("02/02key.json")));
+    }
+
+    @Test
+    void normalizeKeepsLineNumbers() {
+        assertEquals("a\n\nb", ReviewCache.normalize("a  \r\n\r\nb\n\n"));
+    }
+}
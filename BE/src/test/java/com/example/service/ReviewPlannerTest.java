@@ -0,0 +1,77 @@
+package com.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.example.service.StaticAnalysisService.CROSSHAIR;
+import static com.example.service.StaticAnalysisService.MYPY;
+import static com.example.service.StaticAnalysisService.PYLINT;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Chọn tool theo budget: lúc lạnh fast vẫn phải chạy thử tool rẻ nhất để có mẫu latency
+class ReviewPlannerTest {
+
+    private static final String CODE = "x = 1\n";
+
+    @BeforeEach
+    @AfterEach
+    void cold() {
+        ToolLatency.reset();
+    }
+
+    private static ReviewPlanner.Plan fast() {
+        return ReviewPlanner.plan(new StaticAnalysisService.ReviewOptions(ReviewPlanner.FAST, null, null), CODE);
+    }
+
+    private static void record(String tool, long ms) {
+        for (int i = 0; i < 5; i++) {
+            ToolLatency.record(tool, ToolLatency.lineCount(CODE), ms);
+        }
+    }
+
+    @Test
+    void fastModeProbesCheapestToolUntilItHasSamples() {
+        ReviewPlanner.Plan cold = fast();
+        assertEquals(List.of(PYLINT), cold.tools);
+        assertEquals(List.of(PYLINT), cold.probes);
+        assertEquals(List.of(MYPY, CROSSHAIR), cold.skipped);
+        assertEquals(300L, cold.budgetMs);
+
+        // pylint đã đo được là nhanh -> chạy bình thường, chuyển sang thử mypy
+        record(PYLINT, 120);
+        ReviewPlanner.Plan warm = fast();
+        assertEquals(List.of(PYLINT, MYPY), warm.tools);
+        assertEquals(List.of(MYPY), warm.probes);
+        assertEquals(List.of(CROSSHAIR), warm.skipped);
+
+        // mypy đo được là chậm -> bỏ qua thật, lượt thử tiếp theo là CrossHair
+        record(MYPY, 900);
+        ReviewPlanner.Plan learned = fast();
+        assertEquals(List.of(PYLINT, CROSSHAIR), learned.tools);
+        assertEquals(List.of(CROSSHAIR), learned.probes);
+        assertEquals(List.of(MYPY), learned.skipped);
+
+        record(CROSSHAIR, 5_000);
+        ReviewPlanner.Plan settled = fast();
+        assertEquals(List.of(PYLINT), settled.tools);
+        assertEquals(List.of(), settled.probes);
+        assertEquals(List.of(MYPY, CROSSHAIR), settled.skipped);
+    }
+
+    @Test
+    void noBudgetRunsEverythingWithoutProbes() {
+        ReviewPlanner.Plan deep = ReviewPlanner.plan(
+            new StaticAnalysisService.ReviewOptions(ReviewPlanner.DEEP, null, null), CODE);
+        assertEquals(StaticAnalysisService.TOOL_ORDER, deep.tools);
+        assertEquals(List.of(), deep.probes);
+        assertEquals(List.of(), deep.skipped);
+
+        ReviewPlanner.Plan standard = ReviewPlanner.plan(
+            new StaticAnalysisService.ReviewOptions(ReviewPlanner.STANDARD, null, null), CODE);
+        assertEquals(List.of(PYLINT, MYPY), standard.tools);
+        assertEquals(List.of(CROSSHAIR), standard.skipped);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Caller trùng key gắn vào call đang chạy; cancel của một caller không huỷ call chung
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private CompletableFuture<String> call(String key, CompletableFuture<String> upstream) {
+        return flight.call(key, () -> {
+            upstreamCalls.incrementAndGet();
+            return upstream;
+        });
+    }
+
+    @Test
+    void identicalCallsShareOneUpstreamCall() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = call("p", upstream);
+        CompletableFuture<String> second = call("p", new CompletableFuture<>());
+        CompletableFuture<String> other = call("q", CompletableFuture.completedFuture("khác"));
+
+        upstream.complete("kết quả");
+
+        assertEquals("kết quả", first.join());
+        assertEquals("kết quả", second.join());
+        assertEquals("khác", other.join());
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(1L, flight.stats().get("duplicatesAvoided"));
+    }
+
+    @Test
+    void cancellingOneCallerKeepsSharedCallRunning() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> leaving = call("p", upstream);
+        CompletableFuture<String> staying = call("p", new CompletableFuture<>());
+
+        leaving.cancel(true);
+        upstream.complete("ok");
+
+        assertTrue(leaving.isCancelled());
+        assertFalse(upstream.isCancelled());
+        assertEquals("ok", staying.join());
+    }
+
+    @Test
+    void finishedCallIsNotReused() {
+        call("p", CompletableFuture.failedFuture(new IllegalStateException("lỗi"))).exceptionally(e -> null).join();
+        assertEquals("mới", call("p", CompletableFuture.completedFuture("mới")).join());
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(0, flight.inFlight());
+    }
+}
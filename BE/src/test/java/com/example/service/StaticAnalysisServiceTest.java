@@ -0,0 +1,86 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+import com.example.service.StaticAnalysisService.ReviewResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Parse output của từng tool, thứ tự issue cố định và executor đầy không chạy trên thread người gọi
+class StaticAnalysisServiceTest {
+
+    @Test
+    void parsesEachToolFormat() {
+        Issue pylint = StaticAnalysisService.parseLine(StaticAnalysisService.PYLINT,
+            "snippet.py:3:4: E0602: Undefined variable 'x' (undefined-variable)");
+        assertEquals(3, pylint.line);
+        assertEquals(4, pylint.col);
+        assertEquals("E0602", pylint.code);
+        assertEquals("ERROR", pylint.type);
+
+        Issue mypy = StaticAnalysisService.parseLine(StaticAnalysisService.MYPY,
+            "snippet.py:7: error: Incompatible return value type  [return-value]");
+        assertEquals(7, mypy.line);
+        assertEquals("return-value", mypy.code);
+
+        Issue crosshair = StaticAnalysisService.parseLine(StaticAnalysisService.CROSSHAIR,
+            "/tmp/a.py:5: error: false when calling f(x=1) (which returns 2)");
+        assertEquals(5, crosshair.line);
+        assertEquals("LOGIC", crosshair.type);
+
+        assertNull(StaticAnalysisService.parseLine(StaticAnalysisService.PYLINT, "************* Module snippet"));
+        assertThrows(IllegalArgumentException.class, () -> StaticAnalysisService.parseLine("flake8", "x"));
+    }
+
+    @Test
+    void sortsByLineColumnThenTool() {
+        List<Issue> issues = new ArrayList<>(List.of(
+            new Issue("LOGIC", 2, 0, "CrossHair", "c", StaticAnalysisService.CROSSHAIR),
+            new Issue("ERROR", 2, 0, "misc", "m", StaticAnalysisService.MYPY),
+            new Issue("ERROR", 1, 5, "E1", "p", StaticAnalysisService.PYLINT),
+            new Issue("ERROR", 2, 0, "E2", "p", StaticAnalysisService.PYLINT)));
+        StaticAnalysisService.sortIssues(issues);
+        assertEquals(List.of("p", "p", "m", "c"), issues.stream().map(i -> i.message).toList());
+        assertEquals(1, issues.get(0).line);
+    }
+
+    @Test
+    void syntaxErrorShortCircuitsWithoutTools() throws Exception {
+        ReviewResult result = StaticAnalysisService.reviewPython("def f(:\n    pass\n", null);
+        assertFalse(result.issues.isEmpty());
+        assertEquals(List.of(PythonPreLint.TOOL), new ArrayList<>(result.tools.keySet()));
+    }
+
+    @Test
+    void fullExecutorRejectsInsteadOfRunningOnCaller() throws Exception {
+        ExecutorService executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<Object> busy = StaticAnalysisService.trySubmit(executor, () -> {
+                release.await();
+                return null;
+            });
+            assertNotNull(busy);
+            Thread caller = Thread.currentThread();
+            Future<Thread> rejected = StaticAnalysisService.trySubmit(executor, Thread::currentThread);
+            assertNull(rejected);
+            release.countDown();
+            busy.get(5, TimeUnit.SECONDS);
+            Future<Thread> ran = StaticAnalysisService.trySubmit(executor, Thread::currentThread);
+            assertNotSame(caller, ran.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Kết quả ghép từ các mảnh phải giống hệt chuỗi replaceAll chạy trên toàn bộ text
+class StreamingTextNormalizerTest {
+
+    private static String batch(String text) {
+        return text
+            .replaceAll("\n\\s*\n\\s*\n+", "\n\n")
+            .replaceAll("(?m)^\\s*$\n", "")
+            .trim();
+    }
+
+    private static String streamed(List<String> chunks) {
+        StreamingTextNormalizer normalizer = new StreamingTextNormalizer();
+        StringBuilder out = new StringBuilder();
+        chunks.forEach(chunk -> out.append(normalizer.accept(chunk)));
+        return out.append(normalizer.finish()).toString();
+    }
+
+    @Test
+    void matchesBatchNormalization() {
+        List<String> samples = List.of(
+            "  \n\n**Tóm tắt**\n\n\n1. Hàm  `f`\n   \n   - trả về x  \n\n",
+            "a\n\t\nb",
+            "\n\n\n",
+            "một dòng",
+            "x \n  y\n\n\n\nz \t");
+        for (String sample : samples) {
+            assertEquals(batch(sample), streamed(List.of(sample)), sample);
+            // Cắt thành từng ký tự: ranh giới chunk không được ảnh hưởng kết quả
+            assertEquals(batch(sample), streamed(List.of(sample.split(""))), sample);
+        }
+    }
+
+    @Test
+    void matchesBatchNormalizationOnRandomText() {
+        Random random = new Random(42);
+        String alphabet = "ab \t\n\n.";
+        for (int n = 0; n < 500; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(40); i > 0; i--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String sample = text.toString();
+            int cut = sample.isEmpty() ? 0 : random.nextInt(sample.length());
+            assertEquals(batch(sample), streamed(List.of(sample.substring(0, cut), sample.substring(cut))),
+                sample.replace("\n", "\\n"));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.service;
+
+import com.example.service.StaticAnalysisService.Issue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Parser output của các CommandLineAnalyzer (JSON streaming và theo dòng)
+class ToolOutputParsersTest {
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void eslintJsonAcrossFiles() throws Exception {
+        String json = "[{\"filePath\":\"a.js\",\"messages\":["
+            + "{\"ruleId\":\"no-unused-vars\",\"severity\":2,\"message\":\"'x' is unused\",\"line\":3,\"column\":7},"
+            + "{\"ruleId\":null,\"severity\":1,\"message\":\"Parsing warning\",\"line\":1,\"column\":1}]},"
+            + "{\"filePath\":\"b.js\",\"messages\":[]}]";
+        List<Issue> issues = new ArrayList<>();
+        ToolOutputParsers.eslintJson(stream(json), issues::add);
+        assertEquals(2, issues.size());
+        assertEquals("ERROR", issues.get(0).type);
+        assertEquals(3, issues.get(0).line);
+        assertEquals(7, issues.get(0).col);
+        assertEquals("no-unused-vars", issues.get(0).code);
+        assertEquals("WARNING", issues.get(1).type);
+        assertEquals("eslint", issues.get(1).code);
+    }
+
+    @Test
+    void rubocopJsonWithBothLocationStyles() throws Exception {
+        String json = "{\"metadata\":{},\"files\":[{\"path\":\"a.rb\",\"offenses\":["
+            + "{\"severity\":\"convention\",\"message\":\"Use snake_case\",\"cop_name\":\"Naming/MethodName\","
+            + "\"location\":{\"start_line\":2,\"start_column\":5}},"
+            + "{\"severity\":\"fatal\",\"message\":\"syntax\",\"cop_name\":\"Lint/Syntax\","
+            + "\"location\":{\"line\":9,\"column\":1}}]}],\"summary\":{\"offense_count\":2}}";
+        List<Issue> issues = new ArrayList<>();
+        ToolOutputParsers.rubocopJson(stream(json), issues::add);
+        assertEquals(2, issues.size());
+        assertEquals("WARNING", issues.get(0).type);
+        assertEquals(2, issues.get(0).line);
+        assertEquals("Naming/MethodName", issues.get(0).code);
+        assertEquals("ERROR", issues.get(1).type);
+        assertEquals(9, issues.get(1).line);
+    }
+
+    @Test
+    void lineParsers() throws Exception {
+        Issue cpp = ToolOutputParsers.parseCppcheckLine("12:4:error:nullPointer:Null pointer dereference: p");
+        assertEquals(12, cpp.line);
+        assertEquals("nullPointer", cpp.code);
+        assertEquals("Null pointer dereference: p", cpp.message);
+        assertEquals("WARNING", ToolOutputParsers.parseCppcheckLine("1:1:style:unusedVariable:x").type);
+        assertNull(ToolOutputParsers.parseCppcheckLine("Checking snippet.cpp ..."));
+
+        Issue go = ToolOutputParsers.parseGolintLine("/tmp/analyze-1.go:5:6: exported func Foo should have comment");
+        assertEquals(5, go.line);
+        assertEquals(6, go.col);
+
+        Issue php = ToolOutputParsers.parsePhpLintLine(
+            "PHP Parse error:  syntax error, unexpected '}' in /tmp/analyze-1.php on line 8");
+        assertEquals(8, php.line);
+        assertEquals("ParseError", php.code);
+        assertNull(ToolOutputParsers.parsePhpLintLine("No syntax errors detected in /tmp/x.php"));
+
+        List<Issue> issues = new ArrayList<>();
+        ToolOutputParsers.lines(ToolOutputParsers::parseGolintLine)
+            .parse(stream("a.go:1:1: first\nnoise\na.go:2:3: second\n"), issues::add);
+        assertEquals(List.of("first", "second"), issues.stream().map(i -> i.message).toList());
+    }
+
+    @Test
+    void truncatedJsonStillYieldsCompleteElements() {
+        String json = "[{\"messages\":[{\"severity\":2,\"message\":\"ok\",\"line\":1,\"column\":1},{\"severity\":2,\"mes";
+        List<Issue> issues = new ArrayList<>();
+        assertThrows(Exception.class, () -> ToolOutputParsers.eslintJson(stream(json), issues::add));
+        assertEquals(1, issues.size());
+    }
+}